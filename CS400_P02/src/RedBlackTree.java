@@ -1,5 +1,13 @@
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
 import java.util.Stack;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
@@ -10,7 +18,8 @@ import org.junit.jupiter.api.Test;
  * modifying the insert functionality. In this activity, we will start with implementing rotations
  * for the binary search tree insert algorithm.
  */
-public class RedBlackTree<T extends Comparable<T>> implements SortedCollectionInterface<T> {
+public class RedBlackTree<T extends Comparable<T>>
+    implements SortedCollectionInterface<T>, Iterable<T> {
   
   /**
    * This is a JUnit test class for the RedBlackTree class. In these three test methods, the main
@@ -164,6 +173,8 @@ public class RedBlackTree<T extends Comparable<T>> implements SortedCollectionIn
   protected static class Node<T> {
     public T data;
     public int blackHeight;
+    // the number of nodes in the subtree rooted at this node, including this node itself
+    public int subtreeSize;
     // The context array stores the context of the node in the tree:
     // - context[0] is the parent reference of the node,
     // - context[1] is the left child reference of the node,
@@ -181,6 +192,7 @@ public class RedBlackTree<T extends Comparable<T>> implements SortedCollectionIn
     public Node(T data) {
       this.data = data;
       this.blackHeight = 0;
+      this.subtreeSize = 1;
     }
 
     /**
@@ -196,6 +208,7 @@ public class RedBlackTree<T extends Comparable<T>> implements SortedCollectionIn
 
   protected Node<T> root; // reference to root node of tree, null when empty
   protected int size = 0; // the number of values in the tree
+  protected int modCount = 0; // the number of insertions and removals, for fail-fast iteration
 
 
   /**
@@ -218,6 +231,7 @@ public class RedBlackTree<T extends Comparable<T>> implements SortedCollectionIn
       // add first node to an empty tree
       root = newNode;
       size++;
+      modCount++;
       enforceRBTreePropertiesAfterInsert(newNode);
       return true;
     } else {
@@ -235,6 +249,8 @@ public class RedBlackTree<T extends Comparable<T>> implements SortedCollectionIn
             current.context[1] = newNode;
             newNode.context[0] = current;
             this.size++;
+            this.modCount++;
+            updateSubtreeSizes(current, 1);
             enforceRBTreePropertiesAfterInsert(newNode);
             return true;
           } else {
@@ -248,6 +264,8 @@ public class RedBlackTree<T extends Comparable<T>> implements SortedCollectionIn
             current.context[2] = newNode;
             newNode.context[0] = current;
             this.size++;
+            this.modCount++;
+            updateSubtreeSizes(current, 1);
             enforceRBTreePropertiesAfterInsert(newNode);
             return true;
           } else {
@@ -310,13 +328,18 @@ public class RedBlackTree<T extends Comparable<T>> implements SortedCollectionIn
       }
     }
 
-    // Update the child's parent reference
+    // Update the child's parent reference, the parent now hangs below the child
     child.context[0] = grandparent;
+    parent.context[0] = child;
 
     // Update the root reference if necessary
     if (parent == root) {
       root = child;
     }
+
+    // The child now roots the subtree the parent rooted, the parent lost the child's other side
+    child.subtreeSize = parent.subtreeSize;
+    parent.subtreeSize = 1 + subtreeSize(parent.context[1]) + subtreeSize(parent.context[2]);
   }
 
   /**
@@ -338,9 +361,11 @@ public class RedBlackTree<T extends Comparable<T>> implements SortedCollectionIn
   }
 
   /**
-   * Removes the value data from the tree if the tree contains the value. This method will not
-   * attempt to rebalance the tree after the removal and should be updated once the tree uses
-   * Red-Black Tree insertion.
+   * Removes the value data from the tree if the tree contains the value. A node with two children
+   * takes over the value of its in-order successor, and the successor is removed instead, so the
+   * node that leaves the tree always has at most one child. Removing a black node this way would
+   * shorten the black height of its side, which is repaired by
+   * enforceRBTreePropertiesAfterRemove.
    * 
    * @return true if the value was remove, false if it didn't exist
    * @throws NullPointerException     when the provided data argument is null
@@ -357,36 +382,121 @@ public class RedBlackTree<T extends Comparable<T>> implements SortedCollectionIn
         throw new IllegalArgumentException(
             "The following value is not in the tree and cannot be deleted: " + data.toString());
       }
-      boolean hasRightChild = (nodeWithData.context[2] != null);
-      boolean hasLeftChild = (nodeWithData.context[1] != null);
-      if (hasRightChild && hasLeftChild) {
-        // has 2 children
-        Node<T> successorNode = this.findMinOfRightSubtree(nodeWithData);
-        // replace value of node with value of successor node
-        nodeWithData.data = successorNode.data;
-        // remove successor node
-        if (successorNode.context[2] == null) {
-          // successor has no children, replace with null
-          this.replaceNode(successorNode, null);
-        } else {
-          // successor has a right child, replace successor with its child
-          this.replaceNode(successorNode, successorNode.context[2]);
-        }
-      } else if (hasRightChild) {
-        // only right child, replace with right child
-        this.replaceNode(nodeWithData, nodeWithData.context[2]);
-      } else if (hasLeftChild) {
-        // only left child, replace with left child
-        this.replaceNode(nodeWithData, nodeWithData.context[1]);
+      Node<T> nodeToRemove = nodeWithData;
+      if (nodeWithData.context[1] != null && nodeWithData.context[2] != null) {
+        // has 2 children: replace value of node with value of successor node, remove successor
+        nodeToRemove = this.findMinOfRightSubtree(nodeWithData);
+        nodeWithData.data = nodeToRemove.data;
+      }
+      // the node to remove has at most one child
+      Node<T> child = (nodeToRemove.context[1] != null) ? nodeToRemove.context[1]
+          : nodeToRemove.context[2];
+      // the ancestors lose one node, and the removed node counts for nothing in the rotations of
+      // the fix-up below
+      updateSubtreeSizes(nodeToRemove.context[0], -1);
+      nodeToRemove.subtreeSize = 0;
+
+      if (nodeToRemove.blackHeight == 0) {
+        // a red node has no children here, removing it changes no black height
+        this.replaceNode(nodeToRemove, child);
+      } else if (child != null) {
+        // a black node's only child is red, and takes over the black of the removed node
+        this.replaceNode(nodeToRemove, child);
+        child.blackHeight = 1;
       } else {
-        // no children, replace node with a null node
-        this.replaceNode(nodeWithData, null);
+        // a black leaf: mark it double-black and repair the tree while it still holds its place,
+        // then detach it
+        nodeToRemove.blackHeight = 2;
+        enforceRBTreePropertiesAfterRemove(nodeToRemove);
+        this.replaceNode(nodeToRemove, null);
       }
       this.size--;
+      this.modCount++;
       return true;
     }
   }
 
+  /**
+   * Counts the values in the tree that are smaller than data, which need not be in the tree
+   * itself. This follows a single path from the root, adding up the sizes of the left subtrees it
+   * passes by, and so runs in O(log n).
+   * 
+   * @param data the value to rank
+   * @return the number of values smaller than data, which is the index of data in sorted order
+   *         when data is in the tree
+   * @throws NullPointerException when the provided data argument is null
+   */
+  public int rank(T data) throws NullPointerException {
+    if (data == null) {
+      throw new NullPointerException("This RedBlackTree cannot store null references.");
+    }
+    int rank = 0;
+    Node<T> current = this.root;
+    while (current != null) {
+      int compare = data.compareTo(current.data);
+      if (compare <= 0) {
+        // data and everything smaller lie in the left subtree
+        current = current.context[1];
+      } else {
+        // the left subtree and current are all smaller than data
+        rank += subtreeSize(current.context[1]) + 1;
+        current = current.context[2];
+      }
+    }
+    return rank;
+  }
+
+  /**
+   * Finds the value at a given index in sorted order, so select(0) is the smallest value and
+   * select(size() - 1) the largest. This follows a single path from the root, steering by the
+   * sizes of the left subtrees, and so runs in O(log n).
+   * 
+   * @param index the number of values in the tree smaller than the value to return
+   * @return the value with index smaller values in the tree
+   * @throws IndexOutOfBoundsException when index is negative or not smaller than size()
+   */
+  public T select(int index) throws IndexOutOfBoundsException {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index " + index + " is out of bounds for size " + size);
+    }
+    Node<T> current = this.root;
+    while (true) {
+      int leftSize = subtreeSize(current.context[1]);
+      if (index < leftSize) {
+        current = current.context[1];
+      } else if (index == leftSize) {
+        return current.data;
+      } else {
+        // skip the left subtree and current
+        index -= leftSize + 1;
+        current = current.context[2];
+      }
+    }
+  }
+
+  /**
+   * Helper method that returns the number of nodes in the subtree rooted at node.
+   * 
+   * @param node the root of the subtree (may be null)
+   * @return the subtree size of node, or 0 when node is null
+   */
+  protected int subtreeSize(Node<T> node) {
+    return (node == null) ? 0 : node.subtreeSize;
+  }
+
+  /**
+   * Helper method that adds delta to the subtree size of node and of each of its ancestors.
+   * 
+   * @param node  the lowest node whose subtree changed size (may be null)
+   * @param delta the number of nodes added to the subtree, negative for removed nodes
+   */
+  protected void updateSubtreeSizes(Node<T> node, int delta) {
+    while (node != null) {
+      node.subtreeSize += delta;
+      node = node.context[0];
+    }
+  }
+
   /**
    * Checks whether the tree contains the value *data*.
    * 
@@ -481,6 +591,463 @@ public class RedBlackTree<T extends Comparable<T>> implements SortedCollectionIn
     return null;
   }
 
+  /**
+   * Finds the smallest value that is greater than or equal to data.
+   * 
+   * @param data the value to compare with, which need not be in the tree
+   * @return the smallest value >= data, or null when there is no such value
+   * @throws NullPointerException when the provided data argument is null
+   */
+  public T ceiling(T data) throws NullPointerException {
+    return dataOf(findCeilingNode(data, true));
+  }
+
+  /**
+   * Finds the smallest value that is strictly greater than data.
+   * 
+   * @param data the value to compare with, which need not be in the tree
+   * @return the smallest value > data, or null when there is no such value
+   * @throws NullPointerException when the provided data argument is null
+   */
+  public T higher(T data) throws NullPointerException {
+    return dataOf(findCeilingNode(data, false));
+  }
+
+  /**
+   * Finds the largest value that is smaller than or equal to data.
+   * 
+   * @param data the value to compare with, which need not be in the tree
+   * @return the largest value <= data, or null when there is no such value
+   * @throws NullPointerException when the provided data argument is null
+   */
+  public T floor(T data) throws NullPointerException {
+    return dataOf(findFloorNode(data, true));
+  }
+
+  /**
+   * Finds the largest value that is strictly smaller than data.
+   * 
+   * @param data the value to compare with, which need not be in the tree
+   * @return the largest value < data, or null when there is no such value
+   * @throws NullPointerException when the provided data argument is null
+   */
+  public T lower(T data) throws NullPointerException {
+    return dataOf(findFloorNode(data, false));
+  }
+
+  /**
+   * @return the smallest value in the tree
+   * @throws NoSuchElementException when the tree is empty
+   */
+  public T first() throws NoSuchElementException {
+    if (this.root == null) {
+      throw new NoSuchElementException("This RedBlackTree is empty.");
+    }
+    return findMinNode(this.root).data;
+  }
+
+  /**
+   * @return the largest value in the tree
+   * @throws NoSuchElementException when the tree is empty
+   */
+  public T last() throws NoSuchElementException {
+    if (this.root == null) {
+      throw new NoSuchElementException("This RedBlackTree is empty.");
+    }
+    Node<T> current = this.root;
+    while (current.context[2] != null) {
+      current = current.context[2];
+    }
+    return current.data;
+  }
+
+  /**
+   * Counts the values from fromData (inclusive) up to toData (exclusive) as the difference of two
+   * ranks, in O(log n) however many values lie in between.
+   * 
+   * @param fromData the lower bound of the range, inclusive
+   * @param toData   the upper bound of the range, exclusive
+   * @return the number of values in the range
+   * @throws NullPointerException     when either bound is null
+   * @throws IllegalArgumentException when fromData is greater than toData
+   */
+  public int countInRange(T fromData, T toData)
+      throws NullPointerException, IllegalArgumentException {
+    if (fromData == null || toData == null) {
+      throw new NullPointerException("This RedBlackTree cannot store null references.");
+    }
+    if (fromData.compareTo(toData) > 0) {
+      throw new IllegalArgumentException("The range starts after it ends: " + fromData + " > "
+          + toData);
+    }
+    return rank(toData) - rank(fromData);
+  }
+
+  /**
+   * Returns a view of the values from fromData (inclusive) up to toData (exclusive). The view is
+   * lazy: it copies nothing, reflects later changes to the tree, and iterating over it visits only
+   * the O(log n + k) nodes needed to reach and walk its k values.
+   * 
+   * @param fromData the lower bound of the view, inclusive
+   * @param toData   the upper bound of the view, exclusive
+   * @return the view of the values in the range
+   * @throws NullPointerException     when either bound is null
+   * @throws IllegalArgumentException when fromData is greater than toData
+   */
+  public SubSet subSet(T fromData, T toData)
+      throws NullPointerException, IllegalArgumentException {
+    if (fromData == null || toData == null) {
+      throw new NullPointerException("This RedBlackTree cannot store null references.");
+    }
+    if (fromData.compareTo(toData) > 0) {
+      throw new IllegalArgumentException("The range starts after it ends: " + fromData + " > "
+          + toData);
+    }
+    return new SubSet(fromData, toData);
+  }
+
+  /**
+   * Returns a lazy view of the values smaller than toData, see subSet.
+   * 
+   * @param toData the upper bound of the view, exclusive
+   * @return the view of the values below toData
+   * @throws NullPointerException when toData is null
+   */
+  public SubSet headSet(T toData) throws NullPointerException {
+    if (toData == null) {
+      throw new NullPointerException("This RedBlackTree cannot store null references.");
+    }
+    return new SubSet(null, toData);
+  }
+
+  /**
+   * Returns a lazy view of the values greater than or equal to fromData, see subSet.
+   * 
+   * @param fromData the lower bound of the view, inclusive
+   * @return the view of the values from fromData on
+   * @throws NullPointerException when fromData is null
+   */
+  public SubSet tailSet(T fromData) throws NullPointerException {
+    if (fromData == null) {
+      throw new NullPointerException("This RedBlackTree cannot store null references.");
+    }
+    return new SubSet(fromData, null);
+  }
+
+  /**
+   * A lazy view of the values of this tree within a range, as returned by subSet, headSet and
+   * tailSet. Every method reads the tree as it is at the time of the call.
+   */
+  public class SubSet implements Iterable<T> {
+    private final T fromData; // inclusive lower bound, null when unbounded
+    private final T toData; // exclusive upper bound, null when unbounded
+
+    private SubSet(T fromData, T toData) {
+      this.fromData = fromData;
+      this.toData = toData;
+    }
+
+    /**
+     * @return the number of values in this view, counted in O(log n)
+     */
+    public int size() {
+      int below = (toData == null) ? RedBlackTree.this.size : rank(toData);
+      return below - ((fromData == null) ? 0 : rank(fromData));
+    }
+
+    /**
+     * @return true when no value of the tree lies in this view
+     */
+    public boolean isEmpty() {
+      return firstNode() == null;
+    }
+
+    /**
+     * @return true when data lies in this view and is in the tree
+     */
+    public boolean contains(T data) {
+      return inRange(data) && RedBlackTree.this.contains(data);
+    }
+
+    /**
+     * Walks from the first node of the view to its successors until the upper bound is reached.
+     * The iterator is fail-fast like the one of the tree itself.
+     */
+    @Override
+    public Iterator<T> iterator() {
+      return new TreeIterator(firstNode(), toData);
+    }
+
+    /**
+     * @return the node of the smallest value in this view, or null when the view is empty
+     */
+    private Node<T> firstNode() {
+      Node<T> first = (fromData == null) ? ((root == null) ? null : findMinNode(root))
+          : findCeilingNode(fromData, true);
+      return (first == null || (toData != null && first.data.compareTo(toData) >= 0)) ? null
+          : first;
+    }
+
+    private boolean inRange(T data) {
+      return (fromData == null || data.compareTo(fromData) >= 0)
+          && (toData == null || data.compareTo(toData) < 0);
+    }
+  }
+
+  /**
+   * Returns an iterator over the values in ascending order. It steps from node to in-order
+   * successor through the parent references in context[0] instead of keeping a stack, so it
+   * allocates nothing per step. It is fail-fast: once the tree is changed other than through
+   * the iterator, its next call throws a ConcurrentModificationException.
+   * 
+   * @return an iterator over the values of this tree in ascending order
+   */
+  @Override
+  public Iterator<T> iterator() {
+    return new TreeIterator((this.root == null) ? null : findMinNode(this.root), null);
+  }
+
+  /**
+   * Returns a spliterator over the values in ascending order that knows its exact size. Splitting
+   * hands out the values below the root of the remaining subtree and keeps that root and the
+   * values above it, so a balanced tree splits into halves of similar size. The spliterator is
+   * fail-fast like the iterator.
+   * 
+   * @return a spliterator over the values of this tree
+   */
+  @Override
+  public Spliterator<T> spliterator() {
+    return new TreeSpliterator((this.root == null) ? null : findMinNode(this.root), null,
+        this.root, this.size);
+  }
+
+  /**
+   * @return a sequential stream of the values in ascending order
+   */
+  public Stream<T> stream() {
+    return StreamSupport.stream(spliterator(), false);
+  }
+
+  /**
+   * @return a parallel stream of the values, split at subtree roots
+   */
+  public Stream<T> parallelStream() {
+    return StreamSupport.stream(spliterator(), true);
+  }
+
+  /**
+   * Iterator from a first node through its in-order successors, stopping before toData.
+   */
+  private class TreeIterator implements Iterator<T> {
+    private Node<T> next; // the node whose value is returned next, null at the end
+    private final T toData; // exclusive upper bound, null when unbounded
+    private int expectedModCount = modCount;
+
+    private TreeIterator(Node<T> first, T toData) {
+      this.next = first;
+      this.toData = toData;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next != null;
+    }
+
+    @Override
+    public T next() {
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      if (next == null) {
+        throw new NoSuchElementException("No more values in this tree.");
+      }
+      T data = next.data;
+      next = successor(next);
+      if (next != null && toData != null && next.data.compareTo(toData) >= 0) {
+        next = null;
+      }
+      return data;
+    }
+  }
+
+  /**
+   * Spliterator over the nodes from next up to, but not including, fence (null for the end of
+   * the tree). Until traversal begins, splitRoot is a node strictly after next whose whole
+   * subtree lies in that range; splitting there leaves both parts non-empty, and each part gets
+   * a child of splitRoot to split at next.
+   */
+  private class TreeSpliterator implements Spliterator<T> {
+    // ranges smaller than this are not worth handing to another thread
+    private static final int MIN_SPLIT = 64;
+
+    private Node<T> next;
+    private final Node<T> fence;
+    private Node<T> splitRoot; // null once traversal has begun
+    private long remaining;
+    private final int expectedModCount = modCount;
+
+    private TreeSpliterator(Node<T> next, Node<T> fence, Node<T> splitRoot, long remaining) {
+      this.next = next;
+      this.fence = fence;
+      this.splitRoot = splitRoot;
+      this.remaining = remaining;
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+      // the root of the range may be its first node, then its right child is the next candidate
+      while (splitRoot != null && splitRoot == next) {
+        splitRoot = splitRoot.context[2];
+      }
+      if (splitRoot == null || remaining < MIN_SPLIT) {
+        return null;
+      }
+      Node<T> split = splitRoot;
+      long prefix = rank(split.data) - rank(next.data);
+      TreeSpliterator lower = new TreeSpliterator(next, split, split.context[1], prefix);
+      next = split;
+      splitRoot = split.context[2];
+      remaining -= prefix;
+      return lower;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      if (next == null || next == fence) {
+        return false;
+      }
+      splitRoot = null;
+      T data = next.data;
+      next = successor(next);
+      remaining--;
+      action.accept(data);
+      return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super T> action) {
+      splitRoot = null;
+      while (next != null && next != fence) {
+        if (modCount != expectedModCount) {
+          throw new ConcurrentModificationException();
+        }
+        T data = next.data;
+        next = successor(next);
+        remaining--;
+        action.accept(data);
+      }
+    }
+
+    @Override
+    public long estimateSize() {
+      return remaining;
+    }
+
+    @Override
+    public int characteristics() {
+      return Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.SORTED
+          | Spliterator.NONNULL | Spliterator.SIZED | Spliterator.SUBSIZED;
+    }
+
+    @Override
+    public Comparator<? super T> getComparator() {
+      // sorted by the natural order of the values
+      return null;
+    }
+  }
+
+  /**
+   * Helper method that returns the node holding the smallest value >= data, or > data when
+   * inclusive is false. Returns null if there is no such node.
+   * 
+   * @return the ceiling node of data, or null if no such node exists
+   */
+  protected Node<T> findCeilingNode(T data, boolean inclusive) {
+    if (data == null) {
+      throw new NullPointerException("This RedBlackTree cannot store null references.");
+    }
+    Node<T> ceiling = null;
+    Node<T> current = this.root;
+    while (current != null) {
+      int compare = data.compareTo(current.data);
+      if (compare == 0 && inclusive) {
+        return current;
+      } else if (compare < 0) {
+        // current is a candidate, a closer one may be in the left subtree
+        ceiling = current;
+        current = current.context[1];
+      } else {
+        current = current.context[2];
+      }
+    }
+    return ceiling;
+  }
+
+  /**
+   * Helper method that returns the node holding the largest value <= data, or < data when
+   * inclusive is false. Returns null if there is no such node.
+   * 
+   * @return the floor node of data, or null if no such node exists
+   */
+  protected Node<T> findFloorNode(T data, boolean inclusive) {
+    if (data == null) {
+      throw new NullPointerException("This RedBlackTree cannot store null references.");
+    }
+    Node<T> floor = null;
+    Node<T> current = this.root;
+    while (current != null) {
+      int compare = data.compareTo(current.data);
+      if (compare == 0 && inclusive) {
+        return current;
+      } else if (compare > 0) {
+        // current is a candidate, a closer one may be in the right subtree
+        floor = current;
+        current = current.context[2];
+      } else {
+        current = current.context[1];
+      }
+    }
+    return floor;
+  }
+
+  /**
+   * Helper method that returns the node with the smallest value in the subtree of node.
+   * 
+   * @param node the root of the subtree, not null
+   * @return the leftmost node of the subtree
+   */
+  protected Node<T> findMinNode(Node<T> node) {
+    while (node.context[1] != null) {
+      node = node.context[1];
+    }
+    return node;
+  }
+
+  /**
+   * Helper method that returns the in-order successor of any node, following the parent
+   * references when the node has no right subtree.
+   * 
+   * @param node the node to find the successor for
+   * @return the node with the next larger value, or null when node holds the largest value
+   */
+  protected Node<T> successor(Node<T> node) {
+    if (node.context[2] != null) {
+      return findMinNode(node.context[2]);
+    }
+    // climb until we leave a left subtree, the parent we reach is the successor
+    while (node.isRightChild()) {
+      node = node.context[0];
+    }
+    return node.context[0];
+  }
+
+  private T dataOf(Node<T> node) {
+    return (node == null) ? null : node.data;
+  }
+
   /**
    * This method performs an inorder traversal of the tree. The string representations of each data
    * value within this tree are assembled into a comma separated string within brackets (similar to
@@ -598,6 +1165,121 @@ public class RedBlackTree<T extends Comparable<T>> implements SortedCollectionIn
 
     root.blackHeight = 1;
   }
-}
 
+  /**
+   * Resolves a double-black node (blackHeight 2), whose side of the tree holds one black node less
+   * than the other side of its parent. The sibling of the double-black node is never null, since
+   * the other side has a black height of at least one.
+   * 
+   * @param doubleBlack the node that carries an extra black
+   */
+  protected void enforceRBTreePropertiesAfterRemove(Node<T> doubleBlack) {
+
+    Node<T> parent = doubleBlack.context[0];
+
+    // Case 1: the double-black node is the root, the extra black simply leaves the tree
+    if (parent == null) {
+      doubleBlack.blackHeight = 1;
+      return;
+    }
 
+    boolean isRight = doubleBlack.isRightChild();
+    Node<T> sibling = isRight ? parent.context[1] : parent.context[2];
+
+    // Case 2: the sibling is red, rotate it above the parent so the new sibling is black
+    if (sibling.blackHeight == 0) {
+      rotate(sibling, parent);
+      sibling.blackHeight = 1;
+      parent.blackHeight = 0;
+      enforceRBTreePropertiesAfterRemove(doubleBlack);
+      return;
+    }
+
+    // the sibling is black from here on
+    Node<T> farNephew = isRight ? sibling.context[1] : sibling.context[2];
+    Node<T> nearNephew = isRight ? sibling.context[2] : sibling.context[1];
+
+    // Case 3: the nephew on the far side is red, rotate the sibling above the parent
+    if (farNephew != null && farNephew.blackHeight == 0) {
+      rotate(sibling, parent);
+      sibling.blackHeight = parent.blackHeight;
+      parent.blackHeight = 1;
+      farNephew.blackHeight = 1;
+      doubleBlack.blackHeight = 1;
+      return;
+    }
+
+    // Case 4: only the near nephew is red, rotate it above the sibling to get case 3
+    if (nearNephew != null && nearNephew.blackHeight == 0) {
+      rotate(nearNephew, sibling);
+      nearNephew.blackHeight = 1;
+      sibling.blackHeight = 0;
+      enforceRBTreePropertiesAfterRemove(doubleBlack);
+      return;
+    }
+
+    // Case 5: both nephews are black, recolor the sibling red and push the extra black up to the
+    // parent, which either absorbs it (red) or becomes double-black itself
+    sibling.blackHeight = 0;
+    doubleBlack.blackHeight = 1;
+    parent.blackHeight++;
+    if (parent.blackHeight == 2) {
+      enforceRBTreePropertiesAfterRemove(parent);
+    }
+  }
+
+  /**
+   * Checks every red-black tree property along with the binary search tree order, the parent
+   * references, the subtree sizes and the size, so tests can run it after every operation.
+   * 
+   * @throws IllegalStateException when a property is violated, naming the violation
+   */
+  protected void checkRBTreeProperties() throws IllegalStateException {
+    if (root != null && (root.context[0] != null || root.blackHeight != 1)) {
+      throw new IllegalStateException("The root must be black and have no parent.");
+    }
+    int[] count = new int[1];
+    checkSubtree(root, null, null, count);
+    if (count[0] != size) {
+      throw new IllegalStateException("The tree holds " + count[0] + " nodes but size is " + size);
+    }
+  }
+
+  /**
+   * Helper method that checks the subtree of node, whose values must lie strictly between low and
+   * high (null when unbounded), and counts its nodes.
+   * 
+   * @return the number of black nodes on every path from node down to a null child
+   */
+  private int checkSubtree(Node<T> node, T low, T high, int[] count) {
+    if (node == null) {
+      return 0;
+    }
+    count[0]++;
+    if (node.blackHeight != 0 && node.blackHeight != 1) {
+      throw new IllegalStateException("Node " + node.data + " is neither red nor black.");
+    }
+    if ((low != null && node.data.compareTo(low) <= 0)
+        || (high != null && node.data.compareTo(high) >= 0)) {
+      throw new IllegalStateException("Node " + node.data + " is out of order.");
+    }
+    for (int i = 1; i <= 2; i++) {
+      Node<T> child = node.context[i];
+      if (child != null && child.context[0] != node) {
+        throw new IllegalStateException("Node " + child.data + " has a wrong parent reference.");
+      }
+      if (child != null && node.blackHeight == 0 && child.blackHeight == 0) {
+        throw new IllegalStateException("Red node " + node.data + " has a red child.");
+      }
+    }
+    int left = checkSubtree(node.context[1], low, node.data, count);
+    int right = checkSubtree(node.context[2], node.data, high, count);
+    if (node.subtreeSize != 1 + subtreeSize(node.context[1]) + subtreeSize(node.context[2])) {
+      throw new IllegalStateException("Node " + node.data + " has a wrong subtree size.");
+    }
+    if (left != right) {
+      throw new IllegalStateException("Paths below node " + node.data + " differ in black count.");
+    }
+    return left + node.blackHeight;
+  }
+}
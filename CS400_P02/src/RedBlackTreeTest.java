@@ -1,6 +1,16 @@
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.TreeSet;
 
 
   /**
@@ -136,6 +146,306 @@ import org.junit.jupiter.api.Test;
       
     }
 
+    @Test
+    /**
+     * This is a tester for removals that need no double-black fix-up: removing a red leaf, and
+     * removing a black node whose only child is red, which takes over its black.
+     */
+    public void RemoveWithoutDoubleBlackTest() {
+
+      RedBlackTree<Integer> tree = new RedBlackTree<>();
+      tree.insert(23);
+      tree.insert(7);
+      tree.insert(41);
+      tree.insert(37);
+      tree.insert(50);
+
+      // removing the red leaf 50
+      tree.remove(50);
+      assertEquals(tree.toLevelOrderString(), "[ 23, 7, 41, 37 ]");
+      tree.checkRBTreeProperties();
+
+      // removing the black node 41, its red child 37 takes its place and becomes black
+      tree.remove(41);
+      assertEquals(tree.toLevelOrderString(), "[ 23, 7, 37 ]");
+      assertEquals(getBlackHeight(tree.findNodeWithData(37)), 1);
+      tree.checkRBTreeProperties();
+
+      // removing the root with two children, its successor 37 moves up
+      tree.remove(23);
+      assertEquals(tree.toLevelOrderString(), "[ 37, 7 ]");
+      assertEquals(getBlackHeight(tree.root), 1);
+      assertEquals(getBlackHeight(tree.findNodeWithData(7)), 0);
+      tree.checkRBTreeProperties();
+    }
+
+    @Test
+    /**
+     * This is a tester for removing a black leaf, which leaves a double-black node behind. It
+     * covers a red sibling, a black sibling with a red nephew on the far or near side, and a black
+     * sibling with black nephews, where the extra black moves up to the parent.
+     */
+    public void RemoveDoubleBlackTest() {
+
+      // red sibling: 20 is rotated above 10 first, then the far nephew 30 is red
+      RedBlackTree<Integer> tree = new RedBlackTree<>();
+      for (int value : new int[] {10, 5, 20, 15, 25, 30}) {
+        tree.insert(value);
+      }
+      tree.remove(5);
+      assertEquals(tree.toLevelOrderString(), "[ 20, 10, 25, 15, 30 ]");
+      tree.checkRBTreeProperties();
+
+      // black sibling 20 with a red far nephew 25
+      RedBlackTree<Integer> tree2 = new RedBlackTree<>();
+      for (int value : new int[] {10, 5, 20, 15, 25}) {
+        tree2.insert(value);
+      }
+      tree2.remove(5);
+      assertEquals(tree2.toLevelOrderString(), "[ 20, 10, 25, 15 ]");
+      assertEquals(getBlackHeight(tree2.findNodeWithData(15)), 0);
+      tree2.checkRBTreeProperties();
+
+      // black sibling 20 with only a red near nephew 15
+      RedBlackTree<Integer> tree3 = new RedBlackTree<>();
+      for (int value : new int[] {10, 5, 20, 15}) {
+        tree3.insert(value);
+      }
+      tree3.remove(5);
+      assertEquals(tree3.toLevelOrderString(), "[ 15, 10, 20 ]");
+      tree3.checkRBTreeProperties();
+
+      // black sibling 20 with black nephews: 20 turns red, the black root absorbs the extra black
+      RedBlackTree<Integer> tree4 = new RedBlackTree<>();
+      for (int value : new int[] {10, 5, 20}) {
+        tree4.insert(value);
+      }
+      setUncleBlack(tree4.findNodeWithData(5));
+      setUncleBlack(tree4.findNodeWithData(20));
+      tree4.remove(5);
+      assertEquals(tree4.toLevelOrderString(), "[ 10, 20 ]");
+      assertEquals(getBlackHeight(tree4.findNodeWithData(20)), 0);
+      tree4.checkRBTreeProperties();
+    }
+
+    @Test
+    /**
+     * This is a tester that runs random insertions and removals and checks every red-black tree
+     * property after each one, ending with the tree emptied again.
+     */
+    public void RandomInsertAndRemoveTest() {
+
+      RedBlackTree<Integer> tree = new RedBlackTree<>();
+      Random random = new Random(400);
+      List<Integer> stored = new ArrayList<>();
+      for (int i = 0; i < 5000; i++) {
+        int value = random.nextInt(1000);
+        if (tree.contains(value)) {
+          tree.remove(value);
+          stored.remove(Integer.valueOf(value));
+        } else {
+          tree.insert(value);
+          stored.add(value);
+        }
+        tree.checkRBTreeProperties();
+      }
+      assertEquals(tree.size(), stored.size());
+
+      for (Integer value : stored) {
+        tree.remove(value);
+        tree.checkRBTreeProperties();
+      }
+      assertTrue(tree.isEmpty());
+      assertEquals(tree.toLevelOrderString(), "[  ]");
+    }
+
+    @Test
+    /**
+     * This is a tester for rank and select. It compares them with a sorted list of the stored
+     * values while values are inserted and removed, including the ranks of values that are not in
+     * the tree and the bounds of select.
+     */
+    public void RankAndSelectTest() {
+
+      RedBlackTree<Integer> tree = new RedBlackTree<>();
+      Random random = new Random(23);
+      List<Integer> sorted = new ArrayList<>();
+      for (int i = 0; i < 2000; i++) {
+        // even values only, so odd values are never stored
+        int value = random.nextInt(500) * 2;
+        if (tree.contains(value)) {
+          tree.remove(value);
+          sorted.remove(Integer.valueOf(value));
+        } else {
+          tree.insert(value);
+          sorted.add(value);
+        }
+      }
+      Collections.sort(sorted);
+      tree.checkRBTreeProperties();
+
+      for (int i = 0; i < sorted.size(); i++) {
+        assertEquals(tree.select(i), sorted.get(i));
+        assertEquals(tree.rank(sorted.get(i)), i);
+        // an absent value ranks just after the values below it
+        assertEquals(tree.rank(sorted.get(i) + 1), i + 1);
+      }
+      assertEquals(tree.rank(-1), 0);
+      assertEquals(tree.rank(1000), sorted.size());
+
+      assertThrows(IndexOutOfBoundsException.class, () -> tree.select(-1));
+      assertThrows(IndexOutOfBoundsException.class, () -> tree.select(sorted.size()));
+      assertThrows(IndexOutOfBoundsException.class, () -> new RedBlackTree<Integer>().select(0));
+    }
+
+    @Test
+    /**
+     * This is a tester for floor, ceiling, higher, lower, first and last. It compares them with
+     * TreeSet for every value around the stored ones, stored or not.
+     */
+    public void NavigationTest() {
+
+      RedBlackTree<Integer> tree = new RedBlackTree<>();
+      TreeSet<Integer> expected = new TreeSet<>();
+      assertNull(tree.floor(5));
+      assertThrows(NoSuchElementException.class, () -> tree.first());
+
+      Random random = new Random(24);
+      for (int i = 0; i < 300; i++) {
+        int value = random.nextInt(100) * 3;
+        if (expected.add(value)) {
+          tree.insert(value);
+        }
+      }
+      for (int value = -2; value < 302; value++) {
+        assertEquals(tree.floor(value), expected.floor(value));
+        assertEquals(tree.ceiling(value), expected.ceiling(value));
+        assertEquals(tree.lower(value), expected.lower(value));
+        assertEquals(tree.higher(value), expected.higher(value));
+      }
+      assertEquals(tree.first(), expected.first());
+      assertEquals(tree.last(), expected.last());
+    }
+
+    @Test
+    /**
+     * This is a tester for subSet, headSet, tailSet and countInRange. It compares the views with
+     * those of TreeSet, and checks that the views follow later changes to the tree.
+     */
+    public void RangeViewTest() {
+
+      RedBlackTree<Integer> tree = new RedBlackTree<>();
+      TreeSet<Integer> expected = new TreeSet<>();
+      for (int value = 0; value < 200; value += 2) {
+        tree.insert(value);
+        expected.add(value);
+      }
+      for (int from = -1; from < 202; from += 7) {
+        for (int to = from; to < 202; to += 11) {
+          assertEquals(toList(tree.subSet(from, to)),
+              new ArrayList<>(expected.subSet(from, to)));
+          assertEquals(tree.subSet(from, to).size(), expected.subSet(from, to).size());
+          assertEquals(tree.countInRange(from, to), expected.subSet(from, to).size());
+        }
+        assertEquals(toList(tree.headSet(from)), new ArrayList<>(expected.headSet(from)));
+        assertEquals(toList(tree.tailSet(from)), new ArrayList<>(expected.tailSet(from)));
+        assertEquals(tree.tailSet(from).size(), expected.tailSet(from).size());
+      }
+      assertThrows(IllegalArgumentException.class, () -> tree.subSet(5, 4));
+
+      // the view is lazy, so it sees values inserted or removed after it was created
+      RedBlackTree<Integer>.SubSet view = tree.subSet(10, 20);
+      assertTrue(view.contains(12));
+      assertFalse(view.contains(13));
+      assertFalse(view.contains(20));
+      tree.insert(13);
+      tree.remove(12);
+      assertEquals(toList(view), Arrays.asList(10, 13, 14, 16, 18));
+      assertEquals(view.size(), 5);
+      assertTrue(tree.subSet(21, 22).isEmpty());
+    }
+
+    @Test
+    /**
+     * This is a tester for the iterator. It checks that iteration visits the values in ascending
+     * order, that an empty tree has nothing to visit, and that changing the tree during an
+     * iteration makes the iterator fail.
+     */
+    public void IteratorTest() {
+
+      RedBlackTree<Integer> tree = new RedBlackTree<>();
+      assertFalse(tree.iterator().hasNext());
+      assertThrows(NoSuchElementException.class, () -> tree.iterator().next());
+
+      TreeSet<Integer> expected = new TreeSet<>();
+      Random random = new Random(25);
+      for (int i = 0; i < 1000; i++) {
+        int value = random.nextInt(10000);
+        if (expected.add(value)) {
+          tree.insert(value);
+        }
+      }
+      assertEquals(toList(tree), new ArrayList<>(expected));
+
+      Iterator<Integer> iterator = tree.iterator();
+      iterator.next();
+      tree.insert(-1);
+      assertThrows(ConcurrentModificationException.class, () -> iterator.next());
+      Iterator<Integer> rangeIterator = tree.subSet(0, 5000).iterator();
+      tree.remove(-1);
+      assertThrows(ConcurrentModificationException.class, () -> rangeIterator.next());
+    }
+
+    @Test
+    /**
+     * This is a tester for the spliterator. It checks that splits report exact sizes and cover
+     * every value once in order, and that sequential and parallel streams see all values.
+     */
+    public void SpliteratorTest() {
+
+      RedBlackTree<Integer> tree = new RedBlackTree<>();
+      for (int value = 0; value < 10000; value++) {
+        tree.insert(value);
+      }
+
+      // split repeatedly and check that the parts hold exactly the values they report
+      List<Spliterator<Integer>> parts = new ArrayList<>();
+      parts.add(tree.spliterator());
+      for (int round = 0; round < 5; round++) {
+        List<Spliterator<Integer>> split = new ArrayList<>();
+        for (Spliterator<Integer> part : parts) {
+          Spliterator<Integer> prefix = part.trySplit();
+          if (prefix != null) {
+            split.add(prefix);
+          }
+          split.add(part);
+        }
+        parts = split;
+      }
+      assertTrue(parts.size() > 16);
+      List<Integer> values = new ArrayList<>();
+      for (Spliterator<Integer> part : parts) {
+        long reported = part.estimateSize();
+        int before = values.size();
+        part.forEachRemaining(values::add);
+        assertEquals(values.size() - before, reported);
+      }
+      assertEquals(values, toList(tree));
+
+      assertEquals(tree.stream().count(), 10000);
+      assertEquals(tree.parallelStream().mapToLong(Integer::longValue).sum(), 49995000L);
+      assertEquals(tree.parallelStream().filter(value -> value % 3 == 0).count(), 3334);
+    }
+
+    // Helper method to collect the values of a view
+    private List<Integer> toList(Iterable<Integer> values) {
+      List<Integer> list = new ArrayList<>();
+      for (Integer value : values) {
+        list.add(value);
+      }
+      return list;
+    }
+
     // Helper method to check the color of node
     private int getBlackHeight(RedBlackTree.Node<Integer> node) {
       return node.blackHeight;
@@ -0,0 +1,56 @@
+import benchmarks.Subject;
+
+/**
+ * Drives one of the MapADT implementations for the benchmarks, which load this class by name
+ * through Subject.mapADT.
+ */
+public class MapADTSubject implements Subject {
+
+  private final MapADT<Integer, Integer> map;
+
+  /**
+   * @param map         simple name of the MapADT implementation
+   * @param capacity    initial number of slots; HashtableMap keeps a power of two exactly
+   * @param concurrency expected number of writing threads, for ConcurrentHashtableMap
+   */
+  public MapADTSubject(String map, int capacity, int concurrency) {
+    switch (map) {
+      case "HashtableMap":
+        this.map = new HashtableMap<>(capacity);
+        break;
+      case "CuckooHashtableMap":
+        this.map = new CuckooHashtableMap<>(capacity);
+        break;
+      case "ConcurrentHashtableMap":
+        this.map = new ConcurrentHashtableMap<>(capacity, concurrency);
+        break;
+      default:
+        throw new IllegalArgumentException("unknown map " + map);
+    }
+  }
+
+  @Override
+  public void put(Integer key, Integer value) {
+    map.put(key, value);
+  }
+
+  @Override
+  public Integer get(Integer key) {
+    return map.get(key);
+  }
+
+  @Override
+  public Integer putIfAbsent(Integer key, Integer value) {
+    return map.putIfAbsent(key, value);
+  }
+
+  @Override
+  public boolean containsKey(Integer key) {
+    return map.containsKey(key);
+  }
+
+  @Override
+  public Integer remove(Integer key) {
+    return map.remove(key);
+  }
+}
@@ -0,0 +1,111 @@
+package benchmarks;
+
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.infra.ThreadParams;
+
+/**
+ * Measures the throughput of ConcurrentHashtableMap against a HashtableMap that every thread
+ * shares behind one global lock, under a mix of 90% get and 10% put/remove on a shared key range
+ * that starts half full.
+ *
+ * From CS400_P03/benchmarks, with -t to change the number of threads:
+ * <pre>
+ *   java -jar target/benchmarks.jar ConcurrentHashtableMapBenchmark -t 8
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@Threads(4)
+public class ConcurrentHashtableMapBenchmark {
+
+  private static final int KEY_RANGE = 1 << 20;
+
+  /**
+   * The map every thread works on.
+   */
+  @State(Scope.Benchmark)
+  public static class Shared {
+    @Param({"HashtableMap", "ConcurrentHashtableMap"})
+    String map;
+
+    Subject subject;
+    // HashtableMap is not thread-safe, so every operation on it holds the subject's monitor
+    boolean locked;
+    // the keys boxed up front, so the threads allocate nothing for them
+    Integer[] keys;
+
+    @Setup(Level.Trial)
+    public void fill(ThreadParams threads) {
+      locked = map.equals("HashtableMap");
+      subject = Subject.mapADT(map, KEY_RANGE, threads.getThreadCount() * 4);
+      keys = new Integer[KEY_RANGE];
+      for (int key = 0; key < KEY_RANGE; key++) {
+        keys[key] = key;
+        if ((key & 1) == 0) {
+          subject.put(keys[key], keys[key]);
+        }
+      }
+    }
+  }
+
+  /**
+   * The key and operation choices of one thread.
+   */
+  @State(Scope.Thread)
+  public static class Worker {
+    SplittableRandom random;
+
+    @Setup(Level.Trial)
+    public void seed(ThreadParams threads) {
+      random = new SplittableRandom(threads.getThreadIndex());
+    }
+  }
+
+  @Benchmark
+  public void mixed(Shared shared, Worker worker, Blackhole blackhole) {
+    Integer key = shared.keys[worker.random.nextInt(KEY_RANGE)];
+    boolean write = worker.random.nextInt(10) == 0;
+    if (shared.locked) {
+      synchronized (shared.subject) {
+        operate(shared.subject, key, write, blackhole);
+      }
+    } else {
+      operate(shared.subject, key, write, blackhole);
+    }
+  }
+
+  /**
+   * Reads key, or inserts it when absent and removes it when present. Other threads may remove key
+   * in between, so a missing key is not an error here.
+   */
+  private static void operate(Subject subject, Integer key, boolean write, Blackhole blackhole) {
+    try {
+      if (!write) {
+        blackhole.consume(subject.get(key));
+      } else if (subject.putIfAbsent(key, key) != null) {
+        blackhole.consume(subject.remove(key));
+      }
+    } catch (NoSuchElementException e) {
+      // lost a race against another thread, or a plain miss
+    }
+  }
+}
@@ -0,0 +1,77 @@
+package benchmarks;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the get latency distribution of CuckooHashtableMap against HashtableMap. Both maps
+ * grow from their default capacity to hold the same random keys, and gets of stored keys picked
+ * at random are sampled one by one, so the reported percentiles up to p99.99 show the long probe
+ * sequences that averages hide.
+ *
+ * From CS400_P03/benchmarks:
+ * <pre>
+ *   java -jar target/benchmarks.jar CuckooHashtableMapBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class CuckooHashtableMapBenchmark {
+
+  // gets are replayed from a ring of this many random keys
+  private static final int LOOKUPS = 1 << 20;
+
+  @Param({"HashtableMap", "CuckooHashtableMap"})
+  String map;
+
+  @Param({"1048576"})
+  int entries;
+
+  private Subject subject;
+  private Integer[] lookups;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void fill() {
+    Random random = new Random(42);
+    Set<Integer> distinct = new HashSet<>();
+    while (distinct.size() < entries) {
+      distinct.add(random.nextInt());
+    }
+    Integer[] keys = distinct.toArray(new Integer[0]);
+    subject = Subject.mapADT(map, 16, 1);
+    for (Integer key : keys) {
+      subject.put(key, key);
+    }
+    lookups = new Integer[LOOKUPS];
+    for (int i = 0; i < LOOKUPS; i++) {
+      lookups[i] = keys[random.nextInt(keys.length)];
+    }
+  }
+
+  @Benchmark
+  public void get(Blackhole blackhole) {
+    Integer key = lookups[next];
+    next = (next + 1) & (LOOKUPS - 1);
+    blackhole.consume(subject.get(key));
+  }
+}
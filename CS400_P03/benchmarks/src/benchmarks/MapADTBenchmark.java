@@ -0,0 +1,348 @@
+package benchmarks;
+
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * JMH benchmarks comparing HashtableMap with java.util.HashMap on put, get, containsKey, remove
+ * and a churn mix of gets and remove-then-put, over every combination of these parameters:
+ * <ul>
+ *   <li>map: HashtableMap or HashMap</li>
+ *   <li>capacity: the number of table slots, a power of two from 1K up; 134217728 stores about
+ *       94M keys at load 0.7 and needs a heap of several tens of GB</li>
+ *   <li>distribution: sequential keys touched in order, or scattered keys touched uniformly or
+ *       with a Zipfian skew (theta 0.99, like YCSB)</li>
+ *   <li>load: the fraction of slots in use. Both maps get exactly capacity slots, which
+ *       HashtableMap and HashMap both keep as powers of two, and (int) (capacity * load) keys, so
+ *       the load is exact rather than rounded. Loads of 0.7 and up make HashtableMap resize.</li>
+ *   <li>churn: the fraction of churn operations that remove a key and put another, for the churn
+ *       benchmark only</li>
+ * </ul>
+ * get, containsKey and churn time single operations against a full map. put fills an empty map
+ * and remove drains a full one, each once per iteration, so their scores are per fill or drain of
+ * all the keys. Keys are boxed during setup, so allocation reflects the maps themselves.
+ *
+ * From CS400_P03/benchmarks, build the self-contained jar once and run it, adding -prof gc to
+ * report the bytes allocated per operation and the collections they caused. For put and remove the
+ * profiler also counts what the setup before each iteration allocates, which for remove is the
+ * whole refilled map.
+ * <pre>
+ *   mvn -B package
+ *   java -jar target/benchmarks.jar MapADTBenchmark -prof gc
+ * </pre>
+ * After the first build, mvn -o -B package works offline. Parameters can be narrowed or extended
+ * with -p, e.g. -p map=HashtableMap -p capacity=134217728 -jvmArgsAppend -Xmx48g.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class MapADTBenchmark {
+
+  private static final double ZIPF_THETA = 0.99;
+  // accesses are replayed from a ring of this many positions
+  private static final int ACCESSES = 1 << 20;
+  // keys never stored that churn swaps in, and receives the removed keys back into
+  private static final int SPARES = 1 << 16;
+
+  /**
+   * The parameters and the keys they determine, generated once per trial.
+   */
+  @State(Scope.Benchmark)
+  public static class Workload {
+    @Param({"HashtableMap", "HashMap"})
+    String map;
+
+    @Param({"1024", "131072", "16777216"})
+    int capacity;
+
+    @Param({"sequential", "uniform", "zipfian"})
+    String distribution;
+
+    @Param({"0.25", "0.5", "0.7"})
+    double load;
+
+    // the stored keys, and keys guaranteed not to be stored
+    Integer[] keys;
+    Integer[] absent;
+    // positions within keys touched by successive operations
+    int[] accesses;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void generate() {
+      if (Integer.bitCount(capacity) != 1) {
+        throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+      }
+      int size = (int) (capacity * load);
+      boolean sequential = distribution.equals("sequential");
+      keys = new Integer[size];
+      for (int i = 0; i < size; i++) {
+        keys[i] = key(i, sequential);
+      }
+      absent = new Integer[ACCESSES];
+      for (int i = 0; i < ACCESSES; i++) {
+        absent[i] = key(Integer.MIN_VALUE + i, sequential);
+      }
+
+      accesses = new int[ACCESSES];
+      Random random = new Random(size);
+      if (sequential) {
+        for (int i = 0; i < ACCESSES; i++) {
+          accesses[i] = i % size;
+        }
+      } else if (distribution.equals("uniform")) {
+        for (int i = 0; i < ACCESSES; i++) {
+          accesses[i] = random.nextInt(size);
+        }
+      } else if (distribution.equals("zipfian")) {
+        zipfian(random, size, accesses);
+      } else {
+        throw new IllegalArgumentException("unknown distribution " + distribution);
+      }
+    }
+
+    /**
+     * @return the position within keys that the next operation touches
+     */
+    int nextAccess() {
+      int access = accesses[next];
+      next = (next + 1) & (ACCESSES - 1);
+      return access;
+    }
+
+    /**
+     * @return an empty map of the kind under test with exactly capacity slots; HashMap gets a
+     *         load factor just above load so it does not resize either
+     */
+    Subject create() {
+      if (map.equals("HashtableMap")) {
+        return Subject.mapADT(map, capacity, 1);
+      }
+      if (map.equals("HashMap")) {
+        HashMap<Integer, Integer> hashMap =
+            new HashMap<>(capacity, (float) Math.min(1, load + 0.01));
+        return new Subject() {
+          public void put(Integer key, Integer value) {
+            hashMap.put(key, value);
+          }
+
+          public Integer get(Integer key) {
+            return hashMap.get(key);
+          }
+
+          public Integer putIfAbsent(Integer key, Integer value) {
+            return hashMap.putIfAbsent(key, value);
+          }
+
+          public boolean containsKey(Integer key) {
+            return hashMap.containsKey(key);
+          }
+
+          public Integer remove(Integer key) {
+            return hashMap.remove(key);
+          }
+        };
+      }
+      throw new IllegalArgumentException("unknown map " + map);
+    }
+
+    Subject createFilled() {
+      Subject subject = create();
+      for (Integer key : keys) {
+        subject.put(key, key);
+      }
+      return subject;
+    }
+  }
+
+  /**
+   * A map holding every stored key for the whole trial, for the operations that leave it full.
+   */
+  @State(Scope.Benchmark)
+  public static class Full {
+    Subject subject;
+
+    @Setup(Level.Trial)
+    public void fill(Workload workload) {
+      subject = workload.createFilled();
+    }
+  }
+
+  /**
+   * A map holding every stored key for the whole trial, whose keys churn replaces as it goes.
+   */
+  @State(Scope.Benchmark)
+  public static class Churn {
+    @Param({"0.1", "0.5"})
+    double churn;
+
+    Subject subject;
+    // the key currently stored at each position of the workload's keys
+    Integer[] current;
+    Integer[] spares;
+    private int spare;
+    // replacements are spread evenly, a churn fraction of the operations are remove-then-put
+    private double debt;
+
+    @Setup(Level.Trial)
+    public void fill(Workload workload) {
+      subject = workload.createFilled();
+      current = workload.keys.clone();
+      spares = new Integer[SPARES];
+      boolean sequential = workload.distribution.equals("sequential");
+      for (int i = 0; i < SPARES; i++) {
+        spares[i] = key(current.length + i, sequential);
+      }
+    }
+  }
+
+  /**
+   * A map refilled before every iteration, for remove to drain.
+   */
+  @State(Scope.Benchmark)
+  public static class Refilled {
+    Subject subject;
+
+    @Setup(Level.Iteration)
+    public void fill(Workload workload) {
+      subject = workload.createFilled();
+    }
+  }
+
+  /**
+   * A map emptied before every iteration, for put to fill.
+   */
+  @State(Scope.Benchmark)
+  public static class Empty {
+    Subject subject;
+
+    @Setup(Level.Iteration)
+    public void create(Workload workload) {
+      subject = workload.create();
+    }
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 5)
+  @Measurement(iterations = 10)
+  public Subject put(Workload workload, Empty empty) {
+    Subject subject = empty.subject;
+    for (Integer key : workload.keys) {
+      subject.put(key, key);
+    }
+    return subject;
+  }
+
+  @Benchmark
+  public Integer get(Workload workload, Full full) {
+    return full.subject.get(workload.keys[workload.nextAccess()]);
+  }
+
+  /**
+   * Looks up one stored and one absent key, so hits and misses weigh the same.
+   */
+  @Benchmark
+  @OperationsPerInvocation(2)
+  public void containsKey(Workload workload, Full full, Blackhole blackhole) {
+    int access = workload.nextAccess();
+    blackhole.consume(full.subject.containsKey(workload.keys[access]));
+    blackhole.consume(full.subject.containsKey(workload.absent[access & (ACCESSES - 1)]));
+  }
+
+  /**
+   * Removal needs every key present, so keys go once each, in stored order.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 5)
+  @Measurement(iterations = 10)
+  public void remove(Workload workload, Refilled refilled, Blackhole blackhole) {
+    Subject subject = refilled.subject;
+    for (Integer key : workload.keys) {
+      blackhole.consume(subject.remove(key));
+    }
+  }
+
+  /**
+   * Either gets a key or replaces it by a spare one, which puts the removed key among the spares.
+   */
+  @Benchmark
+  public void churn(Workload workload, Churn churn, Blackhole blackhole) {
+    int access = workload.nextAccess();
+    Integer key = churn.current[access];
+    churn.debt += churn.churn;
+    if (churn.debt >= 1) {
+      churn.debt -= 1;
+      Integer replacement = churn.spares[churn.spare];
+      blackhole.consume(churn.subject.remove(key));
+      churn.subject.put(replacement, replacement);
+      churn.current[access] = replacement;
+      churn.spares[churn.spare] = key;
+      churn.spare = (churn.spare + 1) & (SPARES - 1);
+    } else {
+      blackhole.consume(churn.subject.get(key));
+    }
+  }
+
+  /**
+   * Sequential keys are the counter itself; the others scatter it with the MurmurHash3 finalizer,
+   * which is a bijection on int, so distinct counters always give distinct keys.
+   */
+  private static Integer key(int counter, boolean sequential) {
+    if (sequential) {
+      return counter;
+    }
+    counter ^= counter >>> 16;
+    counter *= 0x85EBCA6B;
+    counter ^= counter >>> 13;
+    counter *= 0xC2B2AE35;
+    counter ^= counter >>> 16;
+    return counter;
+  }
+
+  /**
+   * Fills accesses with positions below n drawn from a Zipfian distribution, using the generator
+   * of Gray et al. that YCSB uses. Position 0 is the most popular; as the stored keys are
+   * scattered, so are the popular ones.
+   */
+  private static void zipfian(Random random, int n, int[] accesses) {
+    double zetaN = 0;
+    for (int i = 1; i <= n; i++) {
+      zetaN += 1 / Math.pow(i, ZIPF_THETA);
+    }
+    double zeta2 = 1 + 1 / Math.pow(2, ZIPF_THETA);
+    double alpha = 1 / (1 - ZIPF_THETA);
+    double eta = (1 - Math.pow(2.0 / n, 1 - ZIPF_THETA)) / (1 - zeta2 / zetaN);
+    for (int i = 0; i < accesses.length; i++) {
+      double u = random.nextDouble();
+      double uz = u * zetaN;
+      if (uz < 1) {
+        accesses[i] = 0;
+      } else if (uz < zeta2) {
+        accesses[i] = Math.min(1, n - 1);
+      } else {
+        accesses[i] = (int) Math.min(n - 1, n * Math.pow(eta * u - eta + 1, alpha));
+      }
+    }
+  }
+}
@@ -0,0 +1,34 @@
+package benchmarks;
+
+/**
+ * The operations of a map under test, so MapADT and java.util.Map are driven the same way. The
+ * MapADT implementations live in the default package, which a named package cannot import, so
+ * they are adapted by MapADTSubject there and loaded by name.
+ */
+public interface Subject {
+  void put(Integer key, Integer value);
+
+  Integer get(Integer key);
+
+  Integer putIfAbsent(Integer key, Integer value);
+
+  boolean containsKey(Integer key);
+
+  Integer remove(Integer key);
+
+  /**
+   * @param map         simple name of a MapADT implementation
+   * @param capacity    initial number of slots
+   * @param concurrency expected number of writing threads, for ConcurrentHashtableMap
+   * @return a subject driving a new, empty map of that kind
+   */
+  static Subject mapADT(String map, int capacity, int concurrency) {
+    try {
+      return (Subject) Class.forName("MapADTSubject")
+          .getConstructor(String.class, int.class, int.class)
+          .newInstance(map, capacity, concurrency);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,215 @@
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.IntPredicate;
+
+/**
+ * Open-addressing hashtable that stores its mappings in parallel keys, values and hashes arrays
+ * instead of one Entry object per mapping. Every key's hashCode is cached next to it, so a probe can
+ * reject most mismatching slots by comparing two ints without dereferencing the stored key. Removed
+ * slots are marked with a shared sentinel key and reused by later insertions.
+ */
+public class ArrayHashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueType> {
+
+  private static final int DEFAULT_CAPACITY = 8;
+  private static final double LOAD_FACTOR_THRESHOLD = 0.7;
+
+  // marks a slot whose mapping was removed, so probe sequences keep walking past it
+  private static final Object REMOVED = new Object();
+
+  private Object[] keys;
+  private Object[] values;
+  private int[] hashes;
+  private int size;
+
+  public ArrayHashtableMap(int capacity) {
+    keys = new Object[capacity];
+    values = new Object[capacity];
+    hashes = new int[capacity];
+    size = 0;
+  }
+
+  public ArrayHashtableMap() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  @Override
+  public void put(KeyType key, ValueType value) throws IllegalArgumentException {
+    if (key == null) {
+      throw new IllegalArgumentException();
+    }
+
+    int hash = key.hashCode();
+    int index = getIndex(hash, keys.length);
+    int insertIndex = -1;
+
+    // a single probe both rejects duplicates and remembers the first reusable slot
+    for (int probes = 0; probes < keys.length && keys[index] != null; probes++) {
+      Object stored = keys[index];
+      if (stored == REMOVED) {
+        if (insertIndex < 0) {
+          insertIndex = index;
+        }
+      } else if (hashes[index] == hash && stored.equals(key)) {
+        throw new IllegalArgumentException();
+      }
+      index = (index + 1) % keys.length;
+    }
+    if (insertIndex < 0) {
+      insertIndex = index;
+    }
+
+    keys[insertIndex] = key;
+    values[insertIndex] = value;
+    hashes[insertIndex] = hash;
+    size++;
+
+    if ((double) size >= keys.length * LOAD_FACTOR_THRESHOLD) {
+      resizeTable();
+    }
+  }
+
+  @Override
+  public boolean containsKey(KeyType key) {
+    return key != null && findIndex(key) >= 0;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public ValueType get(KeyType key) throws NoSuchElementException {
+    int index = key == null ? -1 : findIndex(key);
+    if (index < 0) {
+      throw new NoSuchElementException();
+    }
+    return (ValueType) values[index];
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public ValueType remove(KeyType key) throws NoSuchElementException {
+    int index = key == null ? -1 : findIndex(key);
+    if (index < 0) {
+      throw new NoSuchElementException();
+    }
+    ValueType value = (ValueType) values[index];
+    keys[index] = REMOVED;
+    values[index] = null;
+    size--;
+    return value;
+  }
+
+  @Override
+  public void clear() {
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = null;
+      values[i] = null;
+    }
+    size = 0;
+  }
+
+  @Override
+  public int getSize() {
+    return size;
+  }
+
+  @Override
+  public int getCapacity() {
+    return keys.length;
+  }
+
+  /**
+   * Splits the table by slot range. The table keeps no entry objects, so every entry is a new
+   * immutable pair; keySpliterator and valueSpliterator read the arrays without allocating.
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public Spliterator<Map.Entry<KeyType, ValueType>> entrySpliterator() {
+    Object[] k = keys;
+    Object[] v = values;
+    return new TableSpliterator<>(occupied(k),
+        i -> new AbstractMap.SimpleImmutableEntry<>((KeyType) k[i], (ValueType) v[i]), 0, k.length,
+        size, Spliterator.DISTINCT | Spliterator.NONNULL);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public Spliterator<KeyType> keySpliterator() {
+    Object[] k = keys;
+    return new TableSpliterator<>(occupied(k), i -> (KeyType) k[i], 0, k.length, size,
+        Spliterator.DISTINCT | Spliterator.NONNULL);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public Spliterator<ValueType> valueSpliterator() {
+    Object[] k = keys;
+    Object[] v = values;
+    return new TableSpliterator<>(occupied(k), i -> (ValueType) v[i], 0, k.length, size, 0);
+  }
+
+  /**
+   * Counts the slots a lookup of key inspects before it either finds the key or reaches an empty
+   * slot. Used by tests to compare probe-length distributions between tables.
+   */
+  int probeLength(Object key) {
+    int hash = key.hashCode();
+    int index = getIndex(hash, keys.length);
+
+    for (int probes = 0; probes < keys.length; probes++) {
+      if (keys[index] == null || (hashes[index] == hash && keys[index].equals(key))) {
+        return probes + 1;
+      }
+      index = (index + 1) % keys.length;
+    }
+    return keys.length;
+  }
+
+  /**
+   * Finds the slot holding key, comparing cached hashes before calling equals.
+   *
+   * @return the slot index, or -1 when key is not stored in this table
+   */
+  private int findIndex(Object key) {
+    int hash = key.hashCode();
+    int index = getIndex(hash, keys.length);
+
+    for (int probes = 0; probes < keys.length && keys[index] != null; probes++) {
+      if (hashes[index] == hash && keys[index] != REMOVED && keys[index].equals(key)) {
+        return index;
+      }
+      index = (index + 1) % keys.length;
+    }
+    return -1;
+  }
+
+  private static IntPredicate occupied(Object[] k) {
+    return i -> k[i] != null && k[i] != REMOVED;
+  }
+
+  private static int getIndex(int hash, int length) {
+    return (hash & 0x7fffffff) % length;
+  }
+
+  private void resizeTable() {
+    Object[] oldKeys = keys;
+    Object[] oldValues = values;
+    int[] oldHashes = hashes;
+    keys = new Object[oldKeys.length * 2];
+    values = new Object[oldKeys.length * 2];
+    hashes = new int[oldKeys.length * 2];
+
+    // live keys are already known to be distinct, so they are placed without an equality check
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != null && oldKeys[i] != REMOVED) {
+        int index = getIndex(oldHashes[i], keys.length);
+        while (keys[index] != null) {
+          index = (index + 1) % keys.length;
+        }
+        keys[index] = oldKeys[i];
+        values[index] = oldValues[i];
+        hashes[index] = oldHashes[i];
+      }
+    }
+  }
+}
@@ -0,0 +1,479 @@
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.BiFunction;
+import java.util.function.ToIntBiFunction;
+
+/**
+ * MapADT that holds at most a maximum total weight of entries and evicts entries chosen by an
+ * EvictionPolicy to stay within it. Without a weigher every entry weighs 1, so the maximum weight
+ * is simply the maximum number of entries.
+ *
+ * The table is a Robin Hood hashtable like RobinHoodHashtableMap whose values are Node objects.
+ * A node carries the links the policy orders it by, so a get is a single probe followed by a
+ * constant-time relink, and eviction needs no search. Hits, misses and evictions are counted.
+ */
+public class BoundedCacheMap<KeyType, ValueType> implements MapADT<KeyType, ValueType> {
+
+  private static final int DEFAULT_CAPACITY = 8;
+  private static final double LOAD_FACTOR_THRESHOLD = 0.7;
+
+  private final long maximumWeight;
+  private final ToIntBiFunction<? super KeyType, ? super ValueType> weigher;
+  private final EvictionPolicy<KeyType, ValueType> policy;
+  private Object[] keys;
+  private Object[] nodes;
+  private int[] hashes;
+  private int size;
+  private long weight;
+  private long hitCount;
+  private long missCount;
+  private long evictionCount;
+
+  /**
+   * @param maximumWeight largest total weight of the entries kept
+   * @param weigher       computes the weight of an entry, or null to give every entry weight 1
+   * @param policy        chooses the entries to evict, used by this cache only
+   */
+  public BoundedCacheMap(long maximumWeight,
+      ToIntBiFunction<? super KeyType, ? super ValueType> weigher,
+      EvictionPolicy<KeyType, ValueType> policy) {
+    if (maximumWeight <= 0 || policy == null) {
+      throw new IllegalArgumentException();
+    }
+    this.maximumWeight = maximumWeight;
+    this.weigher = weigher;
+    this.policy = policy;
+    policy.setMaximumWeight(maximumWeight);
+    keys = new Object[DEFAULT_CAPACITY];
+    nodes = new Object[DEFAULT_CAPACITY];
+    hashes = new int[DEFAULT_CAPACITY];
+  }
+
+  /**
+   * @return a cache of at most maximumSize entries that evicts the least recently used one
+   */
+  public static <K, V> BoundedCacheMap<K, V> lru(int maximumSize) {
+    return new BoundedCacheMap<>(maximumSize, null, new LruEvictionPolicy<>());
+  }
+
+  /**
+   * @return a cache of at most maximumSize entries that evicts by Window TinyLFU
+   */
+  public static <K, V> BoundedCacheMap<K, V> tinyLfu(int maximumSize) {
+    return new BoundedCacheMap<>(maximumSize, null, new WTinyLfuEvictionPolicy<>());
+  }
+
+  @Override
+  public void put(KeyType key, ValueType value) throws IllegalArgumentException {
+    if (key == null || findIndex(key) >= 0) {
+      throw new IllegalArgumentException();
+    }
+    insert(key, value);
+  }
+
+  @Override
+  public ValueType putIfAbsent(KeyType key, ValueType value) throws IllegalArgumentException {
+    if (key == null) {
+      throw new IllegalArgumentException();
+    }
+
+    int index = findIndex(key);
+    if (index >= 0) {
+      Node<KeyType, ValueType> node = nodeAt(index);
+      policy.onAccess(node);
+      return node.value;
+    }
+    insert(key, value);
+    return null;
+  }
+
+  @Override
+  public ValueType replace(KeyType key, ValueType value) throws NoSuchElementException {
+    int index = key == null ? -1 : findIndex(key);
+    if (index < 0) {
+      throw new NoSuchElementException();
+    }
+
+    ValueType previous = nodeAt(index).value;
+    update(nodeAt(index), value);
+    evictIfNeeded();
+    return previous;
+  }
+
+  @Override
+  public ValueType compute(KeyType key,
+      BiFunction<? super KeyType, ? super ValueType, ? extends ValueType> function)
+      throws IllegalArgumentException {
+    if (key == null) {
+      throw new IllegalArgumentException();
+    }
+
+    int index = findIndex(key);
+    Node<KeyType, ValueType> node = index >= 0 ? nodeAt(index) : null;
+    ValueType newValue = function.apply(key, node == null ? null : node.value);
+    if (node == null) {
+      if (newValue != null) {
+        insert(key, newValue);
+      }
+    } else if (newValue == null) {
+      removeAt(index);
+      policy.onRemove(node);
+    } else {
+      update(node, newValue);
+      evictIfNeeded();
+    }
+    return newValue;
+  }
+
+  @Override
+  public boolean containsKey(KeyType key) {
+    return key != null && findIndex(key) >= 0;
+  }
+
+  /**
+   * Looks key up, counting a hit or a miss and telling the policy about the access.
+   */
+  @Override
+  public ValueType get(KeyType key) throws NoSuchElementException {
+    Node<KeyType, ValueType> node = key == null ? null : lookup(key);
+    if (node == null) {
+      throw new NoSuchElementException();
+    }
+    return node.value;
+  }
+
+  /**
+   * Like get, but reports a miss through null instead of an exception.
+   *
+   * @return the value mapped to key, or null when key is not cached
+   */
+  public ValueType getIfPresent(KeyType key) {
+    Node<KeyType, ValueType> node = key == null ? null : lookup(key);
+    return node == null ? null : node.value;
+  }
+
+  @Override
+  public ValueType remove(KeyType key) throws NoSuchElementException {
+    int index = key == null ? -1 : findIndex(key);
+    if (index < 0) {
+      throw new NoSuchElementException();
+    }
+
+    Node<KeyType, ValueType> node = nodeAt(index);
+    removeAt(index);
+    policy.onRemove(node);
+    return node.value;
+  }
+
+  @Override
+  public void clear() {
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = null;
+      nodes[i] = null;
+    }
+    policy.clear();
+    size = 0;
+    weight = 0;
+  }
+
+  @Override
+  public int getSize() {
+    return size;
+  }
+
+  @Override
+  public int getCapacity() {
+    return keys.length;
+  }
+
+  /**
+   * @return the total weight of the cached entries
+   */
+  public long getWeight() {
+    return weight;
+  }
+
+  public long getMaximumWeight() {
+    return maximumWeight;
+  }
+
+  // number of get and getIfPresent calls that found their key
+  public long getHitCount() {
+    return hitCount;
+  }
+
+  // number of get and getIfPresent calls that did not find their key
+  public long getMissCount() {
+    return missCount;
+  }
+
+  // number of entries removed to stay within the maximum weight
+  public long getEvictionCount() {
+    return evictionCount;
+  }
+
+  /**
+   * Splits the table by slot range and hands out the cache's own nodes. Traversal does not count
+   * as access, so it changes neither the counters nor the eviction order.
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public Spliterator<Map.Entry<KeyType, ValueType>> entrySpliterator() {
+    Object[] n = nodes;
+    return new TableSpliterator<>(i -> n[i] != null, i -> (Node<KeyType, ValueType>) n[i], 0,
+        n.length, size, Spliterator.DISTINCT | Spliterator.NONNULL);
+  }
+
+  private Node<KeyType, ValueType> lookup(KeyType key) {
+    int index = findIndex(key);
+    if (index < 0) {
+      missCount++;
+      policy.onMiss(key.hashCode());
+      return null;
+    }
+
+    Node<KeyType, ValueType> node = nodeAt(index);
+    hitCount++;
+    policy.onAccess(node);
+    return node;
+  }
+
+  private void insert(KeyType key, ValueType value) {
+    if ((double) (size + 1) >= keys.length * LOAD_FACTOR_THRESHOLD) {
+      resizeTable();
+    }
+
+    Node<KeyType, ValueType> node = new Node<>(key, value, key.hashCode(), weigh(key, value));
+    RobinHoodHashtableMap.insert(keys, nodes, hashes, key, node, node.hash);
+    // the insertion only moved nodes between the home slot and the first empty slot after it
+    updateSlots(RobinHoodHashtableMap.getIndex(node.hash, keys.length));
+    size++;
+    weight += node.weight;
+    policy.onInsert(node);
+    evictIfNeeded();
+  }
+
+  private void update(Node<KeyType, ValueType> node, ValueType value) {
+    int oldWeight = node.weight;
+    node.value = value;
+    node.weight = weigh(node.key, value);
+    weight += node.weight - oldWeight;
+    policy.onUpdate(node, oldWeight);
+  }
+
+  private int weigh(KeyType key, ValueType value) {
+    if (weigher == null) {
+      return 1;
+    }
+    int entryWeight = weigher.applyAsInt(key, value);
+    if (entryWeight < 0) {
+      throw new IllegalArgumentException("negative weight");
+    }
+    return entryWeight;
+  }
+
+  /**
+   * Evicts the policy's victims until the total weight is within the maximum. Each victim knows
+   * its slot, so eviction does not probe the table at all.
+   */
+  private void evictIfNeeded() {
+    while (weight > maximumWeight) {
+      Node<KeyType, ValueType> victim = policy.nextVictim();
+      if (victim == null) {
+        break;
+      }
+      removeAt(victim.slot);
+      evictionCount++;
+    }
+  }
+
+  private void removeAt(int index) {
+    weight -= nodeAt(index).weight;
+    RobinHoodHashtableMap.shiftBackward(keys, nodes, hashes, index);
+    // the shift only moved the nodes from index up to the slot it emptied
+    updateSlots(index);
+    size--;
+  }
+
+  /**
+   * Records in each node its current slot, walking from index to the next empty slot.
+   */
+  private void updateSlots(int index) {
+    while (nodes[index] != null) {
+      nodeAt(index).slot = index;
+      index = (index + 1) % nodes.length;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private Node<KeyType, ValueType> nodeAt(int index) {
+    return (Node<KeyType, ValueType>) nodes[index];
+  }
+
+  /**
+   * Finds the slot holding key, stopping early like RobinHoodHashtableMap does.
+   *
+   * @return the slot index, or -1 when key is not cached
+   */
+  private int findIndex(Object key) {
+    int hash = key.hashCode();
+    int index = RobinHoodHashtableMap.getIndex(hash, keys.length);
+
+    for (int distance = 0; distance < keys.length; distance++) {
+      if (keys[index] == null
+          || RobinHoodHashtableMap.probeDistance(hashes[index], index, keys.length) < distance) {
+        return -1;
+      }
+      if (hashes[index] == hash && keys[index].equals(key)) {
+        return index;
+      }
+      index = (index + 1) % keys.length;
+    }
+    return -1;
+  }
+
+  private void resizeTable() {
+    Object[] oldKeys = keys;
+    Object[] oldNodes = nodes;
+    int[] oldHashes = hashes;
+    keys = new Object[oldKeys.length * 2];
+    nodes = new Object[oldKeys.length * 2];
+    hashes = new int[oldKeys.length * 2];
+
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != null) {
+        RobinHoodHashtableMap.insert(keys, nodes, hashes, oldKeys[i], oldNodes[i], oldHashes[i]);
+      }
+    }
+    for (int i = 0; i < nodes.length; i++) {
+      if (nodes[i] != null) {
+        nodeAt(i).slot = i;
+      }
+    }
+  }
+
+
+  /**
+   * A cached entry, also linked into the queues of the eviction policy. It is read-only as a
+   * Map.Entry, since a new value could change its weight; use replace instead.
+   */
+  public static class Node<KeyType, ValueType> implements Map.Entry<KeyType, ValueType> {
+    private final KeyType key;
+    private final int hash;
+    private ValueType value;
+    private int weight;
+    // index of the node in the cache's table, updated whenever Robin Hood probing moves it
+    private int slot;
+    // links and queue number owned by the eviction policy
+    Node<KeyType, ValueType> previous;
+    Node<KeyType, ValueType> next;
+    int queue;
+
+    Node(KeyType key, ValueType value, int hash, int weight) {
+      this.key = key;
+      this.value = value;
+      this.hash = hash;
+      this.weight = weight;
+    }
+
+    @Override
+    public KeyType getKey() {
+      return key;
+    }
+
+    @Override
+    public ValueType getValue() {
+      return value;
+    }
+
+    @Override
+    public ValueType setValue(ValueType value) {
+      throw new UnsupportedOperationException();
+    }
+
+    // the key's hashCode
+    public int getHash() {
+      return hash;
+    }
+
+    public int getWeight() {
+      return weight;
+    }
+  }
+
+  /**
+   * Doubly linked queue of nodes that tracks their total weight, for use by eviction policies. A
+   * node may be in at most one queue at a time.
+   */
+  static class NodeQueue<KeyType, ValueType> {
+    private Node<KeyType, ValueType> first;
+    private Node<KeyType, ValueType> last;
+    private long weight;
+
+    Node<KeyType, ValueType> peekFirst() {
+      return first;
+    }
+
+    Node<KeyType, ValueType> peekLast() {
+      return last;
+    }
+
+    long getWeight() {
+      return weight;
+    }
+
+    void addLast(Node<KeyType, ValueType> node) {
+      node.previous = last;
+      node.next = null;
+      if (last == null) {
+        first = node;
+      } else {
+        last.next = node;
+      }
+      last = node;
+      weight += node.weight;
+    }
+
+    void remove(Node<KeyType, ValueType> node) {
+      if (node.previous == null) {
+        first = node.next;
+      } else {
+        node.previous.next = node.next;
+      }
+      if (node.next == null) {
+        last = node.previous;
+      } else {
+        node.next.previous = node.previous;
+      }
+      node.previous = null;
+      node.next = null;
+      weight -= node.weight;
+    }
+
+    void moveToLast(Node<KeyType, ValueType> node) {
+      if (node != last) {
+        remove(node);
+        addLast(node);
+      }
+    }
+
+    // accounts for a change of node's weight from oldWeight while it is in this queue
+    void reweigh(Node<KeyType, ValueType> node, int oldWeight) {
+      weight += node.weight - oldWeight;
+    }
+
+    void clear() {
+      Node<KeyType, ValueType> node = first;
+      while (node != null) {
+        Node<KeyType, ValueType> next = node.next;
+        node.previous = null;
+        node.next = null;
+        node = next;
+      }
+      first = null;
+      last = null;
+      weight = 0;
+    }
+  }
+}
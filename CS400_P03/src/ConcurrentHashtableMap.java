@@ -0,0 +1,504 @@
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * Thread-safe open-addressing hashtable. The keys are split across a fixed number of segments by
+ * the high bits of their spread hash, and each segment is a linear-probing table of its own that is
+ * guarded by its own lock. Writers only lock the segment their key belongs to, so writers on
+ * different segments never wait for each other.
+ *
+ * Readers take no lock at all. Every slot is read through an AtomicReferenceArray, entry keys are
+ * final and values and removed flags are volatile, so a reader always sees a consistent entry. A
+ * segment resizes by copying its live entries into a new array and publishing it with a volatile
+ * write; readers still walking the old array find the same entry objects there, and only writers of
+ * that one segment wait for the copy.
+ */
+public class ConcurrentHashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueType> {
+
+  private static final int DEFAULT_CAPACITY = 64;
+  private static final int DEFAULT_CONCURRENCY = 16;
+  private static final double LOAD_FACTOR_THRESHOLD = 0.7;
+
+  private final Segment<KeyType, ValueType>[] segments;
+  // number of high hash bits that are not used to pick a segment
+  private final int segmentShift;
+
+  /**
+   * @param capacity    initial total number of slots, spread evenly over the segments
+   * @param concurrency expected number of concurrently writing threads, rounded up to a power of
+   *                    two to give the number of segments
+   */
+  @SuppressWarnings("unchecked")
+  public ConcurrentHashtableMap(int capacity, int concurrency) {
+    int segmentCount = powerOfTwo(concurrency);
+    segments = (Segment<KeyType, ValueType>[]) new Segment[segmentCount];
+    for (int i = 0; i < segmentCount; i++) {
+      segments[i] = new Segment<>(powerOfTwo(Math.max(capacity / segmentCount, 2)));
+    }
+    segmentShift = 32 - Integer.numberOfTrailingZeros(segmentCount);
+  }
+
+  public ConcurrentHashtableMap(int capacity) {
+    this(capacity, DEFAULT_CONCURRENCY);
+  }
+
+  public ConcurrentHashtableMap() {
+    this(DEFAULT_CAPACITY, DEFAULT_CONCURRENCY);
+  }
+
+  @Override
+  public void put(KeyType key, ValueType value) throws IllegalArgumentException {
+    if (key == null) {
+      throw new IllegalArgumentException();
+    }
+
+    int hash = spread(key.hashCode());
+    Segment<KeyType, ValueType> segment = segmentFor(hash);
+    segment.lock();
+    try {
+      int index = segment.probe(key, hash);
+      if (index >= 0) {
+        throw new IllegalArgumentException();
+      }
+      segment.insertAt(-index - 1, key, value, hash);
+    } finally {
+      segment.unlock();
+    }
+  }
+
+  @Override
+  public ValueType putIfAbsent(KeyType key, ValueType value) throws IllegalArgumentException {
+    if (key == null) {
+      throw new IllegalArgumentException();
+    }
+
+    int hash = spread(key.hashCode());
+    Segment<KeyType, ValueType> segment = segmentFor(hash);
+    segment.lock();
+    try {
+      int index = segment.probe(key, hash);
+      if (index >= 0) {
+        return segment.table.get(index).value;
+      }
+      segment.insertAt(-index - 1, key, value, hash);
+      return null;
+    } finally {
+      segment.unlock();
+    }
+  }
+
+  @Override
+  public ValueType replace(KeyType key, ValueType value) throws NoSuchElementException {
+    if (key == null) {
+      throw new NoSuchElementException();
+    }
+
+    int hash = spread(key.hashCode());
+    Segment<KeyType, ValueType> segment = segmentFor(hash);
+    segment.lock();
+    try {
+      int index = segment.probe(key, hash);
+      if (index < 0) {
+        throw new NoSuchElementException();
+      }
+      Entry<KeyType, ValueType> entry = segment.table.get(index);
+      ValueType previous = entry.value;
+      entry.value = value;
+      return previous;
+    } finally {
+      segment.unlock();
+    }
+  }
+
+  @Override
+  public ValueType compute(KeyType key,
+      BiFunction<? super KeyType, ? super ValueType, ? extends ValueType> function)
+      throws IllegalArgumentException {
+    if (key == null) {
+      throw new IllegalArgumentException();
+    }
+
+    int hash = spread(key.hashCode());
+    Segment<KeyType, ValueType> segment = segmentFor(hash);
+    segment.lock();
+    try {
+      int index = segment.probe(key, hash);
+      ValueType current = index >= 0 ? segment.table.get(index).value : null;
+      ValueType newValue = function.apply(key, current);
+      segment.storeAt(index, key, newValue, hash);
+      return newValue;
+    } finally {
+      segment.unlock();
+    }
+  }
+
+  @Override
+  public ValueType merge(KeyType key, ValueType value,
+      BiFunction<? super ValueType, ? super ValueType, ? extends ValueType> function)
+      throws IllegalArgumentException {
+    if (key == null) {
+      throw new IllegalArgumentException();
+    }
+
+    int hash = spread(key.hashCode());
+    Segment<KeyType, ValueType> segment = segmentFor(hash);
+    segment.lock();
+    try {
+      int index = segment.probe(key, hash);
+      ValueType current = index >= 0 ? segment.table.get(index).value : null;
+      ValueType newValue = current == null ? value : function.apply(current, value);
+      segment.storeAt(index, key, newValue, hash);
+      return newValue;
+    } finally {
+      segment.unlock();
+    }
+  }
+
+  @Override
+  public boolean containsKey(KeyType key) {
+    return key != null && find(key) != null;
+  }
+
+  @Override
+  public ValueType get(KeyType key) throws NoSuchElementException {
+    Entry<KeyType, ValueType> entry = key == null ? null : find(key);
+    if (entry == null) {
+      throw new NoSuchElementException();
+    }
+    return entry.value;
+  }
+
+  @Override
+  public ValueType remove(KeyType key) throws NoSuchElementException {
+    if (key == null) {
+      throw new NoSuchElementException();
+    }
+
+    int hash = spread(key.hashCode());
+    Segment<KeyType, ValueType> segment = segmentFor(hash);
+    segment.lock();
+    try {
+      int index = segment.probe(key, hash);
+      if (index < 0) {
+        throw new NoSuchElementException();
+      }
+      return segment.removeAt(index);
+    } finally {
+      segment.unlock();
+    }
+  }
+
+  /**
+   * Empties every segment. Segments are cleared one after another, so concurrent writers to other
+   * segments may leave entries behind that were added while clear was running.
+   */
+  @Override
+  public void clear() {
+    for (Segment<KeyType, ValueType> segment : segments) {
+      segment.lock();
+      try {
+        segment.clear();
+      } finally {
+        segment.unlock();
+      }
+    }
+  }
+
+  /**
+   * @return the sum of the segment sizes, which is exact only while no writer is running
+   */
+  @Override
+  public int getSize() {
+    int size = 0;
+    for (Segment<KeyType, ValueType> segment : segments) {
+      size += segment.size;
+    }
+    return size;
+  }
+
+  @Override
+  public int getCapacity() {
+    int capacity = 0;
+    for (Segment<KeyType, ValueType> segment : segments) {
+      capacity += segment.table.length();
+    }
+    return capacity;
+  }
+
+  /**
+   * Traverses the map without locking, splitting first between segments and then by slot range
+   * within a segment. The traversal is weakly consistent: it never fails because of concurrent
+   * writers, but may or may not see their updates.
+   */
+  @Override
+  public Spliterator<Map.Entry<KeyType, ValueType>> entrySpliterator() {
+    return new SegmentSpliterator(0, segments.length, getSize());
+  }
+
+  /**
+   * Looks key up without locking: walks the probe sequence of whichever table its segment has
+   * published most recently.
+   *
+   * @return the live entry for key, or null when key is not stored
+   */
+  private Entry<KeyType, ValueType> find(KeyType key) {
+    int hash = spread(key.hashCode());
+    AtomicReferenceArray<Entry<KeyType, ValueType>> table = segmentFor(hash).table;
+    int mask = table.length() - 1;
+    int index = hash & mask;
+
+    for (int probes = 0; probes <= mask; probes++) {
+      Entry<KeyType, ValueType> entry = table.get(index);
+      if (entry == null) {
+        return null;
+      }
+      if (!entry.removed && entry.hash == hash && entry.key.equals(key)) {
+        return entry;
+      }
+      index = (index + 1) & mask;
+    }
+    return null;
+  }
+
+  private Segment<KeyType, ValueType> segmentFor(int hash) {
+    // a single segment would need a shift by 32, which Java treats as a shift by 0
+    return segments.length == 1 ? segments[0] : segments[hash >>> segmentShift];
+  }
+
+  /**
+   * Mixes the high bits of hashCode into the low ones, since the low bits pick the slot within a
+   * segment and the high bits pick the segment.
+   */
+  private static int spread(int hashCode) {
+    int hash = hashCode * 0x9E3779B9;
+    return hash ^ (hash >>> 16);
+  }
+
+  private static int powerOfTwo(int n) {
+    return Integer.highestOneBit(Math.max(n, 2) - 1) << 1;
+  }
+
+
+  /**
+   * One lock stripe of the map: a linear-probing table whose slots are only written while the
+   * segment is locked.
+   */
+  @SuppressWarnings("serial")
+  private static class Segment<KeyType, ValueType> extends ReentrantLock {
+    private volatile AtomicReferenceArray<Entry<KeyType, ValueType>> table;
+    private volatile int size;
+    // live entries plus removed ones, which still lengthen probe sequences until the next resize
+    private int used;
+
+    Segment(int capacity) {
+      table = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * Walks the probe sequence of key once. Must be called while holding the lock.
+     *
+     * @return the index of the key's entry, or -(slot + 1) where slot is the first removed or
+     *         empty slot a new entry for key should be stored in
+     */
+    int probe(KeyType key, int hash) {
+      AtomicReferenceArray<Entry<KeyType, ValueType>> t = table;
+      int mask = t.length() - 1;
+      int index = hash & mask;
+      int freeIndex = -1;
+
+      for (int probes = 0; probes <= mask; probes++) {
+        Entry<KeyType, ValueType> entry = t.get(index);
+        if (entry == null) {
+          break;
+        }
+        if (entry.removed) {
+          if (freeIndex < 0) {
+            freeIndex = index;
+          }
+        } else if (entry.hash == hash && entry.key.equals(key)) {
+          return index;
+        }
+        index = (index + 1) & mask;
+      }
+      if (freeIndex < 0) {
+        freeIndex = index;
+      }
+      return -freeIndex - 1;
+    }
+
+    void insertAt(int slot, KeyType key, ValueType value, int hash) {
+      if (table.get(slot) == null) {
+        used++;
+      }
+      table.set(slot, new Entry<>(key, value, hash));
+      size++;
+
+      if ((double) used >= table.length() * LOAD_FACTOR_THRESHOLD) {
+        resizeTable();
+      }
+    }
+
+    ValueType removeAt(int index) {
+      Entry<KeyType, ValueType> entry = table.get(index);
+      entry.removed = true;
+      size--;
+      return entry.value;
+    }
+
+    /**
+     * Applies the outcome of compute or merge to the probe result index: a null value removes the
+     * entry if there is one, anything else updates or inserts it.
+     */
+    void storeAt(int index, KeyType key, ValueType value, int hash) {
+      if (index >= 0) {
+        if (value == null) {
+          removeAt(index);
+        } else {
+          table.get(index).value = value;
+        }
+      } else if (value != null) {
+        insertAt(-index - 1, key, value, hash);
+      }
+    }
+
+    void clear() {
+      table = new AtomicReferenceArray<>(table.length());
+      size = 0;
+      used = 0;
+    }
+
+    /**
+     * Copies the live entries into a new table and publishes it. The table doubles when live
+     * entries alone cross half the threshold, otherwise it keeps its length and only sheds the
+     * removed entries.
+     */
+    private void resizeTable() {
+      AtomicReferenceArray<Entry<KeyType, ValueType>> oldTable = table;
+      int length = oldTable.length();
+      if (size >= length * LOAD_FACTOR_THRESHOLD / 2) {
+        length *= 2;
+      }
+
+      AtomicReferenceArray<Entry<KeyType, ValueType>> newTable = new AtomicReferenceArray<>(length);
+      int mask = length - 1;
+      for (int i = 0; i < oldTable.length(); i++) {
+        Entry<KeyType, ValueType> entry = oldTable.get(i);
+        if (entry != null && !entry.removed) {
+          int index = entry.hash & mask;
+          while (newTable.get(index) != null) {
+            index = (index + 1) & mask;
+          }
+          newTable.set(index, entry);
+        }
+      }
+
+      table = newTable;
+      used = size;
+    }
+  }
+
+  /**
+   * Spliterator over a range of segments. Once only one segment is left, splitting continues
+   * inside that segment's table.
+   */
+  private class SegmentSpliterator implements Spliterator<Map.Entry<KeyType, ValueType>> {
+    private int segmentIndex;
+    private final int segmentFence;
+    private long estimate;
+    // traversal of the segment currently being visited, null before the next one is started
+    private Spliterator<Map.Entry<KeyType, ValueType>> current;
+
+    SegmentSpliterator(int segmentIndex, int segmentFence, long estimate) {
+      this.segmentIndex = segmentIndex;
+      this.segmentFence = segmentFence;
+      this.estimate = estimate;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Map.Entry<KeyType, ValueType>> action) {
+      while (current != null || segmentIndex < segmentFence) {
+        if (current == null) {
+          current = segmentSpliterator(segments[segmentIndex++]);
+        }
+        if (current.tryAdvance(action)) {
+          return true;
+        }
+        current = null;
+      }
+      return false;
+    }
+
+    @Override
+    public Spliterator<Map.Entry<KeyType, ValueType>> trySplit() {
+      if (segmentFence - segmentIndex > 1) {
+        int middle = (segmentIndex + segmentFence) >>> 1;
+        estimate >>>= 1;
+        Spliterator<Map.Entry<KeyType, ValueType>> prefix =
+            new SegmentSpliterator(segmentIndex, middle, estimate);
+        segmentIndex = middle;
+        return prefix;
+      }
+      if (current == null && segmentIndex < segmentFence) {
+        current = segmentSpliterator(segments[segmentIndex++]);
+      }
+      return current == null ? null : current.trySplit();
+    }
+
+    @Override
+    public long estimateSize() {
+      return estimate;
+    }
+
+    @Override
+    public int characteristics() {
+      return Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.CONCURRENT;
+    }
+
+    private Spliterator<Map.Entry<KeyType, ValueType>> segmentSpliterator(
+        Segment<KeyType, ValueType> segment) {
+      AtomicReferenceArray<Entry<KeyType, ValueType>> t = segment.table;
+      // each slot is read once, so a concurrent remove cannot slip in between test and read
+      return new TableSpliterator<>(i -> {
+        Entry<KeyType, ValueType> entry = t.get(i);
+        return entry == null || entry.removed ? null : entry;
+      }, 0, t.length(), segment.size, characteristics());
+    }
+  }
+
+  /**
+   * A mapping of the table. Entries handed out by traversal are read-only, since their setValue
+   * could not take the segment lock.
+   */
+  private static class Entry<KeyType, ValueType> implements Map.Entry<KeyType, ValueType> {
+    private final KeyType key;
+    private final int hash;
+    private volatile ValueType value;
+    private volatile boolean removed;
+
+    Entry(KeyType key, ValueType value, int hash) {
+      this.key = key;
+      this.value = value;
+      this.hash = hash;
+    }
+
+    @Override
+    public KeyType getKey() {
+      return key;
+    }
+
+    @Override
+    public ValueType getValue() {
+      return value;
+    }
+
+    @Override
+    public ValueType setValue(ValueType value) {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
@@ -0,0 +1,466 @@
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.IntPredicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Hashtable that uses bucketized cuckoo hashing: every key may live in one of the four slots of
+ * exactly two buckets, or in a small stash for the rare keys that could not be placed in either.
+ * A lookup therefore inspects at most eight slots plus the stash, however full the table is or
+ * however unlucky the key, instead of the unbounded probe sequences of linear probing.
+ *
+ * The hashes of a bucket's four slots are 16 adjacent bytes of one int array, which fall in one
+ * cache line or straddle two, and a key is only read once its hash matches. A lookup that misses
+ * therefore touches at most four cache lines of hashes, plus the stash when it is not empty. A hit
+ * adds the line of the keys array holding the reference, the key object itself and the line of the
+ * values array. Keeping hashes and keys in one array would take boxing the hashes, which costs
+ * more lines than it saves.
+ * Insertions that find both buckets full evict a random resident to its other bucket, up to
+ * MAX_KICKS times, and fall back to the stash. When the stash is full too, the table is rebuilt
+ * with a new seed for choosing buckets, and with twice the buckets if it is at least half as full
+ * as the threshold allows. The stash never holds more than STASH_SIZE mappings, so the only keys
+ * the table cannot store are more than 2 * BUCKET_SIZE + STASH_SIZE keys with the same hash.
+ */
+public class CuckooHashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueType> {
+
+  private static final int DEFAULT_CAPACITY = 16;
+  private static final int BUCKET_SIZE = 4;
+  private static final int STASH_SIZE = 4;
+  // evictions tried before an insertion gives up on the tables
+  private static final int MAX_KICKS = 256;
+  // seeds tried before a rebuild gives up, which only keys sharing a hash make it do
+  private static final int MAX_REHASHES = 8;
+  // four-way buckets stay insertable well past the thresholds of the probing tables
+  private static final double LOAD_FACTOR_THRESHOLD = 0.9;
+
+  private final HashStrategy<? super KeyType> strategy;
+  private Object[] keys;
+  private Object[] values;
+  private int[] hashes;
+  private int bucketMask;
+  private Object[] stashKeys = new Object[STASH_SIZE];
+  private Object[] stashValues = new Object[STASH_SIZE];
+  private int[] stashHashes = new int[STASH_SIZE];
+  private int stashSize;
+  private int size;
+  // mixed into the hashes to choose buckets, and replaced when the tables are rebuilt
+  private int tableSeed;
+  // xorshift state choosing eviction victims and table seeds, so insertions do not allocate a
+  // Random
+  private int seed = 0x2545F491;
+  // the slots each eviction of the current walk took, so a failed walk can be undone
+  private final int[] path = new int[MAX_KICKS];
+
+  /**
+   * @param capacity initial number of slots, rounded up to a power of two of at least 8
+   * @param strategy hashes and compares the keys
+   */
+  public CuckooHashtableMap(int capacity, HashStrategy<? super KeyType> strategy) {
+    this.strategy = strategy;
+    allocate(Integer.highestOneBit(Math.max(capacity / BUCKET_SIZE, 2) - 1) << 1);
+    size = 0;
+  }
+
+  public CuckooHashtableMap(int capacity) {
+    this(capacity, HashStrategy.defaultStrategy());
+  }
+
+  public CuckooHashtableMap() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  @Override
+  public void put(KeyType key, ValueType value) throws IllegalArgumentException {
+    if (key == null) {
+      throw new IllegalArgumentException();
+    }
+    int hash = strategy.hash(key);
+    if (findSlot(key, hash) != -1 || findStash(key, hash) >= 0) {
+      throw new IllegalArgumentException();
+    }
+
+    if ((double) (size + 1) >= keys.length * LOAD_FACTOR_THRESHOLD) {
+      rehash((bucketMask + 1) * 2, key, value, hash);
+    } else if (!insert(key, value, hash)) {
+      // a new seed spreads keys that crowd into the same buckets, and a table that is fairly full
+      // gets more buckets as well
+      int buckets = bucketMask + 1;
+      rehash(size >= keys.length * LOAD_FACTOR_THRESHOLD / 2 ? buckets * 2 : buckets, key, value,
+          hash);
+    }
+    size++;
+  }
+
+  @Override
+  public boolean containsKey(KeyType key) {
+    if (key == null) {
+      return false;
+    }
+    int hash = strategy.hash(key);
+    return findSlot(key, hash) != -1 || findStash(key, hash) >= 0;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public ValueType get(KeyType key) throws NoSuchElementException {
+    if (key == null) {
+      throw new NoSuchElementException();
+    }
+    int hash = strategy.hash(key);
+    int slot = findSlot(key, hash);
+    if (slot != -1) {
+      return (ValueType) values[slot];
+    }
+    int stashIndex = findStash(key, hash);
+    if (stashIndex >= 0) {
+      return (ValueType) stashValues[stashIndex];
+    }
+    throw new NoSuchElementException();
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public ValueType remove(KeyType key) throws NoSuchElementException {
+    if (key == null) {
+      throw new NoSuchElementException();
+    }
+    int hash = strategy.hash(key);
+    int slot = findSlot(key, hash);
+    ValueType value;
+    if (slot != -1) {
+      value = (ValueType) values[slot];
+      keys[slot] = null;
+      values[slot] = null;
+      // the freed slot may take back a key that overflowed into the stash
+      drainStash();
+    } else {
+      int stashIndex = findStash(key, hash);
+      if (stashIndex < 0) {
+        throw new NoSuchElementException();
+      }
+      value = (ValueType) stashValues[stashIndex];
+      removeFromStash(stashIndex);
+    }
+    size--;
+    return value;
+  }
+
+  @Override
+  public void clear() {
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = null;
+      values[i] = null;
+    }
+    stashKeys = new Object[STASH_SIZE];
+    stashValues = new Object[STASH_SIZE];
+    stashHashes = new int[STASH_SIZE];
+    stashSize = 0;
+    size = 0;
+  }
+
+  @Override
+  public int getSize() {
+    return size;
+  }
+
+  /**
+   * @return the number of slots in the two-choice tables, not counting the stash
+   */
+  @Override
+  public int getCapacity() {
+    return keys.length;
+  }
+
+  /**
+   * Splits the tables by slot range, with the stashed mappings first. Entries are new immutable
+   * pairs.
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public Spliterator<Map.Entry<KeyType, ValueType>> entrySpliterator() {
+    Object[] k = keys;
+    Object[] v = values;
+    Spliterator<Map.Entry<KeyType, ValueType>> table = new TableSpliterator<>(occupied(k),
+        i -> new AbstractMap.SimpleImmutableEntry<>((KeyType) k[i], (ValueType) v[i]), 0, k.length,
+        size - stashSize, Spliterator.DISTINCT | Spliterator.NONNULL);
+    if (stashSize == 0) {
+      return table;
+    }
+    Stream.Builder<Map.Entry<KeyType, ValueType>> stashed = Stream.builder();
+    for (int i = 0; i < stashSize; i++) {
+      stashed.add(new AbstractMap.SimpleImmutableEntry<>((KeyType) stashKeys[i],
+          (ValueType) stashValues[i]));
+    }
+    return Stream.concat(stashed.build(), StreamSupport.stream(table, false)).spliterator();
+  }
+
+  /**
+   * Counts the buckets a lookup of key inspects, with the stash counting as one more bucket when
+   * it is not empty. Used by tests to check that lookups stay bounded.
+   */
+  int probeLength(KeyType key) {
+    int hash = strategy.hash(key);
+    int first = firstBucket(hash);
+    if (findInBucket(first, key, hash) != -1) {
+      return 1;
+    }
+    return stashSize == 0 || findInBucket(secondBucket(hash), key, hash) != -1 ? 2 : 3;
+  }
+
+  /**
+   * @return the number of mappings currently held in the stash
+   */
+  int getStashSize() {
+    return stashSize;
+  }
+
+  private void allocate(int buckets) {
+    keys = new Object[buckets * BUCKET_SIZE];
+    values = new Object[buckets * BUCKET_SIZE];
+    hashes = new int[buckets * BUCKET_SIZE];
+    bucketMask = buckets - 1;
+  }
+
+  private int firstBucket(int hash) {
+    return HashStrategy.mix(hash ^ tableSeed) & bucketMask;
+  }
+
+  /**
+   * Derives the second bucket from the stored hash and the table seed alone, so an evicted
+   * resident can find its other bucket without rehashing its key. Setting the low bit keeps it
+   * different from the first.
+   */
+  private int secondBucket(int hash) {
+    return (firstBucket(hash) ^ (HashStrategy.mix(hash ^ tableSeed ^ 0x9E3779B9) | 1))
+        & bucketMask;
+  }
+
+  private int otherBucket(int bucket, int hash) {
+    int first = firstBucket(hash);
+    return bucket == first ? secondBucket(hash) : first;
+  }
+
+  /**
+   * @return the slot holding key in either of its buckets, or -1 when neither holds it
+   */
+  private int findSlot(Object key, int hash) {
+    int slot = findInBucket(firstBucket(hash), key, hash);
+    return slot != -1 ? slot : findInBucket(secondBucket(hash), key, hash);
+  }
+
+  @SuppressWarnings("unchecked")
+  private int findInBucket(int bucket, Object key, int hash) {
+    int start = bucket * BUCKET_SIZE;
+    for (int slot = start; slot < start + BUCKET_SIZE; slot++) {
+      if (hashes[slot] == hash && keys[slot] != null
+          && strategy.equals((KeyType) keys[slot], (KeyType) key)) {
+        return slot;
+      }
+    }
+    return -1;
+  }
+
+  @SuppressWarnings("unchecked")
+  private int findStash(Object key, int hash) {
+    for (int i = 0; i < stashSize; i++) {
+      if (stashHashes[i] == hash && strategy.equals((KeyType) stashKeys[i], (KeyType) key)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return an empty slot of bucket, or -1 when all four are taken
+   */
+  private int freeSlot(int bucket) {
+    int start = bucket * BUCKET_SIZE;
+    for (int slot = start; slot < start + BUCKET_SIZE; slot++) {
+      if (keys[slot] == null) {
+        return slot;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Stores a key that is known to be absent in one of its buckets or in the stash.
+   *
+   * @return false when neither has room, leaving the tables and the stash as they were
+   */
+  private boolean insert(Object key, Object value, int hash) {
+    if (place(key, value, hash)) {
+      return true;
+    }
+    if (stashSize == STASH_SIZE) {
+      return false;
+    }
+    stashKeys[stashSize] = key;
+    stashValues[stashSize] = value;
+    stashHashes[stashSize] = hash;
+    stashSize++;
+    return true;
+  }
+
+  /**
+   * Places a mapping into the tables, evicting residents along a random walk when both of its
+   * buckets are full.
+   *
+   * @return false when MAX_KICKS evictions did not find a free slot; the walk is then undone, so
+   *         every resident is back in its slot
+   */
+  private boolean place(Object key, Object value, int hash) {
+    int bucket = firstBucket(hash);
+    int slot = freeSlot(bucket);
+    if (slot == -1) {
+      bucket = secondBucket(hash);
+      slot = freeSlot(bucket);
+    }
+
+    for (int kick = 0; slot == -1; kick++) {
+      if (kick == MAX_KICKS) {
+        undo(key, value, hash);
+        return false;
+      }
+      slot = bucket * BUCKET_SIZE + (nextRandom() & (BUCKET_SIZE - 1));
+      path[kick] = slot;
+      Object evictedKey = keys[slot];
+      Object evictedValue = values[slot];
+      int evictedHash = hashes[slot];
+      keys[slot] = key;
+      values[slot] = value;
+      hashes[slot] = hash;
+      key = evictedKey;
+      value = evictedValue;
+      hash = evictedHash;
+      // the evicted resident can only go to its other bucket, its current one was just filled
+      bucket = otherBucket(bucket, hash);
+      slot = freeSlot(bucket);
+    }
+
+    keys[slot] = key;
+    values[slot] = value;
+    hashes[slot] = hash;
+    return true;
+  }
+
+  /**
+   * Swaps the mapping in hand back through the slots of a failed walk, last eviction first, which
+   * returns every evicted resident to its slot.
+   */
+  private void undo(Object key, Object value, int hash) {
+    for (int kick = MAX_KICKS - 1; kick >= 0; kick--) {
+      int slot = path[kick];
+      Object evictedKey = keys[slot];
+      Object evictedValue = values[slot];
+      int evictedHash = hashes[slot];
+      keys[slot] = key;
+      values[slot] = value;
+      hashes[slot] = hash;
+      key = evictedKey;
+      value = evictedValue;
+      hash = evictedHash;
+    }
+  }
+
+  private int nextRandom() {
+    seed ^= seed << 13;
+    seed ^= seed >>> 17;
+    seed ^= seed << 5;
+    return seed;
+  }
+
+  /**
+   * Moves stashed mappings back into their buckets when either has a free slot.
+   */
+  private void drainStash() {
+    for (int i = stashSize - 1; i >= 0; i--) {
+      int hash = stashHashes[i];
+      int slot = freeSlot(firstBucket(hash));
+      if (slot == -1) {
+        slot = freeSlot(secondBucket(hash));
+      }
+      if (slot != -1) {
+        keys[slot] = stashKeys[i];
+        values[slot] = stashValues[i];
+        hashes[slot] = hash;
+        removeFromStash(i);
+      }
+    }
+  }
+
+  private void removeFromStash(int index) {
+    stashSize--;
+    stashKeys[index] = stashKeys[stashSize];
+    stashValues[index] = stashValues[stashSize];
+    stashHashes[index] = stashHashes[stashSize];
+    stashKeys[stashSize] = null;
+    stashValues[stashSize] = null;
+  }
+
+  /**
+   * Rebuilds the tables with the given number of buckets and a new seed, holding every mapping
+   * plus the given one, and tries further seeds when they do not all fit.
+   *
+   * @throws IllegalStateException when no seed fits them, which means more keys share one hash
+   *                               than two buckets and the stash can hold; the map is then left
+   *                               as it was
+   */
+  private void rehash(int buckets, Object key, Object value, int hash) {
+    for (int attempt = 0; attempt < MAX_REHASHES; attempt++) {
+      if (rebuild(buckets, nextRandom(), key, value, hash)) {
+        return;
+      }
+    }
+    throw new IllegalStateException("too many keys share the hash " + hash);
+  }
+
+  /**
+   * @return false when the mappings do not all fit with newSeed, in which case the old tables and
+   *         stash are restored
+   */
+  private boolean rebuild(int buckets, int newSeed, Object key, Object value, int hash) {
+    Object[] oldKeys = keys;
+    Object[] oldValues = values;
+    int[] oldHashes = hashes;
+    int oldSeed = tableSeed;
+    Object[] stashedKeys = stashKeys;
+    Object[] stashedValues = stashValues;
+    int[] stashedHashes = stashHashes;
+    int stashed = stashSize;
+
+    allocate(buckets);
+    tableSeed = newSeed;
+    stashKeys = new Object[STASH_SIZE];
+    stashValues = new Object[STASH_SIZE];
+    stashHashes = new int[STASH_SIZE];
+    stashSize = 0;
+    boolean fits = insert(key, value, hash);
+    for (int i = 0; fits && i < oldKeys.length; i++) {
+      fits = oldKeys[i] == null || insert(oldKeys[i], oldValues[i], oldHashes[i]);
+    }
+    for (int i = 0; fits && i < stashed; i++) {
+      fits = insert(stashedKeys[i], stashedValues[i], stashedHashes[i]);
+    }
+
+    if (!fits) {
+      keys = oldKeys;
+      values = oldValues;
+      hashes = oldHashes;
+      bucketMask = oldKeys.length / BUCKET_SIZE - 1;
+      tableSeed = oldSeed;
+      stashKeys = stashedKeys;
+      stashValues = stashedValues;
+      stashHashes = stashedHashes;
+      stashSize = stashed;
+    }
+    return fits;
+  }
+
+  private static IntPredicate occupied(Object[] k) {
+    return i -> k[i] != null;
+  }
+}
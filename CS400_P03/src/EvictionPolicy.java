@@ -0,0 +1,34 @@
+/**
+ * Decides which entry a BoundedCacheMap gives up when its total weight exceeds its maximum. The
+ * cache reports every insertion, access, update and removal of its nodes, and the policy keeps them
+ * in whatever queues it needs by linking the nodes themselves, so that every callback and every
+ * victim selection takes constant time.
+ */
+public interface EvictionPolicy<KeyType, ValueType> {
+
+  // called once by the cache before any other method, with the cache's maximum total weight
+  public void setMaximumWeight(long maximumWeight);
+
+  // a new node was added to the cache
+  public void onInsert(BoundedCacheMap.Node<KeyType, ValueType> node);
+
+  // the value of a node that is already in the cache was read
+  public void onAccess(BoundedCacheMap.Node<KeyType, ValueType> node);
+
+  // the value of a node was replaced, which changed its weight from oldWeight to its current one
+  public void onUpdate(BoundedCacheMap.Node<KeyType, ValueType> node, int oldWeight);
+
+  // a node was removed from the cache by the caller rather than evicted
+  public void onRemove(BoundedCacheMap.Node<KeyType, ValueType> node);
+
+  // a lookup of a key with the given hashCode found nothing
+  public default void onMiss(int hash) {
+  }
+
+  // unlinks and returns the node to evict next, or null when the policy tracks no nodes
+  public BoundedCacheMap.Node<KeyType, ValueType> nextVictim();
+
+  // forgets every node
+  public void clear();
+
+}
@@ -0,0 +1,222 @@
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * MapADT whose mappings expire a time-to-live after they are put. Each mapping may have its own
+ * time-to-live, and expired mappings behave as if they had been removed.
+ *
+ * The mappings live in a HashtableMap, and their deadlines in a TimingWheel with a resolution of
+ * one millisecond, so finding the expired mappings never scans the table. Every operation first
+ * advances the wheel to the current time and reclaims up to PURGE_BATCH of the mappings that have
+ * expired, spreading the work of expiry over the operations. A lookup that meets an expired
+ * mapping before its turn comes reclaims it on the spot. getSize may include expired mappings
+ * that are not reclaimed yet; cleanUp reclaims them.
+ */
+public class ExpiringHashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueType> {
+
+  private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+  // latest deadline after creation, in nanoseconds; later ones could not be rounded up to ticks
+  private static final long MAX_DEADLINE = Long.MAX_VALUE - TICK_NANOS;
+  // expired mappings reclaimed by each operation
+  private static final int PURGE_BATCH = 16;
+
+  private final HashtableMap<KeyType, Node<KeyType, ValueType>> table = new HashtableMap<>();
+  private final long timeToLive;
+  private final LongSupplier clock;
+  private final long origin;
+  private final TimingWheel wheel;
+
+  /**
+   * @param timeToLive how long mappings added by put stay, in unit
+   */
+  public ExpiringHashtableMap(long timeToLive, TimeUnit unit) {
+    this(unit.toNanos(timeToLive), System::nanoTime);
+  }
+
+  /**
+   * @param timeToLive how long mappings added by put stay, in nanoseconds
+   * @param clock      the current time in nanoseconds, System::nanoTime outside of tests
+   */
+  ExpiringHashtableMap(long timeToLive, LongSupplier clock) {
+    if (timeToLive <= 0) {
+      throw new IllegalArgumentException();
+    }
+    this.timeToLive = timeToLive;
+    this.clock = clock;
+    origin = clock.getAsLong();
+    wheel = new TimingWheel(0);
+  }
+
+  @Override
+  public void put(KeyType key, ValueType value) throws IllegalArgumentException {
+    put(key, value, timeToLive, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Adds a mapping that expires timeToLive after now instead of after the map's time-to-live.
+   * Times-to-live that reach beyond about 292 years after the map was created are cut back to
+   * that, which is never in practice.
+   *
+   * @throws IllegalArgumentException when key is null or already mapped, or timeToLive is not
+   *                                  positive
+   */
+  public void put(KeyType key, ValueType value, long timeToLive, TimeUnit unit)
+      throws IllegalArgumentException {
+    if (key == null || timeToLive <= 0) {
+      throw new IllegalArgumentException();
+    }
+    long now = expire();
+    if (find(key, now) != null) {
+      throw new IllegalArgumentException();
+    }
+
+    // toNanos saturates at Long.MAX_VALUE; the deadline must not wrap past it either
+    long nanos = Math.min(unit.toNanos(timeToLive), MAX_DEADLINE - (now - origin));
+    Node<KeyType, ValueType> node = new Node<>(key, value, now + nanos);
+    table.put(key, node);
+    // rounding the deadline up to whole ticks keeps the wheel from reclaiming a mapping early
+    wheel.schedule(node, (node.expiresAt - origin + TICK_NANOS - 1) / TICK_NANOS);
+  }
+
+  @Override
+  public boolean containsKey(KeyType key) {
+    return key != null && find(key, expire()) != null;
+  }
+
+  @Override
+  public ValueType get(KeyType key) throws NoSuchElementException {
+    Node<KeyType, ValueType> node = key == null ? null : find(key, expire());
+    if (node == null) {
+      throw new NoSuchElementException();
+    }
+    return node.value;
+  }
+
+  @Override
+  public ValueType remove(KeyType key) throws NoSuchElementException {
+    Node<KeyType, ValueType> node = key == null ? null : find(key, expire());
+    if (node == null) {
+      throw new NoSuchElementException();
+    }
+    reclaim(node);
+    return node.value;
+  }
+
+  @Override
+  public void clear() {
+    table.clear();
+    wheel.clear();
+  }
+
+  /**
+   * @return the number of mappings, including expired ones that are not reclaimed yet
+   */
+  @Override
+  public int getSize() {
+    return table.getSize();
+  }
+
+  @Override
+  public int getCapacity() {
+    return table.getCapacity();
+  }
+
+  /**
+   * @return the time left before the mapping of key expires, in unit
+   * @throws NoSuchElementException when key is not mapped
+   */
+  public long getTimeToLive(KeyType key, TimeUnit unit) throws NoSuchElementException {
+    long now = expire();
+    Node<KeyType, ValueType> node = key == null ? null : find(key, now);
+    if (node == null) {
+      throw new NoSuchElementException();
+    }
+    return unit.convert(node.expiresAt - now, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Reclaims every mapping that expired before the current millisecond began. This costs time in
+   * proportion to the number of expired mappings, not to the size of the map.
+   */
+  public void cleanUp() {
+    advance(clock.getAsLong());
+    TimingWheel.Timer timer;
+    while ((timer = wheel.pollDue()) != null) {
+      remove(timer);
+    }
+  }
+
+  /**
+   * Traverses the mappings that have not expired. Entries are new immutable pairs.
+   */
+  @Override
+  public Spliterator<Map.Entry<KeyType, ValueType>> entrySpliterator() {
+    long now = expire();
+    return table.values().stream().filter(node -> node.expiresAt - now > 0)
+        .<Map.Entry<KeyType, ValueType>>map(
+            node -> new AbstractMap.SimpleImmutableEntry<>(node.key, node.value))
+        .spliterator();
+  }
+
+  /**
+   * Advances the wheel to the current time and reclaims a batch of expired mappings.
+   *
+   * @return the current time
+   */
+  private long expire() {
+    long now = clock.getAsLong();
+    advance(now);
+    TimingWheel.Timer timer;
+    for (int i = 0; i < PURGE_BATCH && (timer = wheel.pollDue()) != null; i++) {
+      remove(timer);
+    }
+    return now;
+  }
+
+  private void advance(long now) {
+    wheel.advance((now - origin) / TICK_NANOS);
+  }
+
+  @SuppressWarnings("unchecked")
+  private void remove(TimingWheel.Timer timer) {
+    table.remove(((Node<KeyType, ValueType>) timer).key);
+  }
+
+  /**
+   * @return the live node of key, or null when key is absent or its mapping has expired, in which
+   *         case the mapping is reclaimed
+   */
+  private Node<KeyType, ValueType> find(KeyType key, long now) {
+    Node<KeyType, ValueType> node = table.getOrDefault(key, null);
+    if (node == null) {
+      return null;
+    }
+    if (node.expiresAt - now <= 0) {
+      reclaim(node);
+      return null;
+    }
+    return node;
+  }
+
+  private void reclaim(Node<KeyType, ValueType> node) {
+    wheel.cancel(node);
+    table.remove(node.key);
+  }
+
+  private static class Node<KeyType, ValueType> extends TimingWheel.Timer {
+    private final KeyType key;
+    private final ValueType value;
+    // System.nanoTime-based instant at which the mapping expires
+    private final long expiresAt;
+
+    Node(KeyType key, ValueType value, long expiresAt) {
+      this.key = key;
+      this.value = value;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
@@ -0,0 +1,91 @@
+/**
+ * Count-min sketch of 4-bit counters that estimates how often each hash was seen recently. Every
+ * long holds sixteen counters, and each hash maps to one counter in each of four rows picked by
+ * differently seeded mixes. After ten increments per counter slot all counters are halved, so old
+ * popularity fades and the sketch follows a changing workload.
+ */
+class FrequencySketch {
+
+  private static final long[] SEEDS =
+      {0xC3A5C85C97CB3127L, 0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL, 0xCBF29CE484222325L};
+  // clears the bit that a right shift by one moves into the top of each 4-bit counter
+  private static final long RESET_MASK = 0x7777777777777777L;
+  private static final int MAX_TABLE_LENGTH = 1 << 22;
+
+  private final long[] table;
+  private final int sampleSize;
+  private int additions;
+
+  /**
+   * @param expectedEntries number of distinct hashes the sketch should tell apart
+   */
+  FrequencySketch(long expectedEntries) {
+    int length = (int) Math.min(Math.max(expectedEntries, 8), MAX_TABLE_LENGTH);
+    length = Integer.highestOneBit(length - 1) << 1;
+    table = new long[length];
+    sampleSize = 10 * length;
+  }
+
+  /**
+   * @return the estimated number of recent occurrences of hash, between 0 and 15
+   */
+  int frequency(int hash) {
+    int frequency = 15;
+    for (int row = 0; row < SEEDS.length; row++) {
+      long mixed = mix(hash, row);
+      int shift = counterShift(mixed);
+      frequency = Math.min(frequency, (int) ((table[tableIndex(mixed)] >>> shift) & 0xF));
+    }
+    return frequency;
+  }
+
+  /**
+   * Records one occurrence of hash, saturating each counter at 15.
+   */
+  void increment(int hash) {
+    boolean added = false;
+    for (int row = 0; row < SEEDS.length; row++) {
+      long mixed = mix(hash, row);
+      int index = tableIndex(mixed);
+      int shift = counterShift(mixed);
+      if (((table[index] >>> shift) & 0xF) != 0xF) {
+        table[index] += 1L << shift;
+        added = true;
+      }
+    }
+
+    if (added && ++additions == sampleSize) {
+      reset();
+    }
+  }
+
+  void clear() {
+    for (int i = 0; i < table.length; i++) {
+      table[i] = 0L;
+    }
+    additions = 0;
+  }
+
+  /**
+   * Halves every counter.
+   */
+  private void reset() {
+    for (int i = 0; i < table.length; i++) {
+      table[i] = (table[i] >>> 1) & RESET_MASK;
+    }
+    additions /= 2;
+  }
+
+  private long mix(int hash, int row) {
+    long mixed = (hash + SEEDS[row]) * SEEDS[row];
+    return mixed ^ (mixed >>> 32);
+  }
+
+  private int tableIndex(long mixed) {
+    return (int) mixed & (table.length - 1);
+  }
+
+  private static int counterShift(long mixed) {
+    return (int) (mixed >>> 60) << 2;
+  }
+}
@@ -0,0 +1,327 @@
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Immutable map compiled from a HashtableMap by freeze, using a perfect hash function built with
+ * the hash-and-displace scheme (CHD): the keys are grouped into small buckets, and every bucket is
+ * given a seed that sends each of its keys to a different slot nobody else uses. A lookup hashes
+ * the key, reads its bucket's seed and inspects exactly one slot, with no probing and nothing
+ * removed to skip.
+ *
+ * The slot array is only about 1% larger than the number of mappings, plus one int of seed per
+ * three keys. Building takes expected linear time. Absent keys still hash to some slot, so that
+ * slot's key is compared before its value is returned. Distinct keys whose 32-bit hashes are equal
+ * cannot be told apart by any seed, so they share one slot that holds all of them in a small
+ * immutable group, which lookups scan once its hash matches. Nothing is written after
+ * construction, so a frozen map can be shared by any number of reader threads.
+ */
+public class FrozenHashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueType> {
+
+  // average number of keys per bucket
+  private static final int KEYS_PER_BUCKET = 3;
+  // fraction of slots that hold a mapping; a little slack keeps seed searches short at the end
+  private static final double LOAD_FACTOR = 0.99;
+  // seeds tried for one bucket before starting over with a different bucket assignment
+  private static final int MAX_SEED = 1 << 16;
+  // returned by lookup for absent keys, since values may be null
+  private static final Object ABSENT = new Object();
+
+  private final HashStrategy<? super KeyType> strategy;
+  private final Object[] keys;
+  private final Object[] values;
+  private final int[] seeds;
+  private final int bucketSeed;
+  private final int size;
+  // the groups of keys sharing a hash, which no seed can separate; null when there are none
+  private final Collided[] groups;
+
+  /**
+   * Builds the perfect hash function for keys. The keys must be distinct under strategy.
+   */
+  @SuppressWarnings("unchecked")
+  FrozenHashtableMap(Object[] keys, Object[] values, HashStrategy<? super KeyType> strategy) {
+    this.strategy = strategy;
+    size = keys.length;
+
+    // sort by hash to find the rare distinct keys with equal hashes
+    long[] byHash = new long[size];
+    for (int i = 0; i < size; i++) {
+      byHash[i] = (long) hash(keys[i]) << 32 | i;
+    }
+    Arrays.sort(byHash);
+    int[] hashes = new int[size];
+    // the index of the only key with each hash, or -1 - g for the g-th group of keys sharing it
+    int[] indices = new int[size];
+    int unique = 0;
+    List<Collided> collided = new ArrayList<>();
+    for (int i = 0; i < size;) {
+      int hash = (int) (byHash[i] >> 32);
+      int end = i + 1;
+      while (end < size && (int) (byHash[end] >> 32) == hash) {
+        end++;
+      }
+      hashes[unique] = hash;
+      if (end - i == 1) {
+        indices[unique] = (int) byHash[i];
+      } else {
+        indices[unique] = -1 - collided.size();
+        collided.add(new Collided(hash, keys, values, byHash, i, end));
+      }
+      unique++;
+      i = end;
+    }
+    groups = collided.isEmpty() ? null : collided.toArray(new Collided[0]);
+    hashes = Arrays.copyOf(hashes, unique);
+
+    int slotCount = Math.max(1, (int) Math.ceil(unique / LOAD_FACTOR));
+    this.keys = new Object[slotCount];
+    this.values = new Object[slotCount];
+    seeds = new int[Math.max(1, (unique + KEYS_PER_BUCKET - 1) / KEYS_PER_BUCKET)];
+    int attempt = 0;
+    while (!assignSeeds(hashes, attempt)) {
+      attempt++;
+    }
+    bucketSeed = attempt;
+
+    for (int i = 0; i < unique; i++) {
+      int slot = slot(hashes[i], seeds[bucket(hashes[i], attempt)]);
+      if (indices[i] >= 0) {
+        this.keys[slot] = keys[indices[i]];
+        this.values[slot] = values[indices[i]];
+      } else {
+        this.keys[slot] = groups[-1 - indices[i]];
+      }
+    }
+  }
+
+  @Override
+  public boolean containsKey(KeyType key) {
+    return key != null && lookup(key) != ABSENT;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public ValueType get(KeyType key) throws NoSuchElementException {
+    if (key == null) {
+      throw new NoSuchElementException();
+    }
+    Object value = lookup(key);
+    if (value == ABSENT) {
+      throw new NoSuchElementException();
+    }
+    return (ValueType) value;
+  }
+
+  /**
+   * Frozen maps are read-only.
+   *
+   * @throws UnsupportedOperationException always
+   */
+  @Override
+  public void put(KeyType key, ValueType value) {
+    throw new UnsupportedOperationException("frozen map is read-only");
+  }
+
+  /**
+   * Frozen maps are read-only.
+   *
+   * @throws UnsupportedOperationException always
+   */
+  @Override
+  public ValueType remove(KeyType key) {
+    throw new UnsupportedOperationException("frozen map is read-only");
+  }
+
+  /**
+   * Frozen maps are read-only.
+   *
+   * @throws UnsupportedOperationException always
+   */
+  @Override
+  public void clear() {
+    throw new UnsupportedOperationException("frozen map is read-only");
+  }
+
+  @Override
+  public int getSize() {
+    return size;
+  }
+
+  @Override
+  public int getCapacity() {
+    return keys.length;
+  }
+
+  /**
+   * Splits the slot array by range, followed by the groups of keys sharing a hash. Entries are new
+   * immutable pairs.
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public Spliterator<Map.Entry<KeyType, ValueType>> entrySpliterator() {
+    if (groups == null) {
+      return new TableSpliterator<>(i -> keys[i] != null,
+          i -> new AbstractMap.SimpleImmutableEntry<>((KeyType) keys[i], (ValueType) values[i]), 0,
+          keys.length, size, Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+    }
+    int grouped = 0;
+    for (Collided group : groups) {
+      grouped += group.keys.length;
+    }
+    Spliterator<Map.Entry<KeyType, ValueType>> table = new TableSpliterator<>(
+        i -> keys[i] != null && !(keys[i] instanceof Collided),
+        i -> new AbstractMap.SimpleImmutableEntry<>((KeyType) keys[i], (ValueType) values[i]), 0,
+        keys.length, size - grouped,
+        Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+    Stream<Map.Entry<KeyType, ValueType>> collided = Arrays.stream(groups)
+        .flatMap(group -> IntStream.range(0, group.keys.length)
+            .mapToObj(i -> new AbstractMap.SimpleImmutableEntry<>((KeyType) group.keys[i],
+                (ValueType) group.values[i])));
+    return Stream.concat(StreamSupport.stream(table, false), collided).spliterator();
+  }
+
+  @SuppressWarnings("unchecked")
+  private int hash(Object key) {
+    return strategy.hash((KeyType) key);
+  }
+
+  /**
+   * @return the value of key, or ABSENT when key is not mapped
+   */
+  @SuppressWarnings("unchecked")
+  private Object lookup(KeyType key) {
+    int hash = strategy.hash(key);
+    int slot = slot(hash, seeds[bucket(hash, bucketSeed)]);
+    Object stored = keys[slot];
+    if (stored instanceof Collided) {
+      Collided group = (Collided) stored;
+      if (group.hash == hash) {
+        for (int i = 0; i < group.keys.length; i++) {
+          if (strategy.equals(key, (KeyType) group.keys[i])) {
+            return group.values[i];
+          }
+        }
+      }
+      return ABSENT;
+    }
+    return stored != null && strategy.equals(key, (KeyType) stored) ? values[slot] : ABSENT;
+  }
+
+  private int bucket(int hash, int seed) {
+    return reduce(HashStrategy.mix(hash ^ seed * 0x9E3779B9), seeds.length);
+  }
+
+  private int slot(int hash, int seed) {
+    return reduce(HashStrategy.mix(hash + seed * 0x85EBCA6B), keys.length);
+  }
+
+  /**
+   * Maps a well-mixed hash onto [0, n) with a multiply and shift instead of a division.
+   */
+  private static int reduce(int hash, int n) {
+    return (int) (((hash & 0xFFFFFFFFL) * n) >>> 32);
+  }
+
+  /**
+   * Groups the hashes into buckets under attempt and searches every bucket, largest first, for a
+   * seed that places all of its keys into distinct free slots.
+   *
+   * @return false when some bucket found no seed within MAX_SEED tries
+   */
+  private boolean assignSeeds(int[] hashes, int attempt) {
+    int bucketCount = seeds.length;
+    // counting sort of the keys by bucket
+    int[] bucketStart = new int[bucketCount + 1];
+    for (int hash : hashes) {
+      bucketStart[bucket(hash, attempt) + 1]++;
+    }
+    int largest = 0;
+    for (int b = 0; b < bucketCount; b++) {
+      largest = Math.max(largest, bucketStart[b + 1]);
+      bucketStart[b + 1] += bucketStart[b];
+    }
+    int[] members = new int[hashes.length];
+    int[] fill = new int[bucketCount];
+    for (int i = 0; i < hashes.length; i++) {
+      int b = bucket(hashes[i], attempt);
+      members[bucketStart[b] + fill[b]++] = i;
+    }
+
+    // counting sort of the buckets by decreasing size
+    int[] sizeStart = new int[largest + 2];
+    for (int b = 0; b < bucketCount; b++) {
+      sizeStart[largest - (bucketStart[b + 1] - bucketStart[b]) + 1]++;
+    }
+    for (int s = 0; s <= largest; s++) {
+      sizeStart[s + 1] += sizeStart[s];
+    }
+    int[] order = new int[bucketCount];
+    for (int b = 0; b < bucketCount; b++) {
+      order[sizeStart[largest - (bucketStart[b + 1] - bucketStart[b])]++] = b;
+    }
+
+    boolean[] taken = new boolean[keys.length];
+    int[] placed = new int[largest];
+    for (int b : order) {
+      int from = bucketStart[b];
+      int count = bucketStart[b + 1] - from;
+      if (count == 0) {
+        seeds[b] = 0;
+        continue;
+      }
+      int seed = 1;
+      for (; seed <= MAX_SEED; seed++) {
+        int n = 0;
+        for (; n < count; n++) {
+          int slot = slot(hashes[members[from + n]], seed);
+          if (taken[slot]) {
+            break;
+          }
+          taken[slot] = true;
+          placed[n] = slot;
+        }
+        if (n == count) {
+          break;
+        }
+        for (int i = 0; i < n; i++) {
+          taken[placed[i]] = false;
+        }
+      }
+      if (seed > MAX_SEED) {
+        return false;
+      }
+      seeds[b] = seed;
+    }
+    return true;
+  }
+
+  /**
+   * The keys sharing one hash and their values, which take a single slot together.
+   */
+  private static final class Collided {
+    final int hash;
+    final Object[] keys;
+    final Object[] values;
+
+    /**
+     * @param byHash packed hashes and indexes sorted by hash, whose entries from to end share hash
+     */
+    Collided(int hash, Object[] keys, Object[] values, long[] byHash, int from, int end) {
+      this.hash = hash;
+      this.keys = new Object[end - from];
+      this.values = new Object[end - from];
+      for (int i = from; i < end; i++) {
+        this.keys[i - from] = keys[(int) byHash[i]];
+        this.values[i - from] = values[(int) byHash[i]];
+      }
+    }
+  }
+}
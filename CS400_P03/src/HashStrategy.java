@@ -0,0 +1,65 @@
+import java.util.Arrays;
+
+/**
+ * Decides how a HashtableMap hashes and compares its keys. The table only uses the low bits of a
+ * hash to pick a slot, so hash should spread every bit of the key over the whole int; the
+ * strategies here finish with the MurmurHash3 mixing function for that reason.
+ */
+public interface HashStrategy<KeyType> {
+
+    // compute a well-mixed hash of key, equal keys must have equal hashes
+    public int hash(KeyType key);
+
+    // check whether two keys are the same key
+    public boolean equals(KeyType a, KeyType b);
+
+    // hashCode and equals of the keys, with mixing so sequential hashCodes do not form clusters
+    public static <K> HashStrategy<K> defaultStrategy() {
+        return new HashStrategy<K>() {
+            public int hash(K key) {
+                return mix(key.hashCode());
+            }
+
+            public boolean equals(K a, K b) {
+                return a.equals(b);
+            }
+        };
+    }
+
+    // reference equality, for keys such as interned strings where equal keys are the same object
+    public static <K> HashStrategy<K> identity() {
+        return new HashStrategy<K>() {
+            public int hash(K key) {
+                return mix(System.identityHashCode(key));
+            }
+
+            public boolean equals(K a, K b) {
+                return a == b;
+            }
+        };
+    }
+
+    // byte arrays compared by their contents instead of by reference
+    public static HashStrategy<byte[]> byteArrays() {
+        return new HashStrategy<byte[]>() {
+            public int hash(byte[] key) {
+                return mix(Arrays.hashCode(key));
+            }
+
+            public boolean equals(byte[] a, byte[] b) {
+                return Arrays.equals(a, b);
+            }
+        };
+    }
+
+    // the MurmurHash3 finalizer: every input bit affects every output bit
+    public static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+}
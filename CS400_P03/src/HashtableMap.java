@@ -1,95 +1,289 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class HashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueType> {
   
   private static final int DEFAULT_CAPACITY = 8;
   private static final double LOAD_FACTOR_THRESHOLD = 0.7;
+  // below this fraction of live slots, a table larger than its initial capacity is shrunk
+  private static final double MIN_LOAD_FACTOR = 0.1;
+  // number of old-table slots migrated by each operation while a resize is in progress
+  private static final int MIGRATION_STEP = 8;
+  // a parallel build cuts the table into regions of at least 2^MIN_REGION_BITS slots
+  private static final int MIN_REGION_BITS = 12;
 
+  // left in the old table in place of a migrated entry, so the probe chains through it stay intact
+  private static final Entry<Object, Object> MOVED = new Entry<>(null, null, 0);
+  static {
+    MOVED.setRemoved(true);
+  }
+
+  private final HashStrategy<? super KeyType> strategy;
+  // the capacity the map was created with, which automatic shrinking never goes below
+  private final int minCapacity;
   private Entry<KeyType, ValueType>[] table;
+  // table being drained into table during an incremental resize, null otherwise
+  private Entry<KeyType, ValueType>[] oldTable;
+  private int migrateIndex;
   private int size;
+  // removed entries in table, which still lengthen probe sequences until their slot is reused
+  private int tombstones;
+  // null unless statistics are enabled, so a map without them only pays for the null checks
+  private HashtableMapStats stats;
+  // slots inspected so far by the lookup in progress, only counted while stats are enabled
+  private int lookupProbes;
 
+  /**
+   * @param capacity initial number of slots, rounded up to a power of two
+   * @param strategy hashes and compares the keys
+   */
   @SuppressWarnings("unchecked")
-  public HashtableMap(int capacity) {
-    table = (Entry<KeyType, ValueType>[]) new Entry[capacity];
+  public HashtableMap(int capacity, HashStrategy<? super KeyType> strategy) {
+    this.strategy = strategy;
+    minCapacity = powerOfTwo(capacity);
+    table = (Entry<KeyType, ValueType>[]) new Entry[minCapacity];
     size = 0;
   }
 
+  public HashtableMap(int capacity) {
+    this(capacity, HashStrategy.defaultStrategy());
+  }
+
   public HashtableMap() {
     this(DEFAULT_CAPACITY);
   }
 
   @Override
   public void put(KeyType key, ValueType value) throws IllegalArgumentException {
-    if (key == null || containsKey(key)) {
+    if (key == null) {
       throw new IllegalArgumentException();
     }
+    put(key, value, strategy.hash(key));
+  }
 
-    int index = getIndex(key);
-    while (table[index] != null && !table[index].isRemoved()) {
-      index = (index + 1) % table.length;
+  private void put(KeyType key, ValueType value, int hash) throws IllegalArgumentException {
+    int index = probe(key, hash);
+    if (index >= 0) {
+      throw new IllegalArgumentException();
     }
+    insertAt(-index - 1, key, value, hash);
+  }
 
-    table[index] = new Entry<>(key, value);
-    size++;
+  @Override
+  public ValueType putIfAbsent(KeyType key, ValueType value) throws IllegalArgumentException {
+    if (key == null) {
+      throw new IllegalArgumentException();
+    }
 
-    if ((double)size >= table.length * LOAD_FACTOR_THRESHOLD) {
-      resizeTable();
+    int hash = strategy.hash(key);
+    int index = probe(key, hash);
+    if (index >= 0) {
+      return table[index].getValue();
     }
+    insertAt(-index - 1, key, value, hash);
+    return null;
   }
-  
 
   @Override
-  public boolean containsKey(KeyType key) {
-    int index = getIndex(key);
-    int startIndex = index;
+  public ValueType replace(KeyType key, ValueType value) throws NoSuchElementException {
+    int index = key == null ? -1 : probe(key, strategy.hash(key));
+    if (index < 0) {
+      throw new NoSuchElementException();
+    }
+    return table[index].setValue(value);
+  }
+
+  @Override
+  public ValueType compute(KeyType key,
+      BiFunction<? super KeyType, ? super ValueType, ? extends ValueType> function)
+      throws IllegalArgumentException {
+    if (key == null) {
+      throw new IllegalArgumentException();
+    }
+
+    int hash = strategy.hash(key);
+    int index = probe(key, hash);
+    ValueType newValue = function.apply(key, index >= 0 ? table[index].getValue() : null);
+    storeAt(index, key, newValue, hash);
+    return newValue;
+  }
+
+  @Override
+  public ValueType merge(KeyType key, ValueType value,
+      BiFunction<? super ValueType, ? super ValueType, ? extends ValueType> function)
+      throws IllegalArgumentException {
+    if (key == null) {
+      throw new IllegalArgumentException();
+    }
+
+    int hash = strategy.hash(key);
+    int index = probe(key, hash);
+    ValueType current = index >= 0 ? table[index].getValue() : null;
+    ValueType newValue = current == null ? value : function.apply(current, value);
+    storeAt(index, key, newValue, hash);
+    return newValue;
+  }
+
+  /**
+   * Adds the whole batch after growing the table at most once, then inserts the keys in the order
+   * of their home slots so consecutive probes touch neighbouring parts of the table. Every key is
+   * hashed once.
+   */
+  @Override
+  public void putAll(List<? extends KeyType> keys, List<? extends ValueType> values)
+      throws IllegalArgumentException {
+    if (keys.size() != values.size()) {
+      throw new IllegalArgumentException();
+    }
 
-    while (table[index] != null) {
-      if (!table[index].isRemoved() && table[index].getKey().equals(key)) {
-        return true;
+    ensureCapacity(size + keys.size());
+    int[] hashes = new int[keys.size()];
+    for (int i : slotOrder(keys, hashes)) {
+      KeyType key = keys.get(i);
+      if (key == null) {
+        throw new IllegalArgumentException();
       }
-      index = (index + 1) % table.length;
-      if (index == startIndex) {
-        break;
+      put(key, values.get(i), hashes[i]);
+    }
+  }
+
+  /**
+   * Looks the keys up in the order of their home slots, hashing each once. Nothing is returned
+   * when a key is missing.
+   */
+  @Override
+  public List<ValueType> getAll(List<? extends KeyType> keys) throws NoSuchElementException {
+    Object[] values = new Object[keys.size()];
+    int[] hashes = new int[keys.size()];
+    for (int i : slotOrder(keys, hashes)) {
+      KeyType key = keys.get(i);
+      Entry<KeyType, ValueType> entry = key == null ? null : findEntry(key, hashes[i]);
+      if (entry == null) {
+        throw new NoSuchElementException();
       }
+      values[i] = entry.getValue();
     }
+    return asList(values);
+  }
 
-    return false;
+  /**
+   * Removes the keys in the order of their home slots, hashing each once.
+   */
+  @Override
+  public List<ValueType> removeAll(List<? extends KeyType> keys) throws NoSuchElementException {
+    Object[] values = new Object[keys.size()];
+    int[] hashes = new int[keys.size()];
+    for (int i : slotOrder(keys, hashes)) {
+      KeyType key = keys.get(i);
+      if (key == null) {
+        throw new NoSuchElementException();
+      }
+      values[i] = remove(key, hashes[i]);
+    }
+    return asList(values);
+  }
+
+  @Override
+  public boolean containsKey(KeyType key) {
+    if (key == null) {
+      return false;
+    }
+
+    migrateStep();
+    int hash = strategy.hash(key);
+    boolean found = findIndex(table, key, hash) >= 0
+        || (oldTable != null && findIndex(oldTable, key, hash) >= 0);
+    recordLookup(found);
+    return found;
   }
 
   @Override
   public ValueType get(KeyType key) throws NoSuchElementException {
-    int index = getIndex(key);
-    int startIndex = index;
+    if (key == null) {
+      throw new NoSuchElementException();
+    }
 
-    while (table[index] != null) {
-      if (!table[index].isRemoved() && table[index].getKey().equals(key)) {
-        return table[index].getValue();
-      }
-      index = (index + 1) % table.length;
-      if (index == startIndex) {
-        break;
+    Entry<KeyType, ValueType> entry = findEntry(key, strategy.hash(key));
+    if (entry == null) {
+      throw new NoSuchElementException();
+    }
+    return entry.getValue();
+  }
+
+  /**
+   * Looks key up once, where the default implementation would check containsKey before get.
+   */
+  @Override
+  public ValueType getOrDefault(KeyType key, ValueType defaultValue) {
+    Entry<KeyType, ValueType> entry = key == null ? null : findEntry(key, strategy.hash(key));
+    return entry == null ? defaultValue : entry.getValue();
+  }
+
+  /**
+   * Finds the live entry of key in the current table or, during a resize, in the old one, and
+   * records the lookup.
+   *
+   * @return the entry, or null when key is not stored
+   */
+  private Entry<KeyType, ValueType> findEntry(KeyType key, int hash) {
+    migrateStep();
+    int index = findIndex(table, key, hash);
+    if (index >= 0) {
+      recordLookup(true);
+      return table[index];
+    }
+    if (oldTable != null) {
+      index = findIndex(oldTable, key, hash);
+      if (index >= 0) {
+        recordLookup(true);
+        return oldTable[index];
       }
     }
 
-    throw new NoSuchElementException();
+    recordLookup(false);
+    return null;
   }
 
   @Override
   public ValueType remove(KeyType key) throws NoSuchElementException {
-    int index = getIndex(key);
-    int startIndex = index;
+    if (key == null) {
+      throw new NoSuchElementException();
+    }
+    return remove(key, strategy.hash(key));
+  }
 
-    while (table[index] != null) {
-      if (!table[index].isRemoved() && table[index].getKey().equals(key)) {
-        ValueType value = table[index].getValue();
-        table[index].setRemoved(true);
-        size--;
-        return value;
-      }
-      index = (index + 1) % table.length;
-      if (index == startIndex) {
-        break;
+  private ValueType remove(KeyType key, int hash) throws NoSuchElementException {
+    migrateStep();
+    Entry<KeyType, ValueType>[] containing = table;
+    int index = findIndex(table, key, hash);
+    if (index < 0 && oldTable != null) {
+      containing = oldTable;
+      index = findIndex(oldTable, key, hash);
+    }
+    recordLookup(index >= 0);
+
+    if (index >= 0) {
+      ValueType value = containing[index].getValue();
+      containing[index].setRemoved(true);
+      if (containing == table) {
+        tombstones++;
       }
+      size--;
+      shrinkIfSparse();
+      return value;
     }
 
     throw new NoSuchElementException();
@@ -100,7 +294,9 @@ public class HashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueTy
     for (int i = 0; i < table.length; i++) {
       table[i] = null;
     }
+    oldTable = null;
     size = 0;
+    tombstones = 0;
   }
 
   @Override
@@ -113,32 +309,685 @@ public class HashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueTy
     return table.length;
   }
 
-  private int getIndex(KeyType key) {
-    return Math.abs(key.hashCode()) % table.length;
+  /**
+   * Splits the table by slot range. The map's own entries are handed out, so traversal allocates
+   * nothing per entry, and their setValue writes through to the map. An unfinished incremental
+   * resize is completed first so that every entry lives in one table.
+   */
+  @Override
+  public Spliterator<Map.Entry<KeyType, ValueType>> entrySpliterator() {
+    while (oldTable != null) {
+      migrateStep();
+    }
+    Entry<KeyType, ValueType>[] t = table;
+    return new TableSpliterator<>(i -> t[i] != null && !t[i].isRemoved(), i -> t[i], 0, t.length,
+        size, Spliterator.DISTINCT | Spliterator.NONNULL);
+  }
+
+  /**
+   * Rebuilds the table at the smallest capacity that holds the current mappings, dropping every
+   * removed entry. Unlike automatic shrinking, this may go below the capacity the map was created
+   * with.
+   */
+  public void trimToSize() {
+    int capacity = capacityFor(size);
+    if (capacity < table.length || tombstones > 0 || oldTable != null) {
+      rebuild(capacity);
+    }
+  }
+
+  /**
+   * Compiles the current mappings into an immutable map that finds every key with a perfect hash
+   * function instead of probing. Later changes to this map do not affect the frozen copy.
+   *
+   * @return a read-only map holding the same mappings and using the same hash strategy
+   */
+  public FrozenHashtableMap<KeyType, ValueType> freeze() {
+    Object[] keys = new Object[size];
+    Object[] values = new Object[size];
+    int[] count = new int[1];
+    forEachEntry((key, value) -> {
+      keys[count[0]] = key;
+      values[count[0]] = value;
+      count[0]++;
+    });
+    return new FrozenHashtableMap<>(keys, values, strategy);
+  }
+
+  /**
+   * Starts recording probe lengths and resizes. Calling this again keeps the statistics gathered so
+   * far.
+   *
+   * @return the statistics of this map, which can also be published over JMX
+   */
+  public HashtableMapStats enableStats() {
+    if (stats == null) {
+      stats = new HashtableMapStats(this);
+      lookupProbes = 0;
+    }
+    return stats;
+  }
+
+  /**
+   * Stops recording statistics and unpublishes them if they were registered over JMX.
+   */
+  public void disableStats() {
+    if (stats != null) {
+      stats.unregisterMBean();
+      stats = null;
+    }
+  }
+
+  /**
+   * @return the statistics of this map, or null when they are not enabled
+   */
+  public HashtableMapStats getStats() {
+    return stats;
+  }
+
+  /**
+   * @return the number of removed entries still occupying slots of the current table
+   */
+  int getTombstoneCount() {
+    return tombstones;
+  }
+
+  /**
+   * @return true while entries are still being migrated out of the table used before the last
+   *         resize
+   */
+  boolean isResizing() {
+    return oldTable != null;
+  }
+
+  /**
+   * Passes every stored key-value pair to action, including pairs that an unfinished resize has
+   * not migrated yet. The map must not be modified while this runs.
+   */
+  void forEachEntry(BiConsumer<? super KeyType, ? super ValueType> action) {
+    forEachEntry(table, action);
+    if (oldTable != null) {
+      forEachEntry(oldTable, action);
+    }
+  }
+
+  private static <K, V> void forEachEntry(Entry<K, V>[] t, BiConsumer<? super K, ? super V> action) {
+    for (Entry<K, V> entry : t) {
+      if (entry != null && !entry.isRemoved()) {
+        action.accept(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  /**
+   * Hashes every key of a batch, storing the hash of the key at each position into hashes.
+   *
+   * @return the positions within keys, sorted by the home slot of the key at each position in the
+   *         current table
+   */
+  private int[] slotOrder(List<? extends KeyType> keys, int[] hashes) {
+    long[] packed = new long[keys.size()];
+    for (int i = 0; i < packed.length; i++) {
+      KeyType key = keys.get(i);
+      hashes[i] = key == null ? 0 : strategy.hash(key);
+      long home = getIndex(hashes[i], table.length);
+      packed[i] = home << 32 | i;
+    }
+    Arrays.sort(packed);
+
+    int[] order = new int[packed.length];
+    for (int i = 0; i < packed.length; i++) {
+      order[i] = (int) packed[i];
+    }
+    return order;
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<ValueType> asList(Object[] values) {
+    List<ValueType> list = new ArrayList<>(values.length);
+    for (Object value : values) {
+      list.add((ValueType) value);
+    }
+    return list;
+  }
+
+  /**
+   * Picks the home slot of a hash by masking, which relies on table lengths being powers of two.
+   */
+  private static int getIndex(int hash, int length) {
+    return hash & (length - 1);
+  }
+
+  /**
+   * @return the smallest power of two that is at least capacity, and at least 2
+   */
+  private static int powerOfTwo(int capacity) {
+    return Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+  }
+
+  /**
+   * Searches one table for a live entry with the given key and hash.
+   *
+   * @return the index of the entry within t, or -1 when t does not hold the key
+   */
+  private int findIndex(Entry<KeyType, ValueType>[] t, KeyType key, int hash) {
+    int index = getIndex(hash, t.length);
+    int startIndex = index;
+
+    while (t[index] != null) {
+      if (matches(t[index], key, hash)) {
+        countProbes(((index - startIndex) & (t.length - 1)) + 1);
+        return index;
+      }
+      index = (index + 1) & (t.length - 1);
+      if (index == startIndex) {
+        break;
+      }
+    }
+
+    countProbes(((index - startIndex) & (t.length - 1)) + 1);
+    return -1;
+  }
+
+  private void countProbes(int probes) {
+    if (stats != null) {
+      lookupProbes += probes;
+    }
+  }
+
+  /**
+   * Records the lookup whose probes were counted since the last one as a hit or a miss.
+   */
+  private void recordLookup(boolean hit) {
+    if (stats != null) {
+      stats.recordLookup(hit, lookupProbes);
+      lookupProbes = 0;
+    }
+  }
+
+  /**
+   * Walks the probe sequence of key in the current table once. When the key still lives in the old
+   * table of an unfinished resize, its entry is migrated first so callers only deal with table.
+   *
+   * @return the index of the key's entry in table, or -(slot + 1) where slot is the first removed
+   *         or empty slot a new entry for key should be stored in
+   */
+  @SuppressWarnings("unchecked")
+  private int probe(KeyType key, int hash) {
+    migrateStep();
+    Entry<KeyType, ValueType> migrated = null;
+    if (oldTable != null) {
+      int oldIndex = findIndex(oldTable, key, hash);
+      if (oldIndex >= 0) {
+        migrated = oldTable[oldIndex];
+        oldTable[oldIndex] = (Entry<KeyType, ValueType>) (Entry<?, ?>) MOVED;
+      }
+    }
+
+    int index = getIndex(hash, table.length);
+    int freeIndex = -1;
+    int probes = 0;
+    for (; probes < table.length && table[index] != null; probes++) {
+      if (table[index].isRemoved()) {
+        if (freeIndex < 0) {
+          freeIndex = index;
+        }
+      } else if (matches(table[index], key, hash)) {
+        countProbes(probes + 1);
+        recordLookup(true);
+        return index;
+      }
+      index = (index + 1) & (table.length - 1);
+    }
+    if (freeIndex < 0) {
+      freeIndex = index;
+    }
+    countProbes(probes + 1);
+    recordLookup(migrated != null);
+
+    if (migrated != null) {
+      if (table[freeIndex] != null) {
+        tombstones--;
+      }
+      table[freeIndex] = migrated;
+      return freeIndex;
+    }
+    return -freeIndex - 1;
+  }
+
+  /**
+   * @return true when entry is live and holds key, comparing the cached hashes before the keys
+   */
+  private boolean matches(Entry<KeyType, ValueType> entry, KeyType key, int hash) {
+    return !entry.isRemoved() && entry.hash == hash && strategy.equals(entry.getKey(), key);
+  }
+
+  /**
+   * Adds a new entry in the free slot returned by probe and grows the table when needed.
+   */
+  private void insertAt(int slot, KeyType key, ValueType value, int hash) {
+    if (table[slot] != null) {
+      tombstones--;
+    }
+    table[slot] = new Entry<>(key, value, hash);
+    size++;
+
+    if ((double)size >= table.length * LOAD_FACTOR_THRESHOLD) {
+      resizeTable();
+    } else if ((double)(size + tombstones) >= table.length * LOAD_FACTOR_THRESHOLD) {
+      // mostly removed entries fill the table; growing once live entries reach half the
+      // threshold keeps rehashes in place at least 0.35 * capacity insertions apart
+      if ((double)size >= table.length * LOAD_FACTOR_THRESHOLD / 2) {
+        resizeTable();
+      } else {
+        rehashInPlace();
+      }
+    }
+  }
+
+  /**
+   * Shrinks the table once so few of its slots are live that it mostly holds empty or removed
+   * slots. The new table is filled to at most half the threshold, so shrinking and growing cannot
+   * alternate on every operation.
+   */
+  private void shrinkIfSparse() {
+    if (table.length > minCapacity && size < table.length * MIN_LOAD_FACTOR) {
+      int capacity = Math.max(minCapacity, capacityFor(size * 2));
+      if (capacity < table.length) {
+        rebuild(capacity);
+      }
+    }
+  }
+
+  /**
+   * Applies the outcome of compute or merge to the probe result index: a null value removes the
+   * entry if there is one, anything else updates or inserts it.
+   */
+  private void storeAt(int index, KeyType key, ValueType value, int hash) {
+    if (index >= 0) {
+      if (value == null) {
+        table[index].setRemoved(true);
+        tombstones++;
+        size--;
+        shrinkIfSparse();
+      } else {
+        table[index].setValue(value);
+      }
+    } else if (value != null) {
+      insertAt(-index - 1, key, value, hash);
+    }
+  }
+
+  /**
+   * Stores an entry whose key is known to be absent into the first free or removed slot of its
+   * probe sequence in table, without checking for duplicates.
+   */
+  private void placeEntry(Entry<KeyType, ValueType> entry) {
+    int index = getIndex(entry.hash, table.length);
+    while (table[index] != null && !table[index].isRemoved()) {
+      index = (index + 1) & (table.length - 1);
+    }
+    if (table[index] != null) {
+      tombstones--;
+    }
+    table[index] = entry;
   }
 
+  /**
+   * Starts an incremental resize into a table of twice the capacity. Instead of rehashing every
+   * entry here, the old table is kept and drained a few slots at a time by migrateStep, and lookups
+   * consult both tables until it is empty.
+   */
   @SuppressWarnings("unchecked")
   private void resizeTable() {
-    Entry<KeyType, ValueType>[] oldTable = table;
+    // a resize normally finishes long before the next one, this only guards tiny tables
+    while (oldTable != null) {
+      migrateStep();
+    }
+
+    long start = stats == null ? 0L : System.nanoTime();
+    oldTable = table;
     table = (Entry<KeyType, ValueType>[]) new Entry[table.length * 2];
-    size = 0;
+    migrateIndex = 0;
+    tombstones = 0;
+    if (stats != null) {
+      stats.recordResizeStart();
+      stats.recordResizeTime(System.nanoTime() - start);
+    }
+  }
 
-    for (Entry<KeyType, ValueType> entry : oldTable) {
+  /**
+   * Grows the table right away, without an incremental resize, when holding entries mappings would
+   * cross the load factor threshold. The new capacity is at least double the old one, so a batch
+   * rehashes the table at most once.
+   */
+  private void ensureCapacity(int entries) {
+    if (entries >= table.length * LOAD_FACTOR_THRESHOLD) {
+      rebuild(Math.max(table.length * 2, capacityFor(entries)));
+    }
+  }
+
+  /**
+   * Moves every live entry into a new table of the given capacity in one pass, finishing any
+   * incremental resize first. The new table holds no removed entries.
+   */
+  @SuppressWarnings("unchecked")
+  private void rebuild(int capacity) {
+    while (oldTable != null) {
+      migrateStep();
+    }
+
+    long start = stats == null ? 0L : System.nanoTime();
+    Entry<KeyType, ValueType>[] previous = table;
+    table = (Entry<KeyType, ValueType>[]) new Entry[capacity];
+    tombstones = 0;
+    for (Entry<KeyType, ValueType> entry : previous) {
       if (entry != null && !entry.isRemoved()) {
-        put(entry.getKey(), entry.getValue());
+        placeEntry(entry);
+      }
+    }
+    if (stats != null) {
+      stats.recordResizeStart();
+      stats.recordResizeTime(System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Drops the removed entries of the table without allocating a new one. Once they are cleared,
+   * every live entry is taken out and placed again, walking the table from a slot that was empty
+   * before, so no probe sequence crosses the starting point. Each entry lands in the first empty
+   * slot from its home, which is never past its old slot, and slots are only ever filled, so every
+   * entry stays reachable.
+   */
+  private void rehashInPlace() {
+    while (oldTable != null) {
+      migrateStep();
+    }
+
+    long start = stats == null ? 0L : System.nanoTime();
+    int mask = table.length - 1;
+    // the occupancy threshold guarantees an empty slot
+    int first = 0;
+    while (table[first] != null) {
+      first++;
+    }
+    for (int i = 0; i < table.length; i++) {
+      if (table[i] != null && table[i].isRemoved()) {
+        table[i] = null;
       }
     }
+    tombstones = 0;
+    for (int i = 1; i <= table.length; i++) {
+      int index = (first + i) & mask;
+      Entry<KeyType, ValueType> entry = table[index];
+      if (entry != null) {
+        table[index] = null;
+        placeEntry(entry);
+      }
+    }
+    if (stats != null) {
+      stats.recordResizeStart();
+      stats.recordResizeTime(System.nanoTime() - start);
+    }
   }
 
+  /**
+   * @return the smallest power-of-two capacity that holds entries mappings without crossing the
+   *         threshold
+   */
+  private static int capacityFor(int entries) {
+    return powerOfTwo((int) (entries / LOAD_FACTOR_THRESHOLD) + 1);
+  }
 
-  private static class Entry<KeyType, ValueType> {
+  /**
+   * Moves the live entries of the next MIGRATION_STEP old-table slots into the current table.
+   * Doubling the capacity leaves at least 0.7 * old capacity insertions before the next resize, so
+   * the old table is always drained in time.
+   */
+  @SuppressWarnings("unchecked")
+  private void migrateStep() {
+    if (oldTable == null) {
+      return;
+    }
+
+    long start = stats == null ? 0L : System.nanoTime();
+    int end = Math.min(migrateIndex + MIGRATION_STEP, oldTable.length);
+    for (; migrateIndex < end; migrateIndex++) {
+      Entry<KeyType, ValueType> entry = oldTable[migrateIndex];
+      if (entry != null && !entry.isRemoved()) {
+        placeEntry(entry);
+        oldTable[migrateIndex] = (Entry<KeyType, ValueType>) (Entry<?, ?>) MOVED;
+      }
+    }
+
+    if (migrateIndex == oldTable.length) {
+      oldTable = null;
+    }
+    if (stats != null) {
+      stats.recordResizeTime(System.nanoTime() - start);
+    }
+  }
+
+
+  /**
+   * @return a builder for a HashtableMap
+   */
+  public static <K, V> Builder<K, V> builder() {
+    return new Builder<>();
+  }
+
+  /**
+   * Creates HashtableMaps that are sized up front for the number of mappings they will hold, so
+   * filling them never resizes.
+   */
+  public static class Builder<KeyType, ValueType> {
+    private int expectedSize;
+    private HashStrategy<? super KeyType> strategy = HashStrategy.defaultStrategy();
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    /**
+     * @param expectedSize number of mappings the map should hold without resizing
+     */
+    public Builder<KeyType, ValueType> expectedSize(int expectedSize) {
+      if (expectedSize < 0) {
+        throw new IllegalArgumentException();
+      }
+      this.expectedSize = expectedSize;
+      return this;
+    }
+
+    /**
+     * @param strategy hashes and compares the keys of the map
+     */
+    public Builder<KeyType, ValueType> hashStrategy(HashStrategy<? super KeyType> strategy) {
+      if (strategy == null) {
+        throw new IllegalArgumentException();
+      }
+      this.strategy = strategy;
+      return this;
+    }
+
+    /**
+     * @param pool runs the tasks of buildParallel, the common pool by default
+     */
+    public Builder<KeyType, ValueType> pool(ForkJoinPool pool) {
+      if (pool == null) {
+        throw new IllegalArgumentException();
+      }
+      this.pool = pool;
+      return this;
+    }
+
+    public HashtableMap<KeyType, ValueType> build() {
+      return new HashtableMap<>(Math.max(DEFAULT_CAPACITY, capacityFor(expectedSize)), strategy);
+    }
+
+    /**
+     * Builds a map holding the given pairs, filling it on the fork-join pool. The table is sized
+     * for all pairs up front and cut into contiguous slot regions; after the pairs are grouped by
+     * the region of their home slot, every region is filled by its own task with no locking. The
+     * few pairs whose probe sequence runs past the end of their region are inserted one by one
+     * afterwards, so the result is an ordinary linear-probing table that later operations treat
+     * like one filled by put.
+     *
+     * @throws IllegalArgumentException when a key is null or appears more than once
+     */
+    public HashtableMap<KeyType, ValueType> buildParallel(
+        Collection<? extends Map.Entry<? extends KeyType, ? extends ValueType>> entries)
+        throws IllegalArgumentException {
+      Object[] pairs = entries.toArray();
+      HashtableMap<KeyType, ValueType> map = new HashtableMap<>(Math.max(DEFAULT_CAPACITY,
+          capacityFor(Math.max(expectedSize, pairs.length))), strategy);
+      map.fillParallel(pairs, pool);
+      return map;
+    }
+
+    /**
+     * Collects the stream and builds a map from it as buildParallel of a collection does.
+     */
+    public HashtableMap<KeyType, ValueType> buildParallel(
+        Stream<? extends Map.Entry<? extends KeyType, ? extends ValueType>> entries)
+        throws IllegalArgumentException {
+      return buildParallel(entries.collect(Collectors.toList()));
+    }
+  }
+
+  /**
+   * Runs action for every index in [from, to), splitting the range across the pool.
+   */
+  @SuppressWarnings("serial")
+  private static class RangeTask extends RecursiveAction {
+    private final int from;
+    private final int to;
+    private final IntConsumer action;
+
+    RangeTask(int from, int to, IntConsumer action) {
+      this.from = from;
+      this.to = to;
+      this.action = action;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from == 1) {
+        action.accept(from);
+        return;
+      }
+      int middle = (from + to) >>> 1;
+      invokeAll(new RangeTask(from, middle, action), new RangeTask(middle, to, action));
+    }
+  }
+
+  /**
+   * Inserts pairs, which are Map.Entry objects, into this empty map whose table is large enough to
+   * hold them all below the threshold. Works in three parallel passes over chunks of the input and
+   * regions of the table: hashing and counting pairs per region, grouping them by region, and
+   * filling the regions. Pairs that do not fit in their region go in last through put.
+   */
+  @SuppressWarnings("unchecked")
+  private void fillParallel(Object[] pairs, ForkJoinPool pool) {
+    int n = pairs.length;
+    if (n == 0) {
+      return;
+    }
+    int regionBits = Math.min(Integer.numberOfTrailingZeros(table.length) - MIN_REGION_BITS,
+        32 - Integer.numberOfLeadingZeros(pool.getParallelism() * 4 - 1));
+    int regions = 1 << Math.max(0, regionBits);
+    int regionShift = Integer.numberOfTrailingZeros(table.length / regions);
+    int chunks = Math.min(n, regions);
+
+    // pass 1: hash every key and count the pairs of each chunk that fall into each region
+    int[] hashes = new int[n];
+    int[][] counts = new int[chunks][regions];
+    pool.invoke(new RangeTask(0, chunks, c -> {
+      for (int i = chunkStart(c, chunks, n); i < chunkStart(c + 1, chunks, n); i++) {
+        KeyType key = ((Map.Entry<KeyType, ValueType>) pairs[i]).getKey();
+        if (key == null) {
+          throw new IllegalArgumentException();
+        }
+        hashes[i] = strategy.hash(key);
+        counts[c][getIndex(hashes[i], table.length) >>> regionShift]++;
+      }
+    }));
+
+    // turn the counts into the position where each chunk writes its pairs of each region
+    int[] regionStart = new int[regions + 1];
+    int position = 0;
+    for (int r = 0; r < regions; r++) {
+      regionStart[r] = position;
+      for (int c = 0; c < chunks; c++) {
+        int count = counts[c][r];
+        counts[c][r] = position;
+        position += count;
+      }
+    }
+    regionStart[regions] = n;
+
+    // pass 2: group the pair indices by region
+    int[] order = new int[n];
+    pool.invoke(new RangeTask(0, chunks, c -> {
+      int[] next = counts[c];
+      for (int i = chunkStart(c, chunks, n); i < chunkStart(c + 1, chunks, n); i++) {
+        order[next[getIndex(hashes[i], table.length) >>> regionShift]++] = i;
+      }
+    }));
+
+    // pass 3: fill every region on its own, setting aside pairs that would probe past its end
+    int[] placed = new int[regions];
+    int[][] spilled = new int[regions][];
+    pool.invoke(new RangeTask(0, regions, r -> {
+      int end = (r + 1) << regionShift;
+      int[] spill = new int[8];
+      int spillCount = 0;
+      for (int k = regionStart[r]; k < regionStart[r + 1]; k++) {
+        int i = order[k];
+        Map.Entry<KeyType, ValueType> pair = (Map.Entry<KeyType, ValueType>) pairs[i];
+        int index = getIndex(hashes[i], table.length);
+        while (index < end && table[index] != null) {
+          if (matches(table[index], pair.getKey(), hashes[i])) {
+            throw new IllegalArgumentException();
+          }
+          index++;
+        }
+        if (index < end) {
+          table[index] = new Entry<>(pair.getKey(), pair.getValue(), hashes[i]);
+          placed[r]++;
+        } else {
+          if (spillCount == spill.length) {
+            spill = Arrays.copyOf(spill, spillCount * 2);
+          }
+          spill[spillCount++] = i;
+        }
+      }
+      spilled[r] = Arrays.copyOf(spill, spillCount);
+    }));
+
+    for (int count : placed) {
+      size += count;
+    }
+    for (int[] spill : spilled) {
+      for (int i : spill) {
+        Map.Entry<KeyType, ValueType> pair = (Map.Entry<KeyType, ValueType>) pairs[i];
+        put(pair.getKey(), pair.getValue());
+      }
+    }
+  }
+
+  private static int chunkStart(int chunk, int chunks, int n) {
+    return (int) ((long) chunk * n / chunks);
+  }
+
+  private static class Entry<KeyType, ValueType> implements Map.Entry<KeyType, ValueType> {
     private KeyType key;
     private ValueType value;
+    // the key's hash under the map's strategy, so probes and resizes need not recompute it
+    private final int hash;
     private boolean removed;
 
-    public Entry(KeyType key, ValueType value) {
+    public Entry(KeyType key, ValueType value, int hash) {
       this.key = key;
       this.value = value;
+      this.hash = hash;
       this.removed = false;
     }
 
@@ -150,6 +999,12 @@ public class HashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueTy
       return value;
     }
 
+    public ValueType setValue(ValueType value) {
+      ValueType previous = this.value;
+      this.value = value;
+      return previous;
+    }
+
     public boolean isRemoved() {
       return removed;
     }
@@ -157,5 +1012,19 @@ public class HashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueTy
     public void setRemoved(boolean removed) {
       this.removed = removed;
     }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Map.Entry)) {
+        return false;
+      }
+      Map.Entry<?, ?> other = (Map.Entry<?, ?>) o;
+      return Objects.equals(key, other.getKey()) && Objects.equals(value, other.getValue());
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(key) ^ Objects.hashCode(value);
+    }
   }
 }
@@ -0,0 +1,350 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+
+/**
+ * Read-only view of a HashtableMap that was written to a file with write. The file holds a
+ * complete open-addressing table, so load only memory-maps it and get and containsKey probe the
+ * mapping directly. Nothing is read into the heap up front, and a multi-GB snapshot can be queried
+ * as soon as load returns.
+ *
+ * File layout, all numbers big-endian:
+ * <pre>
+ *   header   int magic, int version, int capacity, int size, long dataOffset, long fileLength
+ *   slots    capacity slots of int hash, int keyLength, long entryOffset (hash 0 = empty)
+ *   entries  key bytes, int valueLength, value bytes
+ * </pre>
+ * Hashes are computed over the encoded key bytes, so they do not depend on hashCode and stay valid
+ * across JVM runs. The file is mapped in chunks of 1GB and the writer pads entries so that none
+ * crosses a chunk boundary.
+ */
+public class HashtableMapSnapshot<KeyType, ValueType>
+    implements MapADT<KeyType, ValueType>, AutoCloseable {
+
+  private static final int MAGIC = 0x48534E50;
+  private static final int VERSION = 1;
+  private static final int HEADER_BYTES = 32;
+  private static final int SLOT_BYTES = 16;
+  private static final int CHUNK_SHIFT = 30;
+  private static final long CHUNK_BYTES = 1L << CHUNK_SHIFT;
+  private static final double LOAD_FACTOR_THRESHOLD = 0.7;
+
+  /**
+   * Converts keys or values to and from the bytes stored in a snapshot.
+   */
+  public interface Codec<T> {
+    byte[] encode(T value);
+
+    /**
+     * @return the value stored in the length bytes of buffer starting at offset
+     */
+    T decode(ByteBuffer buffer, int offset, int length);
+  }
+
+  public static final Codec<String> STRING = new Codec<>() {
+    public byte[] encode(String value) {
+      return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public String decode(ByteBuffer buffer, int offset, int length) {
+      byte[] bytes = new byte[length];
+      buffer.get(offset, bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+  };
+
+  public static final Codec<Integer> INTEGER = new Codec<>() {
+    public byte[] encode(Integer value) {
+      return ByteBuffer.allocate(4).putInt(value).array();
+    }
+
+    public Integer decode(ByteBuffer buffer, int offset, int length) {
+      return buffer.getInt(offset);
+    }
+  };
+
+  public static final Codec<Long> LONG = new Codec<>() {
+    public byte[] encode(Long value) {
+      return ByteBuffer.allocate(8).putLong(value).array();
+    }
+
+    public Long decode(ByteBuffer buffer, int offset, int length) {
+      return buffer.getLong(offset);
+    }
+  };
+
+  private final Codec<KeyType> keyCodec;
+  private final Codec<ValueType> valueCodec;
+  private final FileChannel channel;
+  private final MappedByteBuffer[] chunks;
+  private final int capacity;
+  private final int size;
+
+  private HashtableMapSnapshot(FileChannel channel, Codec<KeyType> keyCodec,
+      Codec<ValueType> valueCodec) throws IOException {
+    this.channel = channel;
+    this.keyCodec = keyCodec;
+    this.valueCodec = valueCodec;
+
+    long fileLength = channel.size();
+    chunks = new MappedByteBuffer[(int) ((fileLength + CHUNK_BYTES - 1) >>> CHUNK_SHIFT)];
+    for (int i = 0; i < chunks.length; i++) {
+      long start = (long) i << CHUNK_SHIFT;
+      chunks[i] =
+          channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(CHUNK_BYTES, fileLength - start));
+    }
+
+    ByteBuffer header = chunks.length > 0 ? chunks[0] : ByteBuffer.allocate(0);
+    if (fileLength < HEADER_BYTES || header.getInt(0) != MAGIC || header.getInt(4) != VERSION
+        || header.getLong(24) != fileLength) {
+      throw new IOException("not a HashtableMap snapshot or truncated");
+    }
+    capacity = header.getInt(8);
+    size = header.getInt(12);
+  }
+
+  /**
+   * Memory-maps a snapshot written by write. The returned map stays valid until it is closed.
+   *
+   * @throws IOException when file cannot be read or is not a complete snapshot
+   */
+  public static <K, V> HashtableMapSnapshot<K, V> load(Path file, Codec<K> keyCodec,
+      Codec<V> valueCodec) throws IOException {
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+    try {
+      return new HashtableMapSnapshot<>(channel, keyCodec, valueCodec);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Writes every mapping of map to file, replacing its previous contents. The map must not be
+   * modified while this runs.
+   */
+  public static <K, V> void write(HashtableMap<K, V> map, Path file, Codec<K> keyCodec,
+      Codec<V> valueCodec) throws IOException {
+    List<byte[]> keys = new ArrayList<>(map.getSize());
+    List<byte[]> values = new ArrayList<>(map.getSize());
+    map.forEachEntry((key, value) -> {
+      keys.add(keyCodec.encode(key));
+      values.add(valueCodec.encode(value));
+    });
+
+    int capacity = Integer.highestOneBit(Math.max((int) (keys.size() / LOAD_FACTOR_THRESHOLD), 1))
+        << 1;
+    int[] slotEntries = new int[capacity];
+    int[] hashes = new int[keys.size()];
+    for (int i = 0; i < keys.size(); i++) {
+      hashes[i] = hash(keys.get(i));
+      int index = hashes[i] & (capacity - 1);
+      while (slotEntries[index] != 0) {
+        index = (index + 1) & (capacity - 1);
+      }
+      // entry numbers are stored plus one so that 0 can mean empty
+      slotEntries[index] = i + 1;
+    }
+
+    // lay the entries out after the slots, moving any that would cross a chunk boundary past it
+    long dataOffset = HEADER_BYTES + (long) capacity * SLOT_BYTES;
+    long[] offsets = new long[keys.size()];
+    long position = dataOffset;
+    for (int i = 0; i < keys.size(); i++) {
+      long length = keys.get(i).length + 4L + values.get(i).length;
+      if (length > CHUNK_BYTES) {
+        throw new IllegalArgumentException("entry larger than a snapshot chunk");
+      }
+      if ((position >>> CHUNK_SHIFT) != ((position + length - 1) >>> CHUNK_SHIFT)) {
+        position = ((position >>> CHUNK_SHIFT) + 1) << CHUNK_SHIFT;
+      }
+      offsets[i] = position;
+      position += length;
+    }
+
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+        Files.newOutputStream(file), 1 << 16))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(capacity);
+      out.writeInt(keys.size());
+      out.writeLong(dataOffset);
+      out.writeLong(position);
+
+      for (int slot = 0; slot < capacity; slot++) {
+        int i = slotEntries[slot] - 1;
+        out.writeInt(i < 0 ? 0 : hashes[i]);
+        out.writeInt(i < 0 ? 0 : keys.get(i).length);
+        out.writeLong(i < 0 ? 0L : offsets[i]);
+      }
+
+      long written = dataOffset;
+      for (int i = 0; i < keys.size(); i++) {
+        pad(out, offsets[i] - written);
+        out.write(keys.get(i));
+        out.writeInt(values.get(i).length);
+        out.write(values.get(i));
+        written = offsets[i] + keys.get(i).length + 4 + values.get(i).length;
+      }
+    }
+  }
+
+  @Override
+  public boolean containsKey(KeyType key) {
+    return key != null && findSlot(keyCodec.encode(key)) >= 0;
+  }
+
+  @Override
+  public ValueType get(KeyType key) throws NoSuchElementException {
+    byte[] keyBytes = key == null ? null : keyCodec.encode(key);
+    int slot = keyBytes == null ? -1 : findSlot(keyBytes);
+    if (slot < 0) {
+      throw new NoSuchElementException();
+    }
+
+    return valueAt(slot);
+  }
+
+  /**
+   * Decodes the mappings straight from the file, splitting by slot range.
+   */
+  @Override
+  public Spliterator<Map.Entry<KeyType, ValueType>> entrySpliterator() {
+    return new TableSpliterator<>(slot -> slotInt(slot, 0) != 0, slot -> {
+      long offset = slotLong(slot, 8);
+      ByteBuffer chunk = chunks[(int) (offset >>> CHUNK_SHIFT)];
+      KeyType key =
+          keyCodec.decode(chunk, (int) (offset & (CHUNK_BYTES - 1)), slotInt(slot, 4));
+      return new AbstractMap.SimpleImmutableEntry<>(key, valueAt(slot));
+    }, 0, capacity, size, Spliterator.DISTINCT | Spliterator.NONNULL);
+  }
+
+  /**
+   * Snapshots are read-only.
+   *
+   * @throws UnsupportedOperationException always
+   */
+  @Override
+  public void put(KeyType key, ValueType value) {
+    throw new UnsupportedOperationException("snapshot is read-only");
+  }
+
+  /**
+   * Snapshots are read-only.
+   *
+   * @throws UnsupportedOperationException always
+   */
+  @Override
+  public ValueType remove(KeyType key) {
+    throw new UnsupportedOperationException("snapshot is read-only");
+  }
+
+  /**
+   * Snapshots are read-only.
+   *
+   * @throws UnsupportedOperationException always
+   */
+  @Override
+  public void clear() {
+    throw new UnsupportedOperationException("snapshot is read-only");
+  }
+
+  @Override
+  public int getSize() {
+    return size;
+  }
+
+  @Override
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Closes the snapshot file. The mapping itself is released once it becomes unreachable.
+   */
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /**
+   * @return the slot holding the entry whose key is encoded as keyBytes, or -1 when there is none
+   */
+  private int findSlot(byte[] keyBytes) {
+    int hash = hash(keyBytes);
+    int mask = capacity - 1;
+    int slot = hash & mask;
+    int stored;
+    while ((stored = slotInt(slot, 0)) != 0) {
+      if (stored == hash && slotInt(slot, 4) == keyBytes.length
+          && equalsBytes(slotLong(slot, 8), keyBytes)) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  private ValueType valueAt(int slot) {
+    long valueOffset = slotLong(slot, 8) + slotInt(slot, 4);
+    ByteBuffer chunk = chunks[(int) (valueOffset >>> CHUNK_SHIFT)];
+    int position = (int) (valueOffset & (CHUNK_BYTES - 1));
+    return valueCodec.decode(chunk, position + 4, chunk.getInt(position));
+  }
+
+  private int slotInt(int slot, int offset) {
+    long position = HEADER_BYTES + (long) slot * SLOT_BYTES + offset;
+    return chunks[(int) (position >>> CHUNK_SHIFT)].getInt((int) (position & (CHUNK_BYTES - 1)));
+  }
+
+  private long slotLong(int slot, int offset) {
+    long position = HEADER_BYTES + (long) slot * SLOT_BYTES + offset;
+    return chunks[(int) (position >>> CHUNK_SHIFT)].getLong((int) (position & (CHUNK_BYTES - 1)));
+  }
+
+  private boolean equalsBytes(long offset, byte[] bytes) {
+    ByteBuffer chunk = chunks[(int) (offset >>> CHUNK_SHIFT)];
+    int position = (int) (offset & (CHUNK_BYTES - 1));
+    for (int i = 0; i < bytes.length; i++) {
+      if (chunk.get(position + i) != bytes[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Hashes the encoded key with FNV-1a and finishes with a multiplicative mix.
+   *
+   * @return a non-zero hash of bytes
+   */
+  private static int hash(byte[] bytes) {
+    int hash = 0x811C9DC5;
+    for (byte b : bytes) {
+      hash = (hash ^ b) * 0x01000193;
+    }
+    hash *= 0x9E3779B9;
+    hash ^= hash >>> 16;
+    return hash == 0 ? 1 : hash;
+  }
+
+  private static void pad(OutputStream out, long count) throws IOException {
+    for (long i = 0; i < count; i++) {
+      out.write(0);
+    }
+  }
+}
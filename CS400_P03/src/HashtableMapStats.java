@@ -0,0 +1,172 @@
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters a HashtableMap keeps while statistics are enabled on it: probe-length histograms for
+ * hits and misses and the number and duration of resizes. Occupancy figures such as the load factor
+ * and tombstone ratio are read from the map when asked for.
+ *
+ * A map without statistics holds no HashtableMapStats at all, so it only pays a null check per
+ * operation. Like the map itself, the counters are not thread-safe.
+ */
+public class HashtableMapStats implements HashtableMapStatsMXBean {
+
+  // probe lengths from this one on share the last histogram bucket
+  private static final int HISTOGRAM_BUCKETS = 32;
+
+  private final HashtableMap<?, ?> map;
+  private final long[] hitProbes = new long[HISTOGRAM_BUCKETS];
+  private final long[] missProbes = new long[HISTOGRAM_BUCKETS];
+  private long hitCount;
+  private long missCount;
+  private long hitProbeTotal;
+  private long missProbeTotal;
+  private long resizeCount;
+  private long resizeNanos;
+  private ObjectName registeredName;
+
+  HashtableMapStats(HashtableMap<?, ?> map) {
+    this.map = map;
+  }
+
+  /**
+   * Records one lookup that inspected probes slots.
+   */
+  void recordLookup(boolean hit, int probes) {
+    int bucket = Math.min(Math.max(probes, 1), HISTOGRAM_BUCKETS) - 1;
+    if (hit) {
+      hitCount++;
+      hitProbeTotal += probes;
+      hitProbes[bucket]++;
+    } else {
+      missCount++;
+      missProbeTotal += probes;
+      missProbes[bucket]++;
+    }
+  }
+
+  void recordResizeStart() {
+    resizeCount++;
+  }
+
+  void recordResizeTime(long nanos) {
+    resizeNanos += nanos;
+  }
+
+  @Override
+  public long getHitCount() {
+    return hitCount;
+  }
+
+  @Override
+  public long getMissCount() {
+    return missCount;
+  }
+
+  @Override
+  public double getMeanHitProbeLength() {
+    return hitCount == 0 ? 0.0 : (double) hitProbeTotal / hitCount;
+  }
+
+  @Override
+  public double getMeanMissProbeLength() {
+    return missCount == 0 ? 0.0 : (double) missProbeTotal / missCount;
+  }
+
+  @Override
+  public long[] getHitProbeHistogram() {
+    return hitProbes.clone();
+  }
+
+  @Override
+  public long[] getMissProbeHistogram() {
+    return missProbes.clone();
+  }
+
+  @Override
+  public double getTombstoneRatio() {
+    return (double) map.getTombstoneCount() / map.getCapacity();
+  }
+
+  @Override
+  public double getLoadFactor() {
+    return (double) map.getSize() / map.getCapacity();
+  }
+
+  @Override
+  public int getSize() {
+    return map.getSize();
+  }
+
+  @Override
+  public int getCapacity() {
+    return map.getCapacity();
+  }
+
+  @Override
+  public long getResizeCount() {
+    return resizeCount;
+  }
+
+  @Override
+  public double getResizeMillis() {
+    return resizeNanos / 1e6;
+  }
+
+  @Override
+  public void reset() {
+    for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+      hitProbes[i] = 0;
+      missProbes[i] = 0;
+    }
+    hitCount = 0;
+    missCount = 0;
+    hitProbeTotal = 0;
+    missProbeTotal = 0;
+    resizeCount = 0;
+    resizeNanos = 0;
+  }
+
+  /**
+   * Publishes these statistics on the platform MBean server as HashtableMap:type=Stats,name=name.
+   *
+   * @throws IllegalStateException when they are already registered or the name is taken
+   */
+  public void registerMBean(String name) {
+    if (registeredName != null) {
+      throw new IllegalStateException("already registered as " + registeredName);
+    }
+    try {
+      ObjectName objectName =
+          new ObjectName("HashtableMap:type=Stats,name=" + ObjectName.quote(name));
+      ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+      registeredName = objectName;
+    } catch (JMException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Removes these statistics from the platform MBean server if they were registered.
+   */
+  public void unregisterMBean() {
+    if (registeredName == null) {
+      return;
+    }
+    try {
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+    } catch (JMException e) {
+      throw new IllegalStateException(e);
+    } finally {
+      registeredName = null;
+    }
+  }
+
+  /**
+   * @return the name these statistics are registered under, or null
+   */
+  public ObjectName getObjectName() {
+    return registeredName;
+  }
+}
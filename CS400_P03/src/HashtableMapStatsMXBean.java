@@ -0,0 +1,40 @@
+/**
+ * Management interface through which HashtableMapStats are published over JMX.
+ */
+public interface HashtableMapStatsMXBean {
+
+    // number of lookups that found their key, and that did not
+    public long getHitCount();
+
+    public long getMissCount();
+
+    // average number of slots inspected by a lookup that found its key, and by one that did not
+    public double getMeanHitProbeLength();
+
+    public double getMeanMissProbeLength();
+
+    // element i counts lookups that inspected i + 1 slots, the last element all longer ones too
+    public long[] getHitProbeHistogram();
+
+    public long[] getMissProbeHistogram();
+
+    // fraction of slots holding removed entries
+    public double getTombstoneRatio();
+
+    // fraction of slots holding live entries
+    public double getLoadFactor();
+
+    public int getSize();
+
+    public int getCapacity();
+
+    // number of resizes and rehashes, and wall-clock time spent on them including incremental
+    // migration
+    public long getResizeCount();
+
+    public double getResizeMillis();
+
+    // forget everything counted so far
+    public void reset();
+
+}
@@ -1,6 +1,24 @@
 import org.junit.Test;
 import org.junit.Assert;
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class HashtableMapTests {
 
@@ -55,7 +73,8 @@ public class HashtableMapTests {
   @Test
   /**
    * Tests the resizeTable method.
-   * It verifies that the table capacity is correctly doubled after resizing.
+   * It verifies that the capacity is rounded up to a power of two and correctly doubled after
+   * resizing.
    */
   public void testResizeTable() {
     
@@ -65,32 +84,1341 @@ public class HashtableMapTests {
       hashtable.put("B", 2);
       hashtable.put("C", 3);
       
-      //lower than 0.7, no change
+      //lower than 0.7, no change (5 is rounded up to 8)
       Assert.assertEquals(3, hashtable.getSize());
-      Assert.assertEquals(5, hashtable.getCapacity());
+      Assert.assertEquals(8, hashtable.getCapacity());
       
       hashtable.put("D", 4);
-      
-     //reach 0.7. the capacity should be doubled(10)
       hashtable.put("E", 5);
-      Assert.assertEquals(5, hashtable.getSize());
-      Assert.assertEquals(10, hashtable.getCapacity());
-     
-      hashtable.put("F", 6);
+      Assert.assertEquals(8, hashtable.getCapacity());
       
-      //reach 0.7 again. the capcaity should be doubled again (20)
-      hashtable.put("G", 7);
-      Assert.assertEquals(7, hashtable.getSize());
-      Assert.assertEquals(20, hashtable.getCapacity());
+     //reach 0.7. the capacity should be doubled(16)
+      hashtable.put("F", 6);
+      Assert.assertEquals(6, hashtable.getSize());
+      Assert.assertEquals(16, hashtable.getCapacity());
      
+      for (int i = 0; i < 5; i++) {
+        hashtable.put("G" + i, 7 + i);
+      }
+      Assert.assertEquals(11, hashtable.getSize());
+      Assert.assertEquals(16, hashtable.getCapacity());
       
-      hashtable.put("H", 8);
+      //reach 0.7 again. the capcaity should be doubled again (32)
+      hashtable.put("H", 12);
       
-      Assert.assertEquals(8, hashtable.getSize());
-      Assert.assertEquals(20, hashtable.getCapacity());
+      Assert.assertEquals(12, hashtable.getSize());
+      Assert.assertEquals(32, hashtable.getCapacity());
 
   }
   
 
 
+  @Test
+  /**
+   * Tests the parallel-array storage of ArrayHashtableMap. It verifies that lookups, removals and
+   * resizing behave like HashtableMap and that a removed slot is reused by a later insertion.
+   */
+  public void testArrayHashtableMap() {
+
+    ArrayHashtableMap<String, Integer> hashtable = new ArrayHashtableMap<>(5);
+
+    hashtable.put("A", 1);
+    hashtable.put("B", 2);
+    hashtable.put("C", 3);
+    hashtable.put("D", 4);
+    hashtable.put("E", 5);
+
+    // reach 0.7, the capacity should be doubled like HashtableMap
+    Assert.assertEquals(5, hashtable.getSize());
+    Assert.assertEquals(10, hashtable.getCapacity());
+    Assert.assertEquals(3, hashtable.get("C").intValue());
+
+    Assert.assertEquals(2, hashtable.remove("B").intValue());
+    Assert.assertFalse(hashtable.containsKey("B"));
+    Assert.assertEquals(4, hashtable.getSize());
+
+    // keys after the removed slot are still reachable, and the slot can be filled again
+    Assert.assertEquals(5, hashtable.get("E").intValue());
+    hashtable.put("B", 20);
+    Assert.assertEquals(20, hashtable.get("B").intValue());
+    Assert.assertEquals(10, hashtable.getCapacity());
+
+    try {
+      hashtable.put("A", 10);
+      Assert.fail("Expected IllegalArgumentException to be thrown");
+    } catch (IllegalArgumentException e) {
+      // Exception was thrown as expected
+    }
+
+    try {
+      hashtable.get("Z");
+      Assert.fail("Expected NoSuchElementException to be thrown");
+    } catch (NoSuchElementException e) {
+      // Exception was thrown as expected
+    }
+  }
+
+  @Test
+  /**
+   * Tests RobinHoodHashtableMap under sustained insert/remove churn. It compares the probe lengths
+   * of hits and misses against ArrayHashtableMap, whose tombstones keep accumulating, and verifies
+   * that backward-shift deletion keeps Robin Hood probes short and tightly distributed.
+   */
+  public void testRobinHoodProbeLengthsUnderChurn() {
+
+    ArrayHashtableMap<Integer, Integer> linear = new ArrayHashtableMap<>(4096);
+    RobinHoodHashtableMap<Integer, Integer> robinHood = new RobinHoodHashtableMap<>(4096);
+    Random random = new Random(400);
+    List<Integer> live = new ArrayList<>();
+    Set<Integer> used = new HashSet<>();
+
+    // fill both tables to a load factor of about 0.5, below the resize threshold
+    while (live.size() < 2000) {
+      int key = random.nextInt();
+      if (used.add(key)) {
+        live.add(key);
+        linear.put(key, key);
+        robinHood.put(key, key);
+      }
+    }
+
+    // churn: replace a random live key with a fresh one many times over
+    for (int i = 0; i < 20000; i++) {
+      int slot = random.nextInt(live.size());
+      int oldKey = live.get(slot);
+      Assert.assertEquals(oldKey, linear.remove(oldKey).intValue());
+      Assert.assertEquals(oldKey, robinHood.remove(oldKey).intValue());
+
+      int newKey = random.nextInt();
+      while (!used.add(newKey)) {
+        newKey = random.nextInt();
+      }
+      live.set(slot, newKey);
+      linear.put(newKey, newKey);
+      robinHood.put(newKey, newKey);
+    }
+    Assert.assertEquals(2000, robinHood.getSize());
+    Assert.assertEquals(4096, robinHood.getCapacity());
+
+    long linearHits = 0, robinHoodHits = 0;
+    long linearSquares = 0, robinHoodSquares = 0;
+    int linearMax = 0, robinHoodMax = 0;
+    for (int key : live) {
+      Assert.assertEquals(key, robinHood.get(key).intValue());
+      int linearProbe = linear.probeLength(key);
+      int robinHoodProbe = robinHood.probeLength(key);
+      linearHits += linearProbe;
+      robinHoodHits += robinHoodProbe;
+      linearSquares += linearProbe * linearProbe;
+      robinHoodSquares += robinHoodProbe * robinHoodProbe;
+      linearMax = Math.max(linearMax, linearProbe);
+      robinHoodMax = Math.max(robinHoodMax, robinHoodProbe);
+    }
+
+    long linearMisses = 0, robinHoodMisses = 0;
+    for (int i = 0; i < 2000; i++) {
+      int key = random.nextInt();
+      if (!used.contains(key)) {
+        Assert.assertFalse(robinHood.containsKey(key));
+        linearMisses += linear.probeLength(key);
+        robinHoodMisses += robinHood.probeLength(key);
+      }
+    }
+
+    double linearVariance =
+        (double) linearSquares / live.size() - Math.pow((double) linearHits / live.size(), 2);
+    double robinHoodVariance = (double) robinHoodSquares / live.size()
+        - Math.pow((double) robinHoodHits / live.size(), 2);
+
+    // tombstones make every miss walk most of the table, Robin Hood misses stop almost at once
+    Assert.assertTrue(robinHoodMisses * 10 < linearMisses);
+    Assert.assertTrue(robinHoodHits <= linearHits);
+    Assert.assertTrue(robinHoodMax <= linearMax);
+    Assert.assertTrue(robinHoodVariance < linearVariance);
+  }
+
+  @Test
+  /**
+   * Tests the incremental resize of HashtableMap. It verifies that a resize keeps the old table
+   * around while entries migrate, that lookups and removals see entries in either table, and that
+   * the migration finishes after a bounded number of further operations.
+   */
+  public void testIncrementalResize() {
+
+    HashtableMap<Integer, Integer> hashtable = new HashtableMap<>(64);
+
+    // 45 / 64 reaches 0.7, so the last put starts a resize without migrating everything
+    for (int i = 0; i < 45; i++) {
+      hashtable.put(i, i * 10);
+    }
+    Assert.assertEquals(128, hashtable.getCapacity());
+    Assert.assertEquals(45, hashtable.getSize());
+    Assert.assertTrue(hashtable.isResizing());
+
+    // entries are reachable no matter which table currently holds them
+    Assert.assertEquals(440, hashtable.remove(44).intValue());
+    Assert.assertFalse(hashtable.containsKey(44));
+    for (int i = 0; i < 44; i++) {
+      Assert.assertEquals(i * 10, hashtable.get(i).intValue());
+    }
+
+    // each operation migrates a few slots, so the old table is drained by now
+    Assert.assertFalse(hashtable.isResizing());
+    Assert.assertEquals(44, hashtable.getSize());
+    for (int i = 0; i < 44; i++) {
+      Assert.assertEquals(i * 10, hashtable.get(i).intValue());
+    }
+
+    try {
+      hashtable.put(3, 0);
+      Assert.fail("Expected IllegalArgumentException to be thrown");
+    } catch (IllegalArgumentException e) {
+      // Exception was thrown as expected
+    }
+  }
+
+  @Test
+  /**
+   * Tests the single-probe update methods of HashtableMap: putIfAbsent, replace, compute and merge.
+   * It verifies their return values, that a null result removes the mapping, and that they still
+   * find keys which have not been migrated out of the old table yet.
+   */
+  public void testUpsertMethods() {
+
+    HashtableMap<String, Integer> hashtable = new HashtableMap<>();
+
+    Assert.assertNull(hashtable.putIfAbsent("A", 1));
+    Assert.assertEquals(1, hashtable.putIfAbsent("A", 2).intValue());
+    Assert.assertEquals(1, hashtable.get("A").intValue());
+
+    Assert.assertEquals(1, hashtable.replace("A", 3).intValue());
+    Assert.assertEquals(3, hashtable.get("A").intValue());
+    try {
+      hashtable.replace("B", 1);
+      Assert.fail("Expected NoSuchElementException to be thrown");
+    } catch (NoSuchElementException e) {
+      // Exception was thrown as expected
+    }
+
+    // merge used as a counter
+    for (int i = 0; i < 5; i++) {
+      hashtable.merge("count", 1, Integer::sum);
+    }
+    Assert.assertEquals(5, hashtable.get("count").intValue());
+
+    Assert.assertEquals(4, hashtable.compute("A", (k, v) -> v == null ? 0 : v + 1).intValue());
+    Assert.assertEquals(0, hashtable.compute("C", (k, v) -> v == null ? 0 : v + 1).intValue());
+    Assert.assertEquals(3, hashtable.getSize());
+
+    // a null result removes the mapping
+    Assert.assertNull(hashtable.compute("C", (k, v) -> null));
+    Assert.assertFalse(hashtable.containsKey("C"));
+    Assert.assertNull(hashtable.merge("A", 1, (a, b) -> null));
+    Assert.assertFalse(hashtable.containsKey("A"));
+    Assert.assertEquals(1, hashtable.getSize());
+
+    // the last put starts a resize, the updates must still see keys left in the old table
+    HashtableMap<Integer, Integer> counters = new HashtableMap<>(64);
+    for (int i = 0; i < 45; i++) {
+      counters.put(i, 0);
+    }
+    Assert.assertTrue(counters.isResizing());
+    Assert.assertEquals(1, counters.merge(40, 1, Integer::sum).intValue());
+    Assert.assertEquals(0, counters.replace(41, 7).intValue());
+    Assert.assertEquals(0, counters.putIfAbsent(42, 9).intValue());
+    Assert.assertEquals(45, counters.getSize());
+    Assert.assertEquals(1, counters.get(40).intValue());
+    Assert.assertEquals(7, counters.get(41).intValue());
+    Assert.assertEquals(0, counters.get(42).intValue());
+  }
+
+  @Test
+  /**
+   * Tests the primitive-keyed IntHashtableMap, LongHashtableMap and LongLongHashtableMap. It
+   * verifies that absent keys are reported through null, defaults or the no-entry value instead of
+   * exceptions, that the key 0 is stored like any other key, and that mappings survive resizes and
+   * backward-shift removals.
+   */
+  public void testPrimitiveHashtableMaps() {
+
+    IntHashtableMap<String> ints = new IntHashtableMap<>();
+    Assert.assertNull(ints.put(0, "zero"));
+    Assert.assertNull(ints.put(7, "seven"));
+    Assert.assertEquals("seven", ints.put(7, "SEVEN"));
+    Assert.assertEquals("zero", ints.get(0));
+    Assert.assertEquals("SEVEN", ints.get(7));
+    Assert.assertNull(ints.get(8));
+    Assert.assertEquals("none", ints.getOrDefault(8, "none"));
+    Assert.assertEquals(2, ints.getSize());
+    Assert.assertEquals("zero", ints.remove(0));
+    Assert.assertNull(ints.remove(0));
+    Assert.assertFalse(ints.containsKey(0));
+    Assert.assertEquals(1, ints.getSize());
+
+    LongHashtableMap<Integer> longs = new LongHashtableMap<>();
+    for (int i = 0; i < 1000; i++) {
+      longs.put(i * 1_000_000_007L, i);
+    }
+    Assert.assertEquals(1000, longs.getSize());
+    Assert.assertEquals(2048, longs.getCapacity());
+    for (int i = 0; i < 1000; i += 2) {
+      Assert.assertEquals(i, longs.remove(i * 1_000_000_007L).intValue());
+    }
+    for (int i = 0; i < 1000; i++) {
+      Assert.assertEquals(i % 2 == 1, longs.containsKey(i * 1_000_000_007L));
+    }
+    Assert.assertEquals(500, longs.getSize());
+
+    LongLongHashtableMap counts = new LongLongHashtableMap(16, -1L);
+    Assert.assertEquals(-1L, counts.get(42L));
+    Assert.assertEquals(-1L, counts.put(42L, 5L));
+    Assert.assertEquals(5L, counts.put(42L, 6L));
+    Assert.assertEquals(10L, counts.addTo(0L, 10L));
+    for (long id = 1; id <= 100; id++) {
+      counts.addTo(id, id);
+      counts.addTo(id, id);
+    }
+    Assert.assertEquals(101, counts.getSize());
+    Assert.assertEquals(90L, counts.get(42L));
+    Assert.assertEquals(200L, counts.get(100L));
+    Assert.assertEquals(10L, counts.remove(0L));
+    Assert.assertEquals(-1L, counts.remove(0L));
+    Assert.assertEquals(-1L, counts.get(101L));
+    Assert.assertEquals(0L, counts.getOrDefault(101L, 0L));
+    counts.clear();
+    Assert.assertEquals(0, counts.getSize());
+    Assert.assertEquals(-1L, counts.get(42L));
+  }
+
+  @Test
+  /**
+   * Stress test for ConcurrentHashtableMap. Several threads insert, update and remove their own
+   * keys while also merging into shared counters and reading each other's keys. It verifies that no
+   * update is lost and that the final contents match what every thread left behind.
+   */
+  public void testConcurrentHashtableMapStress() throws InterruptedException {
+
+    ConcurrentHashtableMap<Integer, Integer> hashtable = new ConcurrentHashtableMap<>(16, 4);
+    int threadCount = 8;
+    int keysPerThread = 5000;
+    List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+    Thread[] threads = new Thread[threadCount];
+
+    for (int t = 0; t < threadCount; t++) {
+      int base = (t + 1) * 1_000_000;
+      threads[t] = new Thread(() -> {
+        try {
+          Random random = new Random(base);
+          for (int i = 0; i < keysPerThread; i++) {
+            hashtable.put(base + i, i);
+            hashtable.merge(i % 10, 1, Integer::sum);
+            // peek at a key another thread may be writing or already removing
+            int other = (random.nextInt(threadCount) + 1) * 1_000_000 + random.nextInt(i + 1);
+            try {
+              int value = hashtable.get(other);
+              Assert.assertTrue(value == other % 1_000_000 || value == -(other % 1_000_000));
+            } catch (NoSuchElementException e) {
+              // not inserted yet or already removed
+            }
+          }
+          for (int i = 0; i < keysPerThread; i += 2) {
+            Assert.assertEquals(i, hashtable.remove(base + i).intValue());
+          }
+          for (int i = 1; i < keysPerThread; i += 2) {
+            Assert.assertEquals(i, hashtable.replace(base + i, -i).intValue());
+          }
+        } catch (Throwable e) {
+          failures.add(e);
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    Assert.assertTrue(failures.toString(), failures.isEmpty());
+    Assert.assertEquals(10 + threadCount * keysPerThread / 2, hashtable.getSize());
+    for (int i = 0; i < 10; i++) {
+      Assert.assertEquals(threadCount * keysPerThread / 10, hashtable.get(i).intValue());
+    }
+    for (int t = 0; t < threadCount; t++) {
+      int base = (t + 1) * 1_000_000;
+      for (int i = 0; i < keysPerThread; i++) {
+        Assert.assertEquals(i % 2 == 1, hashtable.containsKey(base + i));
+        if (i % 2 == 1) {
+          Assert.assertEquals(-i, hashtable.get(base + i).intValue());
+        }
+      }
+    }
+  }
+
+  @Test
+  /**
+   * Tests the off-heap OffHeapLongLongHashtableMap and OffHeapBytesLongHashtableMap. It verifies
+   * the primitive and MapADT methods across resizes and removals, that byte[] keys are compared by
+   * content, and that a closed map rejects every further operation.
+   */
+  public void testOffHeapHashtableMaps() {
+
+    OffHeapLongLongHashtableMap longs = new OffHeapLongLongHashtableMap(16, -1L);
+    for (long id = 0; id < 10000; id++) {
+      Assert.assertEquals(-1L, longs.put(id * 31, id));
+    }
+    Assert.assertEquals(10000, longs.getSize());
+    Assert.assertEquals(16384, longs.getCapacity());
+    Assert.assertEquals(16384L * 16, longs.getOffHeapBytes());
+    for (long id = 0; id < 10000; id += 2) {
+      Assert.assertEquals(id, longs.remove(id * 31));
+    }
+    for (long id = 0; id < 10000; id++) {
+      Assert.assertEquals(id % 2 == 1 ? id : -1L, longs.get(id * 31));
+    }
+    Assert.assertEquals(8L, longs.addTo(0L, 8L));
+    Assert.assertEquals(8L, longs.get(Long.valueOf(0L)).longValue());
+    try {
+      longs.put(Long.valueOf(31L), Long.valueOf(0L));
+      Assert.fail("Expected IllegalArgumentException to be thrown");
+    } catch (IllegalArgumentException e) {
+      // Exception was thrown as expected
+    }
+    try {
+      longs.get(Long.valueOf(62L));
+      Assert.fail("Expected NoSuchElementException to be thrown");
+    } catch (NoSuchElementException e) {
+      // Exception was thrown as expected
+    }
+
+    // close returns the memory to the system at once, without waiting for a collection
+    long directBytes = directMemoryUsed();
+    longs.close();
+    longs.close();
+    Assert.assertEquals(0L, longs.getOffHeapBytes());
+    if (OffHeapSlots.freesOnRelease()) {
+      Assert.assertEquals(directBytes - 16384L * 16, directMemoryUsed());
+    }
+    try {
+      longs.get(31L);
+      Assert.fail("Expected IllegalStateException to be thrown");
+    } catch (IllegalStateException e) {
+      // Exception was thrown as expected
+    }
+    try {
+      longs.getSize();
+      Assert.fail("Expected IllegalStateException to be thrown");
+    } catch (IllegalStateException e) {
+      // Exception was thrown as expected
+    }
+
+    try (OffHeapBytesLongHashtableMap digests = new OffHeapBytesLongHashtableMap(16, 8)) {
+      byte[] key = new byte[16];
+      for (int i = 0; i < 1000; i++) {
+        key[0] = (byte) i;
+        key[15] = (byte) (i >> 8);
+        digests.put(key, (long) i);
+      }
+      Assert.assertEquals(1000, digests.getSize());
+
+      // a fresh array with the same bytes finds the mapping
+      byte[] copy = new byte[16];
+      copy[0] = (byte) 500;
+      copy[15] = (byte) (500 >> 8);
+      Assert.assertEquals(500L, digests.get(copy).longValue());
+      Assert.assertEquals(500L, digests.remove(copy).longValue());
+      Assert.assertFalse(digests.containsKey(copy));
+      Assert.assertFalse(digests.containsKey(new byte[15]));
+      Assert.assertEquals(-1L, digests.getOrDefault(copy, -1L));
+      Assert.assertEquals(3L, digests.addTo(copy, 3L));
+      Assert.assertEquals(1000, digests.getSize());
+      for (int i = 0; i < 1000; i++) {
+        key[0] = (byte) i;
+        key[15] = (byte) (i >> 8);
+        Assert.assertEquals(i == 500 ? 3L : i, digests.get(key).longValue());
+      }
+      try {
+        digests.put(new byte[4], 1L);
+        Assert.fail("Expected IllegalArgumentException to be thrown");
+      } catch (IllegalArgumentException e) {
+        // Exception was thrown as expected
+      }
+      // 12 bytes of value and hash plus 16 key bytes, padded to whole longs
+      Assert.assertEquals(2048L * 32, digests.getOffHeapBytes());
+    }
+  }
+
+  /**
+   * @return the bytes currently allocated by direct ByteBuffers in this JVM
+   */
+  private static long directMemoryUsed() {
+    for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+      if (pool.getName().equals("direct")) {
+        return pool.getMemoryUsed();
+      }
+    }
+    return 0L;
+  }
+
+  @Test
+  /**
+   * Tests HashtableMapSnapshot. It verifies that a snapshot written from a HashtableMap, including
+   * one that is still resizing, serves the same mappings after load, that it rejects updates, and
+   * that loading a file that is not a complete snapshot fails.
+   */
+  public void testHashtableMapSnapshot() throws IOException {
+
+    HashtableMap<String, Integer> hashtable = new HashtableMap<>(64);
+    for (int i = 0; i < 45; i++) {
+      hashtable.put("key" + i, i);
+    }
+    hashtable.remove("key7");
+    Assert.assertTrue(hashtable.isResizing());
+
+    Path file = Files.createTempFile("hashtable", ".snapshot");
+    try {
+      HashtableMapSnapshot.write(hashtable, file, HashtableMapSnapshot.STRING,
+          HashtableMapSnapshot.INTEGER);
+
+      try (HashtableMapSnapshot<String, Integer> snapshot = HashtableMapSnapshot.load(file,
+          HashtableMapSnapshot.STRING, HashtableMapSnapshot.INTEGER)) {
+        Assert.assertEquals(44, snapshot.getSize());
+        Assert.assertEquals(64, snapshot.getCapacity());
+        for (int i = 0; i < 45; i++) {
+          Assert.assertEquals(i != 7, snapshot.containsKey("key" + i));
+          if (i != 7) {
+            Assert.assertEquals(i, snapshot.get("key" + i).intValue());
+          }
+        }
+        try {
+          snapshot.get("key7");
+          Assert.fail("Expected NoSuchElementException to be thrown");
+        } catch (NoSuchElementException e) {
+          // Exception was thrown as expected
+        }
+        try {
+          snapshot.put("key7", 7);
+          Assert.fail("Expected UnsupportedOperationException to be thrown");
+        } catch (UnsupportedOperationException e) {
+          // Exception was thrown as expected
+        }
+      }
+
+      // cut the file short, the loader must notice instead of serving garbage
+      byte[] bytes = Files.readAllBytes(file);
+      Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+      try {
+        HashtableMapSnapshot.load(file, HashtableMapSnapshot.STRING, HashtableMapSnapshot.INTEGER);
+        Assert.fail("Expected IOException to be thrown");
+      } catch (IOException e) {
+        // Exception was thrown as expected
+      }
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  /**
+   * Tests BoundedCacheMap with both eviction policies. It verifies that an LRU cache evicts the
+   * least recently used entry and respects a weigher, that the hit, miss and eviction counters add
+   * up, and that a Window TinyLFU cache keeps its frequently used entries through a scan of
+   * one-time keys that flushes an LRU cache of the same size.
+   */
+  public void testBoundedCacheMap() {
+
+    BoundedCacheMap<Integer, String> lru = BoundedCacheMap.lru(3);
+    lru.put(1, "a");
+    lru.put(2, "b");
+    lru.put(3, "c");
+    Assert.assertEquals("a", lru.get(1));
+    lru.put(4, "d");
+    Assert.assertFalse(lru.containsKey(2));
+    Assert.assertEquals(3, lru.getSize());
+    Assert.assertNull(lru.getIfPresent(2));
+    Assert.assertEquals(1, lru.getHitCount());
+    Assert.assertEquals(1, lru.getMissCount());
+    Assert.assertEquals(1, lru.getEvictionCount());
+    Assert.assertEquals("c", lru.remove(3));
+    lru.put(5, "e");
+    Assert.assertEquals(1, lru.getEvictionCount());
+
+    // weights: a value of length 3 pushes out both older entries
+    BoundedCacheMap<Integer, String> weighted =
+        new BoundedCacheMap<>(4, (k, v) -> v.length(), new LruEvictionPolicy<>());
+    weighted.put(1, "a");
+    weighted.put(2, "bb");
+    Assert.assertEquals(3, weighted.getWeight());
+    weighted.put(3, "ccc");
+    Assert.assertEquals(1, weighted.getSize());
+    Assert.assertEquals(3, weighted.getWeight());
+    Assert.assertEquals("ccc", weighted.replace(3, "c"));
+    Assert.assertEquals(1, weighted.getWeight());
+    Assert.assertEquals("xx", weighted.merge(4, "xx", String::concat));
+    Assert.assertEquals(3, weighted.getWeight());
+
+    BoundedCacheMap<Integer, Integer> tinyLfu = BoundedCacheMap.tinyLfu(100);
+    BoundedCacheMap<Integer, Integer> recency = BoundedCacheMap.lru(100);
+    for (int round = 0; round < 5; round++) {
+      for (int key = 0; key < 50; key++) {
+        if (tinyLfu.getIfPresent(key) == null) {
+          tinyLfu.put(key, key);
+        }
+        if (recency.getIfPresent(key) == null) {
+          recency.put(key, key);
+        }
+      }
+    }
+    for (int key = 1000; key < 2000; key++) {
+      tinyLfu.putIfAbsent(key, key);
+      recency.putIfAbsent(key, key);
+    }
+    int tinyLfuKept = 0, recencyKept = 0;
+    for (int key = 0; key < 50; key++) {
+      tinyLfuKept += tinyLfu.containsKey(key) ? 1 : 0;
+      recencyKept += recency.containsKey(key) ? 1 : 0;
+    }
+    Assert.assertEquals(100, tinyLfu.getSize());
+    Assert.assertEquals(0, recencyKept);
+    Assert.assertTrue(tinyLfuKept >= 45);
+    Assert.assertEquals(950, tinyLfu.getEvictionCount());
+  }
+
+  @Test
+  /**
+   * Tests the presizing builder and the batch putAll, getAll and removeAll operations. It verifies
+   * that a presized map never resizes while it is filled, that a batch grows the table at most once,
+   * hashes every key once and returns values in key order, and that the MapADT defaults behave the
+   * same.
+   */
+  public void testBuilderAndBatchOperations() {
+
+    HashtableMap<Integer, Integer> presized =
+        HashtableMap.<Integer, Integer>builder().expectedSize(1000).build();
+    int capacity = presized.getCapacity();
+    for (int i = 0; i < 1000; i++) {
+      presized.put(i, i);
+    }
+    Assert.assertEquals(capacity, presized.getCapacity());
+    Assert.assertFalse(presized.isResizing());
+
+    List<Integer> keys = new ArrayList<>();
+    List<Integer> values = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      keys.add(i * 7919);
+      values.add(i);
+    }
+    HashtableMap<Integer, Integer> hashtable = new HashtableMap<>();
+    hashtable.putAll(keys, values);
+    Assert.assertEquals(5000, hashtable.getSize());
+    Assert.assertFalse(hashtable.isResizing());
+    Assert.assertTrue(hashtable.getCapacity() * 0.7 > 5000);
+    Assert.assertEquals(values, hashtable.getAll(keys));
+
+    List<Integer> removed = hashtable.removeAll(keys.subList(0, 100));
+    Assert.assertEquals(values.subList(0, 100), removed);
+    Assert.assertEquals(4900, hashtable.getSize());
+    try {
+      hashtable.getAll(Arrays.asList(keys.get(200), keys.get(0)));
+      Assert.fail("Expected NoSuchElementException to be thrown");
+    } catch (NoSuchElementException e) {
+      // Exception was thrown as expected
+    }
+    try {
+      hashtable.putAll(Arrays.asList(1, 2), Arrays.asList(1));
+      Assert.fail("Expected IllegalArgumentException to be thrown");
+    } catch (IllegalArgumentException e) {
+      // Exception was thrown as expected
+    }
+
+    int[] hashed = new int[1];
+    HashtableMap<Integer, Integer> counting = new HashtableMap<>(16, new HashStrategy<Integer>() {
+      public int hash(Integer key) {
+        hashed[0]++;
+        return HashStrategy.mix(key);
+      }
+
+      public boolean equals(Integer a, Integer b) {
+        return a.equals(b);
+      }
+    });
+    counting.putAll(keys, values);
+    Assert.assertEquals(5000, hashed[0]);
+    Assert.assertEquals(values, counting.getAll(keys));
+    Assert.assertEquals(10000, hashed[0]);
+    Assert.assertEquals(values.subList(0, 100), counting.removeAll(keys.subList(0, 100)));
+    Assert.assertEquals(10100, hashed[0]);
+
+    MapADT<Integer, Integer> other = new ArrayHashtableMap<>();
+    other.putAll(keys, values);
+    Assert.assertEquals(values, other.getAll(keys));
+    Assert.assertEquals(values.subList(4000, 5000), other.removeAll(keys.subList(4000, 5000)));
+    Assert.assertEquals(4000, other.getSize());
+  }
+
+  @Test
+  /**
+   * Tests HashtableMap with custom HashStrategy objects. It verifies that byte[] keys can be looked
+   * up by content, that the identity strategy tells equal but distinct keys apart, and that keys
+   * whose hashCodes share their low bits or equal Integer.MIN_VALUE are stored correctly.
+   */
+  public void testHashStrategy() {
+
+    HashtableMap<byte[], String> bytes = HashtableMap.<byte[], String>builder()
+        .hashStrategy(HashStrategy.byteArrays()).build();
+    bytes.put(new byte[] {1, 2, 3}, "a");
+    Assert.assertTrue(bytes.containsKey(new byte[] {1, 2, 3}));
+    Assert.assertEquals("a", bytes.get(new byte[] {1, 2, 3}));
+    Assert.assertFalse(bytes.containsKey(new byte[] {1, 2}));
+
+    HashtableMap<String, Integer> identity = new HashtableMap<>(8, HashStrategy.identity());
+    String interned = "key";
+    String copy = new String("key");
+    identity.put(interned, 1);
+    identity.put(copy, 2);
+    Assert.assertEquals(1, identity.get(interned).intValue());
+    Assert.assertEquals(2, identity.get(copy).intValue());
+    Assert.assertEquals(2, identity.getSize());
+
+    // multiples of 1024 all share their low ten bits, only mixing keeps them apart
+    HashtableMap<Integer, Integer> ids = new HashtableMap<>();
+    ids.put(Integer.MIN_VALUE, -1);
+    for (int i = 0; i < 10000; i++) {
+      ids.put(i * 1024, i);
+    }
+    Assert.assertEquals(-1, ids.get(Integer.MIN_VALUE).intValue());
+    for (int i = 0; i < 10000; i++) {
+      Assert.assertEquals(i, ids.remove(i * 1024).intValue());
+    }
+    Assert.assertEquals(1, ids.getSize());
+    Assert.assertEquals(1, Integer.bitCount(ids.getCapacity()));
+  }
+
+  @Test
+  /**
+   * Tests the entrySet, keySet and values views and the primitive streams. It verifies that
+   * sequential and parallel traversal skip removed slots and visit every mapping exactly once,
+   * that the spliterators split, and that HashtableMap hands out its own entries.
+   */
+  public void testViewsAndStreams() {
+
+    HashtableMap<Integer, Integer> hashtable = new HashtableMap<>();
+    for (int i = 0; i < 10000; i++) {
+      hashtable.put(i, i * 2);
+    }
+    for (int i = 0; i < 10000; i += 2) {
+      hashtable.remove(i);
+    }
+
+    long expectedKeys = 0;
+    for (int i = 1; i < 10000; i += 2) {
+      expectedKeys += i;
+    }
+    Assert.assertEquals(5000, hashtable.keySet().size());
+    Assert.assertEquals(expectedKeys,
+        hashtable.keySet().parallelStream().mapToLong(Integer::longValue).sum());
+    Assert.assertEquals(expectedKeys * 2,
+        hashtable.values().stream().mapToLong(Integer::longValue).sum());
+    Assert.assertEquals(5000, hashtable.entrySet().parallelStream().map(e -> e.getKey())
+        .distinct().count());
+    Assert.assertTrue(hashtable.keySet().contains(3));
+    Assert.assertFalse(hashtable.keySet().contains(4));
+    Assert.assertNotNull(hashtable.entrySpliterator().trySplit());
+
+    // entries are the map's own, so setValue writes through
+    for (Map.Entry<Integer, Integer> entry : hashtable.entrySet()) {
+      entry.setValue(entry.getValue() + 1);
+    }
+    Assert.assertEquals(7, hashtable.get(3).intValue());
+
+    // parallel-array tables may hold null values, which must still be visited
+    ArrayHashtableMap<String, String> arrays = new ArrayHashtableMap<>();
+    arrays.put("a", null);
+    arrays.put("b", "B");
+    arrays.remove("b");
+    arrays.put("c", "C");
+    Assert.assertEquals(Arrays.asList("a", "c"),
+        arrays.keySet().stream().sorted().collect(Collectors.toList()));
+    Assert.assertEquals(2, arrays.values().size());
+    Assert.assertTrue(arrays.values().contains(null));
+
+    ConcurrentHashtableMap<Integer, Integer> concurrent = new ConcurrentHashtableMap<>(64, 8);
+    for (int i = 0; i < 1000; i++) {
+      concurrent.put(i, 1);
+    }
+    Assert.assertEquals(1000, concurrent.values().parallelStream().mapToInt(v -> v).sum());
+
+    LongLongHashtableMap counts = new LongLongHashtableMap();
+    for (long id = 0; id < 1000; id++) {
+      counts.put(id, 1);
+    }
+    Assert.assertEquals(999L * 1000 / 2, counts.keyStream().parallel().sum());
+    Assert.assertEquals(1000L, counts.valueStream().sum());
+
+    IntHashtableMap<String> names = new IntHashtableMap<>();
+    names.put(0, "zero");
+    names.put(5, "five");
+    Assert.assertEquals(5, names.keyStream().sum());
+    Assert.assertEquals(Arrays.asList("five", "zero"),
+        names.valueStream().sorted().collect(Collectors.toList()));
+  }
+
+  @Test
+  /**
+   * Tests the statistics of HashtableMap. It verifies that hits and misses fill their probe-length
+   * histograms, that removals show up in the tombstone ratio, that resizes are counted, and that
+   * the statistics can be read over JMX and stop being recorded once disabled.
+   */
+  public void testHashtableMapStats() throws Exception {
+
+    HashtableMap<Integer, Integer> hashtable = new HashtableMap<>();
+    Assert.assertNull(hashtable.getStats());
+    HashtableMapStats stats = hashtable.enableStats();
+    Assert.assertSame(stats, hashtable.enableStats());
+
+    for (int i = 0; i < 100; i++) {
+      hashtable.put(i, i);
+    }
+    Assert.assertEquals(5, stats.getResizeCount());
+    Assert.assertEquals(100, stats.getMissCount());
+
+    for (int i = 0; i < 100; i++) {
+      hashtable.get(i);
+    }
+    hashtable.containsKey(-1);
+    Assert.assertEquals(100, stats.getHitCount());
+    Assert.assertEquals(101, stats.getMissCount());
+    Assert.assertEquals(100, Arrays.stream(stats.getHitProbeHistogram()).sum());
+    Assert.assertTrue(stats.getMeanHitProbeLength() >= 1.0);
+    Assert.assertEquals(100.0 / 256, stats.getLoadFactor(), 1e-9);
+
+    for (int i = 0; i < 50; i++) {
+      hashtable.remove(i);
+    }
+    Assert.assertEquals(50.0 / 256, stats.getTombstoneRatio(), 1e-9);
+    Assert.assertEquals(50.0 / 256, stats.getLoadFactor(), 1e-9);
+    // reusing a removed slot leaves one tombstone fewer
+    hashtable.put(0, 0);
+    Assert.assertEquals(49.0 / 256, stats.getTombstoneRatio(), 1e-9);
+
+    stats.registerMBean("testHashtableMapStats");
+    Assert.assertEquals(stats.getHitCount(), ManagementFactory.getPlatformMBeanServer()
+        .getAttribute(stats.getObjectName(), "HitCount"));
+    try {
+      stats.registerMBean("testHashtableMapStats");
+      Assert.fail("Expected IllegalStateException to be thrown");
+    } catch (IllegalStateException e) {
+      // Exception was thrown as expected
+    }
+
+    stats.reset();
+    Assert.assertEquals(0, stats.getHitCount());
+    hashtable.disableStats();
+    Assert.assertNull(hashtable.getStats());
+    Assert.assertFalse(ManagementFactory.getPlatformMBeanServer().queryNames(null, null)
+        .stream().anyMatch(name -> name.getDomain().equals("HashtableMap")));
+    hashtable.get(60);
+    Assert.assertEquals(0, stats.getHitCount());
+  }
+
+  @Test
+  /**
+   * Tests that HashtableMap compacts itself. It verifies that churning through insertions and
+   * removals rehashes in place instead of growing, that the table shrinks once most of its entries
+   * are removed but not below its initial capacity, and that trimToSize drops removed entries and
+   * spare slots while every remaining key stays reachable.
+   */
+  public void testCompaction() {
+
+    HashtableMap<Integer, Integer> churn = new HashtableMap<>();
+    HashtableMapStats stats = churn.enableStats();
+    for (int i = -3; i < 0; i++) {
+      churn.put(i, i);
+    }
+    for (int i = 0; i < 100000; i++) {
+      churn.put(i, i);
+      churn.remove(i);
+    }
+    Assert.assertEquals(3, churn.getSize());
+    Assert.assertEquals(16, churn.getCapacity());
+    Assert.assertTrue(stats.getTombstoneRatio() < 0.7);
+    for (int i = -3; i < 0; i++) {
+      Assert.assertEquals(i, churn.get(i).intValue());
+    }
+
+    HashtableMap<Integer, Integer> spike = new HashtableMap<>(64);
+    for (int i = 0; i < 100000; i++) {
+      spike.put(i, i);
+    }
+    for (int i = 10; i < 100000; i++) {
+      spike.remove(i);
+    }
+    Assert.assertEquals(64, spike.getCapacity());
+    for (int i = 0; i < 10; i++) {
+      Assert.assertEquals(i, spike.get(i).intValue());
+    }
+    Assert.assertFalse(spike.containsKey(10));
+
+    HashtableMap<Integer, Integer> presized = HashtableMap.<Integer, Integer>builder()
+        .expectedSize(10000).build();
+    stats = presized.enableStats();
+    for (int i = 0; i < 20; i++) {
+      presized.put(i, i);
+    }
+    for (int i = 10; i < 20; i++) {
+      presized.remove(i);
+    }
+    // automatic shrinking keeps the presized capacity
+    Assert.assertTrue(presized.getCapacity() >= 10000);
+    presized.trimToSize();
+    Assert.assertEquals(16, presized.getCapacity());
+    Assert.assertEquals(0.0, stats.getTombstoneRatio(), 0.0);
+    for (int i = 0; i < 10; i++) {
+      Assert.assertEquals(i, presized.get(i).intValue());
+    }
+    presized.put(10, 10);
+    Assert.assertEquals(11, presized.getSize());
+  }
+
+  @Test
+  /**
+   * Tests CuckooHashtableMap. It verifies the MapADT behaviour, that every lookup inspects at most
+   * two buckets plus the stash even with keys whose hashCodes collide in their low bits, that the
+   * table fills well past the probing tables' threshold, that the stash stays within its few
+   * slots, and that removals keep stashed keys reachable.
+   */
+  public void testCuckooHashtableMap() {
+
+    CuckooHashtableMap<Integer, Integer> cuckoo = new CuckooHashtableMap<>();
+    try {
+      cuckoo.put(null, 1);
+      Assert.fail("Expected IllegalArgumentException to be thrown");
+    } catch (IllegalArgumentException e) {
+      // Exception was thrown as expected
+    }
+    for (int i = 0; i < 100000; i++) {
+      cuckoo.put(i * 1024, i);
+    }
+    try {
+      cuckoo.put(0, 1);
+      Assert.fail("Expected IllegalArgumentException to be thrown");
+    } catch (IllegalArgumentException e) {
+      // Exception was thrown as expected
+    }
+    Assert.assertEquals(100000, cuckoo.getSize());
+    Assert.assertTrue(cuckoo.getSize() > cuckoo.getCapacity() * 0.4);
+    for (int i = 0; i < 100000; i++) {
+      Assert.assertEquals(i, cuckoo.get(i * 1024).intValue());
+      Assert.assertTrue(cuckoo.probeLength(i * 1024) <= 3);
+    }
+    Assert.assertFalse(cuckoo.containsKey(1));
+    Assert.assertEquals(100000, cuckoo.keySet().stream().distinct().count());
+
+    for (int i = 0; i < 100000; i += 2) {
+      Assert.assertEquals(i, cuckoo.remove(i * 1024).intValue());
+    }
+    Assert.assertEquals(50000, cuckoo.getSize());
+    for (int i = 1; i < 100000; i += 2) {
+      Assert.assertEquals(i, cuckoo.get(i * 1024).intValue());
+    }
+    try {
+      cuckoo.remove(0);
+      Assert.fail("Expected NoSuchElementException to be thrown");
+    } catch (NoSuchElementException e) {
+      // Exception was thrown as expected
+    }
+
+    // hashes that differ only in their high bits are spread by the table seed
+    CuckooHashtableMap<Integer, Integer> shifted =
+        new CuckooHashtableMap<>(64, new HashStrategy<Integer>() {
+          public int hash(Integer key) {
+            return key << 20;
+          }
+
+          public boolean equals(Integer a, Integer b) {
+            return a.equals(b);
+          }
+        });
+    for (int i = 0; i < 4000; i++) {
+      shifted.put(i, i);
+    }
+    Assert.assertTrue(shifted.getCapacity() <= 8192);
+    Assert.assertTrue(shifted.getStashSize() <= 4);
+    for (int i = 0; i < 4000; i++) {
+      Assert.assertEquals(i, shifted.get(i).intValue());
+      Assert.assertTrue(shifted.probeLength(i) <= 3);
+    }
+
+    // a constant hash puts every key in the same two buckets and the stash, and no seed or size
+    // makes room for more
+    CuckooHashtableMap<String, Integer> colliding =
+        new CuckooHashtableMap<>(64, new HashStrategy<String>() {
+          public int hash(String key) {
+            return 7;
+          }
+
+          public boolean equals(String a, String b) {
+            return a.equals(b);
+          }
+        });
+    for (int i = 0; i < 12; i++) {
+      colliding.put("key" + i, i);
+    }
+    Assert.assertEquals(4, colliding.getStashSize());
+    try {
+      colliding.put("key12", 12);
+      Assert.fail("Expected IllegalStateException to be thrown");
+    } catch (IllegalStateException e) {
+      // Exception was thrown as expected
+    }
+    Assert.assertEquals(12, colliding.getSize());
+    Assert.assertEquals(64, colliding.getCapacity());
+    Assert.assertFalse(colliding.containsKey("key12"));
+    Assert.assertEquals(12, colliding.entrySet().size());
+    Assert.assertEquals(12, colliding.entrySet().stream().count());
+    colliding.remove("key0");
+    Assert.assertEquals(3, colliding.getStashSize());
+    for (int i = 1; i < 12; i++) {
+      Assert.assertEquals(i, colliding.get("key" + i).intValue());
+    }
+    colliding.put("key12", 12);
+    Assert.assertEquals(12, colliding.get("key12").intValue());
+    colliding.clear();
+    Assert.assertEquals(0, colliding.getSize());
+    Assert.assertFalse(colliding.containsKey("key1"));
+  }
+
+  @Test
+  /**
+   * Tests freezing a HashtableMap into a FrozenHashtableMap. It verifies that every mapping is
+   * found, that absent keys are reported as absent, that the slot array is barely larger than the
+   * number of mappings, that keys with equal hashCodes are kept apart, and that the frozen map is
+   * read-only and unaffected by later changes to the original.
+   */
+  public void testFrozenHashtableMap() {
+
+    HashtableMap<Integer, Integer> hashtable = new HashtableMap<>();
+    for (int i = 0; i < 20000; i++) {
+      hashtable.put(i * 7, i);
+    }
+    for (int i = 0; i < 20000; i += 4) {
+      hashtable.remove(i * 7);
+    }
+    FrozenHashtableMap<Integer, Integer> frozen = hashtable.freeze();
+    Assert.assertEquals(15000, frozen.getSize());
+    Assert.assertTrue(frozen.getCapacity() <= 15000 / 0.99 + 1);
+    for (int i = 0; i < 20000; i++) {
+      Assert.assertEquals(i % 4 != 0, frozen.containsKey(i * 7));
+      if (i % 4 != 0) {
+        Assert.assertEquals(i, frozen.get(i * 7).intValue());
+      }
+    }
+    try {
+      frozen.get(0);
+      Assert.fail("Expected NoSuchElementException to be thrown");
+    } catch (NoSuchElementException e) {
+      // Exception was thrown as expected
+    }
+    try {
+      frozen.put(1, 1);
+      Assert.fail("Expected UnsupportedOperationException to be thrown");
+    } catch (UnsupportedOperationException e) {
+      // Exception was thrown as expected
+    }
+    hashtable.clear();
+    Assert.assertEquals(7, frozen.get(49).intValue());
+    Assert.assertEquals(15000, frozen.entrySet().stream().count());
+
+    // "Aa" and "BB" share a hashCode, so no seed can separate them
+    HashtableMap<String, Integer> strings = new HashtableMap<>();
+    strings.put("Aa", 1);
+    strings.put("BB", 2);
+    strings.put("C", 3);
+    FrozenHashtableMap<String, Integer> frozenStrings = strings.freeze();
+    Assert.assertEquals(1, frozenStrings.get("Aa").intValue());
+    Assert.assertEquals(2, frozenStrings.get("BB").intValue());
+    Assert.assertEquals(3, frozenStrings.get("C").intValue());
+    Assert.assertFalse(frozenStrings.containsKey("D"));
+
+    // fifty keys with one hash share a single slot among a thousand others
+    HashtableMap<Integer, Integer> colliding = new HashtableMap<>(16, new HashStrategy<Integer>() {
+      public int hash(Integer key) {
+        return key < 50 ? 7 : HashStrategy.mix(key);
+      }
+
+      public boolean equals(Integer a, Integer b) {
+        return a.equals(b);
+      }
+    });
+    for (int i = 0; i < 1050; i++) {
+      colliding.put(i, i);
+    }
+    FrozenHashtableMap<Integer, Integer> frozenColliding = colliding.freeze();
+    for (int i = 0; i < 1050; i++) {
+      Assert.assertEquals(i, frozenColliding.get(i).intValue());
+    }
+    Assert.assertFalse(frozenColliding.containsKey(-1));
+    Assert.assertFalse(frozenColliding.containsKey(1050));
+    Assert.assertEquals(1050, frozenColliding.getSize());
+    Assert.assertEquals(1050, frozenColliding.entrySet().stream().map(Map.Entry::getKey)
+        .distinct().count());
+    Assert.assertEquals(3, frozenStrings.keySet().stream().distinct().count());
+
+    FrozenHashtableMap<String, Integer> empty = new HashtableMap<String, Integer>().freeze();
+    Assert.assertEquals(0, empty.getSize());
+    Assert.assertFalse(empty.containsKey("a"));
+  }
+
+  @Test
+  /**
+   * Tests building a HashtableMap in parallel. It verifies that every pair of a large input is
+   * stored, that the map keeps working like one filled by put, and that null or repeated keys are
+   * rejected like put rejects them.
+   */
+  public void testParallelBuild() {
+
+    List<Map.Entry<Integer, Integer>> pairs = new ArrayList<>();
+    for (int i = 0; i < 200000; i++) {
+      pairs.add(new AbstractMap.SimpleImmutableEntry<>(i * 31, i));
+    }
+    ForkJoinPool pool = new ForkJoinPool(4);
+    HashtableMap<Integer, Integer> hashtable = HashtableMap.<Integer, Integer>builder().pool(pool)
+        .buildParallel(pairs);
+    Assert.assertEquals(200000, hashtable.getSize());
+    Assert.assertTrue(hashtable.getSize() < hashtable.getCapacity() * 0.7);
+    for (int i = 0; i < 200000; i++) {
+      Assert.assertEquals(i, hashtable.get(i * 31).intValue());
+    }
+    Assert.assertFalse(hashtable.containsKey(1));
+    for (int i = 0; i < 200000; i += 2) {
+      hashtable.remove(i * 31);
+    }
+    hashtable.put(1, 1);
+    Assert.assertEquals(100001, hashtable.getSize());
+    Assert.assertEquals(100001, hashtable.keySet().stream().distinct().count());
+
+    HashtableMap<String, Integer> fromStream = HashtableMap.<String, Integer>builder()
+        .buildParallel(Stream.of("a", "b", "c").map(k -> new AbstractMap.SimpleEntry<>(k, 1)));
+    Assert.assertEquals(3, fromStream.getSize());
+    Assert.assertEquals(1, fromStream.get("b").intValue());
+
+    pairs.add(new AbstractMap.SimpleImmutableEntry<>(31 * 500, -1));
+    try {
+      HashtableMap.<Integer, Integer>builder().pool(pool).buildParallel(pairs);
+      Assert.fail("Expected IllegalArgumentException to be thrown");
+    } catch (IllegalArgumentException e) {
+      // Exception was thrown as expected
+    }
+    try {
+      HashtableMap.<Integer, Integer>builder()
+          .buildParallel(Arrays.asList(new AbstractMap.SimpleEntry<>(null, 1)));
+      Assert.fail("Expected IllegalArgumentException to be thrown");
+    } catch (IllegalArgumentException e) {
+      // Exception was thrown as expected
+    }
+    pool.shutdown();
+  }
+
+  @Test
+  /**
+   * Tests ExpiringHashtableMap against a manual clock. It verifies that mappings disappear once
+   * their own or the default time-to-live has passed and not before, that expired mappings are
+   * reclaimed in batches by later operations and entirely by cleanUp, and that a key can be put
+   * again after its mapping expired.
+   */
+  public void testExpiringHashtableMap() {
+
+    long[] now = {1000};
+    long second = TimeUnit.SECONDS.toNanos(1);
+    ExpiringHashtableMap<Integer, String> sessions =
+        new ExpiringHashtableMap<>(10 * second, () -> now[0]);
+    for (int i = 0; i < 1000; i++) {
+      sessions.put(i, "s" + i);
+    }
+    sessions.put(-1, "long", 1, TimeUnit.HOURS);
+    try {
+      sessions.put(5, "again");
+      Assert.fail("Expected IllegalArgumentException to be thrown");
+    } catch (IllegalArgumentException e) {
+      // Exception was thrown as expected
+    }
+
+    now[0] += 10 * second - 1;
+    Assert.assertEquals("s5", sessions.get(5));
+    Assert.assertEquals(1, sessions.getTimeToLive(5, TimeUnit.NANOSECONDS));
+    now[0] += 1;
+    Assert.assertFalse(sessions.containsKey(5));
+    try {
+      sessions.get(6);
+      Assert.fail("Expected NoSuchElementException to be thrown");
+    } catch (NoSuchElementException e) {
+      // Exception was thrown as expected
+    }
+    // every operation reclaims a bounded batch rather than all expired mappings at once
+    Assert.assertTrue(sessions.getSize() > 900);
+    sessions.cleanUp();
+    Assert.assertEquals(1, sessions.getSize());
+    Assert.assertEquals("long", sessions.get(-1));
+    Assert.assertEquals(1, sessions.entrySet().size());
+
+    sessions.put(5, "renewed", 2, TimeUnit.DAYS);
+    now[0] += TimeUnit.HOURS.toNanos(1);
+    Assert.assertFalse(sessions.containsKey(-1));
+    now[0] += TimeUnit.DAYS.toNanos(2) - TimeUnit.HOURS.toNanos(1) - 1;
+    Assert.assertEquals("renewed", sessions.remove(5));
+    sessions.cleanUp();
+    Assert.assertEquals(0, sessions.getSize());
+
+    // deadlines spread over many wheel levels expire in order as time moves in small steps; the
+    // clock is kept on whole milliseconds since creation, the resolution of the wheel
+    now[0] = 1000 + TimeUnit.DAYS.toNanos(3);
+    Random random = new Random(7);
+    long[] expiries = new long[2000];
+    for (int i = 0; i < expiries.length; i++) {
+      expiries[i] = 1 + random.nextInt(100000);
+      sessions.put(i, "x", expiries[i], TimeUnit.MILLISECONDS);
+    }
+    long start = now[0];
+    for (long elapsed = 0; elapsed <= 100000; elapsed += 997) {
+      now[0] = start + TimeUnit.MILLISECONDS.toNanos(elapsed);
+      sessions.cleanUp();
+      int alive = 0;
+      for (long expiry : expiries) {
+        if (expiry > elapsed) {
+          alive++;
+        }
+      }
+      Assert.assertEquals(alive, sessions.getSize());
+    }
+    sessions.clear();
+    Assert.assertEquals(0, sessions.getSize());
+
+    // times-to-live so long that the deadline would overflow never expire
+    sessions.put(1, "forever", Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    sessions.put(2, "forever", Long.MAX_VALUE, TimeUnit.DAYS);
+    now[0] += TimeUnit.DAYS.toNanos(365 * 100);
+    sessions.cleanUp();
+    Assert.assertEquals(2, sessions.getSize());
+    Assert.assertEquals("forever", sessions.get(1));
+    Assert.assertTrue(sessions.getTimeToLive(2, TimeUnit.DAYS) > 365 * 100);
+  }
+
+  @Test
+  /**
+   * Tests HashtableSet. It verifies that add, contains and remove keep elements distinct, that
+   * removals keep the remaining elements reachable, and that union, intersect, addAll and
+   * retainAll match the same operations on java.util.HashSet, also between sets with different
+   * hash strategies.
+   */
+  public void testHashtableSet() {
+
+    HashtableSet<Integer> evens = new HashtableSet<>();
+    HashtableSet<Integer> triples = new HashtableSet<>();
+    Set<Integer> expectedEvens = new HashSet<>();
+    Set<Integer> expectedTriples = new HashSet<>();
+    for (int i = 0; i < 30000; i++) {
+      Assert.assertTrue(evens.add(i * 2));
+      Assert.assertFalse(evens.add(i * 2));
+      triples.add(i * 3);
+      expectedEvens.add(i * 2);
+      expectedTriples.add(i * 3);
+    }
+    try {
+      evens.add(null);
+      Assert.fail("Expected IllegalArgumentException to be thrown");
+    } catch (IllegalArgumentException e) {
+      // Exception was thrown as expected
+    }
+    for (int i = 0; i < 30000; i += 5) {
+      Assert.assertTrue(evens.remove(i * 2));
+      expectedEvens.remove(i * 2);
+    }
+    Assert.assertFalse(evens.remove(1));
+    Assert.assertEquals(expectedEvens.size(), evens.getSize());
+    Assert.assertEquals(expectedEvens, evens.stream().collect(Collectors.toSet()));
+    Assert.assertFalse(evens.contains(10));
+    Assert.assertTrue(evens.contains(12));
+
+    Set<Integer> union = new HashSet<>(expectedEvens);
+    union.addAll(expectedTriples);
+    Assert.assertEquals(union, evens.union(triples).stream().collect(Collectors.toSet()));
+    Set<Integer> intersection = new HashSet<>(expectedEvens);
+    intersection.retainAll(expectedTriples);
+    Assert.assertEquals(intersection,
+        evens.intersect(triples).stream().collect(Collectors.toSet()));
+    Assert.assertEquals(intersection,
+        triples.intersect(evens).stream().collect(Collectors.toSet()));
+
+    HashtableSet<Integer> retained = evens.union(new HashtableSet<>());
+    Assert.assertTrue(retained.retainAll(triples));
+    Assert.assertFalse(retained.retainAll(triples));
+    Assert.assertEquals(intersection, retained.stream().collect(Collectors.toSet()));
+    Assert.assertTrue(retained.addAll(triples));
+    Assert.assertEquals(expectedTriples.size(), retained.getSize());
+    // a set combined with itself stays as it is
+    int capacity = retained.getCapacity();
+    Assert.assertFalse(retained.retainAll(retained));
+    Assert.assertFalse(retained.addAll(retained));
+    Assert.assertEquals(expectedTriples.size(), retained.getSize());
+    Assert.assertEquals(capacity, retained.getCapacity());
+
+    // a set with another strategy hashes the elements again instead of reusing cached hashes
+    HashtableSet<Integer> identity = new HashtableSet<>(8, HashStrategy.identity());
+    Integer shared = 6;
+    identity.add(shared);
+    Assert.assertEquals(1, evens.intersect(identity).getSize());
+    retained.clear();
+    Assert.assertEquals(0, retained.getSize());
+    Assert.assertFalse(retained.contains(6));
+  }
+
+  @Test
+  /**
+   * Tests ReferenceHashtableMap. It verifies that a map with weak keys reclaims the mappings of
+   * keys that are no longer used elsewhere once the collector has run, while keeping every mapping
+   * whose key is still held, and that a map with soft values behaves like any other map while
+   * memory is plentiful.
+   */
+  public void testReferenceHashtableMap() {
+
+    ReferenceHashtableMap<Object, Integer> weak = ReferenceHashtableMap.weakKeys();
+    List<Object> held = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      Object key = new Object();
+      weak.put(key, i);
+      if (i % 10 == 0) {
+        held.add(key);
+      }
+    }
+    Assert.assertEquals(1000, weak.getSize());
+    for (int attempt = 0; attempt < 50 && weak.getSize() > held.size(); attempt++) {
+      System.gc();
+      weak.cleanUp();
+    }
+    Assert.assertEquals(held.size(), weak.getSize());
+    for (int i = 0; i < held.size(); i++) {
+      Assert.assertEquals(i * 10, (int) weak.get(held.get(i)));
+    }
+    Assert.assertEquals(held.size(), weak.entrySet().stream().count());
+    Assert.assertEquals(0, (int) weak.remove(held.get(0)));
+    Assert.assertFalse(weak.containsKey(held.get(0)));
+
+    ReferenceHashtableMap<Integer, String> soft = ReferenceHashtableMap.softValues();
+    for (int i = 0; i < 1000; i++) {
+      soft.put(i, Integer.toString(i));
+    }
+    try {
+      soft.put(5, "5");
+      Assert.fail("Expected IllegalArgumentException to be thrown");
+    } catch (IllegalArgumentException e) {
+      // Exception was thrown as expected
+    }
+    for (int i = 0; i < 1000; i += 2) {
+      Assert.assertEquals(Integer.toString(i), soft.remove(i));
+    }
+    Assert.assertEquals(500, soft.getSize());
+    Assert.assertEquals("999", soft.get(999));
+    Assert.assertFalse(soft.containsKey(998));
+    soft.clear();
+    Assert.assertEquals(0, soft.getSize());
+  }
+
 }
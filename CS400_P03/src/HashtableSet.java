@@ -0,0 +1,264 @@
+import java.util.Spliterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Set of distinct elements stored in the same Robin Hood open-addressing table as
+ * RobinHoodHashtableMap, but with only the key and hash arrays: there is no value array and no
+ * entry object per element, so an element costs one reference and one int.
+ *
+ * The bulk operations work on the table arrays directly. They reuse the hashes cached in the
+ * arrays instead of hashing elements again whenever both sets use the same HashStrategy, which
+ * sets created with the default strategy always do.
+ */
+public class HashtableSet<T> {
+
+  private static final int DEFAULT_CAPACITY = 8;
+  private static final double LOAD_FACTOR_THRESHOLD = 0.7;
+  // shared so that sets using the default strategy can reuse each other's hashes
+  private static final HashStrategy<Object> DEFAULT_STRATEGY = HashStrategy.defaultStrategy();
+
+  private final HashStrategy<? super T> strategy;
+  private Object[] elements;
+  private int[] hashes;
+  private int size;
+
+  /**
+   * @param capacity initial number of slots
+   * @param strategy hashes and compares the elements
+   */
+  public HashtableSet(int capacity, HashStrategy<? super T> strategy) {
+    this.strategy = strategy;
+    elements = new Object[Math.max(capacity, 2)];
+    hashes = new int[elements.length];
+    size = 0;
+  }
+
+  public HashtableSet(int capacity) {
+    this(capacity, DEFAULT_STRATEGY);
+  }
+
+  public HashtableSet() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Adds element unless the set already holds it.
+   *
+   * @return true when element was added
+   * @throws IllegalArgumentException when element is null
+   */
+  public boolean add(T element) throws IllegalArgumentException {
+    if (element == null) {
+      throw new IllegalArgumentException();
+    }
+    int hash = strategy.hash(element);
+    if (findIndex(element, hash) >= 0) {
+      return false;
+    }
+    insert(element, hash);
+    return true;
+  }
+
+  public boolean contains(T element) {
+    return element != null && findIndex(element, strategy.hash(element)) >= 0;
+  }
+
+  /**
+   * Removes element if the set holds it.
+   *
+   * @return true when element was removed
+   */
+  public boolean remove(T element) {
+    int index = element == null ? -1 : findIndex(element, strategy.hash(element));
+    if (index < 0) {
+      return false;
+    }
+    RobinHoodHashtableMap.shiftBackward(elements, null, hashes, index);
+    size--;
+    return true;
+  }
+
+  public void clear() {
+    for (int i = 0; i < elements.length; i++) {
+      elements[i] = null;
+    }
+    size = 0;
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  public int getCapacity() {
+    return elements.length;
+  }
+
+  /**
+   * Adds every element of other to this set.
+   *
+   * @return true when this set changed
+   */
+  @SuppressWarnings("unchecked")
+  public boolean addAll(HashtableSet<? extends T> other) {
+    if (other == this) {
+      return false;
+    }
+    boolean sameHashes = other.strategy == strategy;
+    int before = size;
+    growFor(size + other.size);
+    for (int i = 0; i < other.elements.length; i++) {
+      Object element = other.elements[i];
+      if (element != null) {
+        int hash = sameHashes ? other.hashes[i] : strategy.hash((T) element);
+        if (findIndex(element, hash) < 0) {
+          insert(element, hash);
+        }
+      }
+    }
+    return size != before;
+  }
+
+  /**
+   * Keeps only the elements that other holds as well. The survivors are moved into fresh arrays of
+   * the same capacity with their cached hashes, so nothing is shifted while the table is scanned.
+   *
+   * @return true when this set changed
+   */
+  public boolean retainAll(HashtableSet<? extends T> other) {
+    if (other == this) {
+      // the lookups below would search the fresh, empty arrays
+      return false;
+    }
+    boolean sameHashes = other.strategy == strategy;
+    Object[] oldElements = elements;
+    int[] oldHashes = hashes;
+    elements = new Object[oldElements.length];
+    hashes = new int[oldElements.length];
+    int before = size;
+    size = 0;
+    for (int i = 0; i < oldElements.length; i++) {
+      Object element = oldElements[i];
+      if (element != null && other.holds(element, sameHashes ? oldHashes[i] : 0, sameHashes)) {
+        RobinHoodHashtableMap.insert(elements, null, hashes, element, null, oldHashes[i]);
+        size++;
+      }
+    }
+    return size != before;
+  }
+
+  /**
+   * @return a new set holding the elements of this set and of other
+   */
+  public HashtableSet<T> union(HashtableSet<? extends T> other) {
+    HashtableSet<T> result = new HashtableSet<>(capacityFor(size + other.size), strategy);
+    result.addAll(this);
+    result.addAll(other);
+    return result;
+  }
+
+  /**
+   * Walks the table of the smaller set and probes the larger one for each of its elements.
+   *
+   * @return a new set holding the elements that both this set and other hold
+   */
+  @SuppressWarnings("unchecked")
+  public HashtableSet<T> intersect(HashtableSet<? extends T> other) {
+    boolean sameHashes = other.strategy == strategy;
+    HashtableSet<?> smaller = size <= other.size ? this : other;
+    HashtableSet<?> larger = smaller == this ? other : this;
+    HashtableSet<T> result = new HashtableSet<>(capacityFor(smaller.size), strategy);
+    for (int i = 0; i < smaller.elements.length; i++) {
+      Object element = smaller.elements[i];
+      if (element != null && larger.holds(element, smaller.hashes[i], sameHashes)) {
+        int hash = sameHashes || smaller == this ? smaller.hashes[i] : strategy.hash((T) element);
+        RobinHoodHashtableMap.insert(result.elements, null, result.hashes, element, null, hash);
+        result.size++;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Splits the table by slot range, handing out the stored elements themselves.
+   */
+  @SuppressWarnings("unchecked")
+  public Spliterator<T> spliterator() {
+    Object[] e = elements;
+    return new TableSpliterator<>(i -> e[i] != null, i -> (T) e[i], 0, e.length, size,
+        Spliterator.DISTINCT | Spliterator.NONNULL);
+  }
+
+  public Stream<T> stream() {
+    return StreamSupport.stream(spliterator(), false);
+  }
+
+  /**
+   * @return whether this set holds element, using hash when it was computed by this set's
+   *         strategy and hashing element again otherwise
+   */
+  @SuppressWarnings("unchecked")
+  private boolean holds(Object element, int hash, boolean sameHashes) {
+    return findIndex(element, sameHashes ? hash : strategy.hash((T) element)) >= 0;
+  }
+
+  /**
+   * Finds the slot holding element like RobinHoodHashtableMap does, stopping at the first empty
+   * slot or the first resident that is closer to its home slot than element would be.
+   *
+   * @return the slot index, or -1 when element is not stored
+   */
+  @SuppressWarnings("unchecked")
+  private int findIndex(Object element, int hash) {
+    int length = elements.length;
+    int index = RobinHoodHashtableMap.getIndex(hash, length);
+
+    for (int distance = 0; distance < length; distance++) {
+      if (elements[index] == null
+          || RobinHoodHashtableMap.probeDistance(hashes[index], index, length) < distance) {
+        return -1;
+      }
+      if (hashes[index] == hash && strategy.equals((T) elements[index], (T) element)) {
+        return index;
+      }
+      index = (index + 1) % length;
+    }
+    return -1;
+  }
+
+  private void insert(Object element, int hash) {
+    RobinHoodHashtableMap.insert(elements, null, hashes, element, null, hash);
+    size++;
+    if ((double) size >= elements.length * LOAD_FACTOR_THRESHOLD) {
+      resizeTable(elements.length * 2);
+    }
+  }
+
+  /**
+   * Grows the table once, up front, when holding entries elements would cross the threshold.
+   */
+  private void growFor(int entries) {
+    if (entries >= elements.length * LOAD_FACTOR_THRESHOLD) {
+      resizeTable(Math.max(elements.length * 2, capacityFor(entries)));
+    }
+  }
+
+  private void resizeTable(int capacity) {
+    Object[] oldElements = elements;
+    int[] oldHashes = hashes;
+    elements = new Object[capacity];
+    hashes = new int[capacity];
+    for (int i = 0; i < oldElements.length; i++) {
+      if (oldElements[i] != null) {
+        RobinHoodHashtableMap.insert(elements, null, hashes, oldElements[i], null, oldHashes[i]);
+      }
+    }
+  }
+
+  /**
+   * @return a capacity that holds entries elements without crossing the threshold
+   */
+  private static int capacityFor(int entries) {
+    return Math.max(DEFAULT_CAPACITY, (int) (entries / LOAD_FACTOR_THRESHOLD) + 1);
+  }
+}
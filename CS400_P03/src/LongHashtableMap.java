@@ -0,0 +1,225 @@
+import java.util.Spliterator;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Hashtable from primitive long keys to object values. Keys are stored unboxed in a long array and
+ * hashed without calling hashCode, so get, put and remove never allocate. Absent keys are reported
+ * through null or a caller-supplied default instead of exceptions.
+ *
+ * The key 0 marks empty slots of the keys array, so a mapping for 0 is kept in a separate field.
+ * Removals shift the following entries of the probe sequence back, so no tombstones are left.
+ */
+public class LongHashtableMap<ValueType> {
+
+  private static final int DEFAULT_CAPACITY = 8;
+  private static final double LOAD_FACTOR_THRESHOLD = 0.7;
+
+  private long[] keys;
+  private Object[] values;
+  private int size;
+  private boolean hasZeroKey;
+  private Object zeroValue;
+
+  /**
+   * @param capacity initial number of slots, rounded up to a power of two
+   */
+  public LongHashtableMap(int capacity) {
+    int length = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+    keys = new long[length];
+    values = new Object[length];
+    size = 0;
+  }
+
+  public LongHashtableMap() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Maps key to value, replacing any previous mapping for key.
+   *
+   * @return the value previously mapped to key, or null when there was none
+   */
+  @SuppressWarnings("unchecked")
+  public ValueType put(long key, ValueType value) {
+    if (key == 0) {
+      ValueType previous = (ValueType) zeroValue;
+      zeroValue = value;
+      if (!hasZeroKey) {
+        hasZeroKey = true;
+        size++;
+      }
+      return previous;
+    }
+
+    int mask = keys.length - 1;
+    int index = getIndex(key, mask);
+    while (keys[index] != 0) {
+      if (keys[index] == key) {
+        ValueType previous = (ValueType) values[index];
+        values[index] = value;
+        return previous;
+      }
+      index = (index + 1) & mask;
+    }
+
+    keys[index] = key;
+    values[index] = value;
+    size++;
+    if ((double) size >= keys.length * LOAD_FACTOR_THRESHOLD) {
+      resizeTable();
+    }
+    return null;
+  }
+
+  /**
+   * @return the value mapped to key, or null when key is not stored
+   */
+  public ValueType get(long key) {
+    return getOrDefault(key, null);
+  }
+
+  /**
+   * @return the value mapped to key, or defaultValue when key is not stored
+   */
+  @SuppressWarnings("unchecked")
+  public ValueType getOrDefault(long key, ValueType defaultValue) {
+    if (key == 0) {
+      return hasZeroKey ? (ValueType) zeroValue : defaultValue;
+    }
+    int index = findIndex(key);
+    return index < 0 ? defaultValue : (ValueType) values[index];
+  }
+
+  public boolean containsKey(long key) {
+    return key == 0 ? hasZeroKey : findIndex(key) >= 0;
+  }
+
+  /**
+   * Removes the mapping for key if there is one.
+   *
+   * @return the value that was mapped to key, or null when key was not stored
+   */
+  @SuppressWarnings("unchecked")
+  public ValueType remove(long key) {
+    if (key == 0) {
+      ValueType previous = (ValueType) zeroValue;
+      if (hasZeroKey) {
+        hasZeroKey = false;
+        zeroValue = null;
+        size--;
+      }
+      return previous;
+    }
+
+    int index = findIndex(key);
+    if (index < 0) {
+      return null;
+    }
+    ValueType previous = (ValueType) values[index];
+    shiftBackward(index);
+    size--;
+    return previous;
+  }
+
+  public void clear() {
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = 0;
+      values[i] = null;
+    }
+    hasZeroKey = false;
+    zeroValue = null;
+    size = 0;
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  public int getCapacity() {
+    return keys.length;
+  }
+
+  /**
+   * @return the keys, read straight from the keys array; call parallel() to split by slot range
+   */
+  public LongStream keyStream() {
+    long[] k = keys;
+    LongStream table = StreamSupport.longStream(new TableSpliterator.OfLong(i -> k[i] != 0,
+        i -> k[i], 0, k.length, size, Spliterator.DISTINCT), false);
+    return hasZeroKey ? LongStream.concat(LongStream.of(0), table) : table;
+  }
+
+  /**
+   * @return the values, read straight from the values array; call parallel() to split by slot
+   *         range
+   */
+  @SuppressWarnings("unchecked")
+  public Stream<ValueType> valueStream() {
+    long[] k = keys;
+    Object[] v = values;
+    Stream<ValueType> table = StreamSupport.stream(
+        new TableSpliterator<>(i -> k[i] != 0, i -> (ValueType) v[i], 0, k.length, size, 0), false);
+    return hasZeroKey ? Stream.concat(Stream.of((ValueType) zeroValue), table) : table;
+  }
+
+  private int findIndex(long key) {
+    int mask = keys.length - 1;
+    int index = getIndex(key, mask);
+    while (keys[index] != 0) {
+      if (keys[index] == key) {
+        return index;
+      }
+      index = (index + 1) & mask;
+    }
+    return -1;
+  }
+
+  /**
+   * Spreads the key with a multiplicative hash so sequential ids do not fill neighbouring slots.
+   */
+  private static int getIndex(long key, int mask) {
+    long hash = key * 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ (hash >>> 32)) & mask;
+  }
+
+  /**
+   * Empties the slot at index and moves later entries of the same cluster back into the gap when
+   * their home slot is not between the gap and their current slot.
+   */
+  private void shiftBackward(int index) {
+    int mask = keys.length - 1;
+    int next = (index + 1) & mask;
+    while (keys[next] != 0) {
+      int home = getIndex(keys[next], mask);
+      if (((next - home) & mask) >= ((next - index) & mask)) {
+        keys[index] = keys[next];
+        values[index] = values[next];
+        index = next;
+      }
+      next = (next + 1) & mask;
+    }
+    keys[index] = 0;
+    values[index] = null;
+  }
+
+  private void resizeTable() {
+    long[] oldKeys = keys;
+    Object[] oldValues = values;
+    keys = new long[oldKeys.length * 2];
+    values = new Object[oldKeys.length * 2];
+
+    int mask = keys.length - 1;
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != 0) {
+        int index = getIndex(oldKeys[i], mask);
+        while (keys[index] != 0) {
+          index = (index + 1) & mask;
+        }
+        keys[index] = oldKeys[i];
+        values[index] = oldValues[i];
+      }
+    }
+  }
+}
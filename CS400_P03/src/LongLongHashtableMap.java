@@ -0,0 +1,254 @@
+import java.util.Spliterator;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Hashtable from primitive long keys to primitive long values. Neither keys nor values are boxed,
+ * so get, put, remove and addTo never allocate. Lookups of absent keys return the no-entry value
+ * chosen at construction (or a caller-supplied default) instead of throwing.
+ *
+ * The key 0 marks empty slots of the keys array, so a mapping for 0 is kept in separate fields.
+ * Removals shift the following entries of the probe sequence back, so no tombstones are left.
+ */
+public class LongLongHashtableMap {
+
+  private static final int DEFAULT_CAPACITY = 8;
+  private static final double LOAD_FACTOR_THRESHOLD = 0.7;
+
+  private final long noEntryValue;
+  private long[] keys;
+  private long[] values;
+  private int size;
+  private boolean hasZeroKey;
+  private long zeroValue;
+
+  /**
+   * @param capacity     initial number of slots, rounded up to a power of two
+   * @param noEntryValue value returned by get, put and remove for keys that are not stored
+   */
+  public LongLongHashtableMap(int capacity, long noEntryValue) {
+    int length = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+    this.noEntryValue = noEntryValue;
+    keys = new long[length];
+    values = new long[length];
+    size = 0;
+  }
+
+  public LongLongHashtableMap() {
+    this(DEFAULT_CAPACITY, 0L);
+  }
+
+  /**
+   * Maps key to value, replacing any previous mapping for key.
+   *
+   * @return the value previously mapped to key, or the no-entry value when there was none
+   */
+  public long put(long key, long value) {
+    if (key == 0) {
+      long previous = hasZeroKey ? zeroValue : noEntryValue;
+      zeroValue = value;
+      if (!hasZeroKey) {
+        hasZeroKey = true;
+        size++;
+      }
+      return previous;
+    }
+
+    int index = probe(key);
+    if (index >= 0) {
+      long previous = values[index];
+      values[index] = value;
+      return previous;
+    }
+    insertAt(-index - 1, key, value);
+    return noEntryValue;
+  }
+
+  /**
+   * Adds delta to the value mapped to key, treating an absent key as mapped to 0, using a single
+   * probe of the table.
+   *
+   * @return the value mapped to key after the addition
+   */
+  public long addTo(long key, long delta) {
+    if (key == 0) {
+      zeroValue = (hasZeroKey ? zeroValue : 0L) + delta;
+      if (!hasZeroKey) {
+        hasZeroKey = true;
+        size++;
+      }
+      return zeroValue;
+    }
+
+    int index = probe(key);
+    if (index >= 0) {
+      values[index] += delta;
+      return values[index];
+    }
+    insertAt(-index - 1, key, delta);
+    return delta;
+  }
+
+  /**
+   * @return the value mapped to key, or the no-entry value when key is not stored
+   */
+  public long get(long key) {
+    return getOrDefault(key, noEntryValue);
+  }
+
+  /**
+   * @return the value mapped to key, or defaultValue when key is not stored
+   */
+  public long getOrDefault(long key, long defaultValue) {
+    if (key == 0) {
+      return hasZeroKey ? zeroValue : defaultValue;
+    }
+    int index = probe(key);
+    return index < 0 ? defaultValue : values[index];
+  }
+
+  public boolean containsKey(long key) {
+    return key == 0 ? hasZeroKey : probe(key) >= 0;
+  }
+
+  /**
+   * Removes the mapping for key if there is one.
+   *
+   * @return the value that was mapped to key, or the no-entry value when key was not stored
+   */
+  public long remove(long key) {
+    if (key == 0) {
+      long previous = hasZeroKey ? zeroValue : noEntryValue;
+      if (hasZeroKey) {
+        hasZeroKey = false;
+        size--;
+      }
+      return previous;
+    }
+
+    int index = probe(key);
+    if (index < 0) {
+      return noEntryValue;
+    }
+    long previous = values[index];
+    shiftBackward(index);
+    size--;
+    return previous;
+  }
+
+  public void clear() {
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = 0;
+    }
+    hasZeroKey = false;
+    size = 0;
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  public int getCapacity() {
+    return keys.length;
+  }
+
+  /**
+   * @return the no-entry value this map reports for absent keys
+   */
+  public long getNoEntryValue() {
+    return noEntryValue;
+  }
+
+  /**
+   * @return the keys, read straight from the keys array; call parallel() to split by slot range
+   */
+  public LongStream keyStream() {
+    long[] k = keys;
+    LongStream table = StreamSupport.longStream(new TableSpliterator.OfLong(i -> k[i] != 0,
+        i -> k[i], 0, k.length, size, Spliterator.DISTINCT), false);
+    return hasZeroKey ? LongStream.concat(LongStream.of(0L), table) : table;
+  }
+
+  /**
+   * @return the values, read straight from the values array; call parallel() to split by slot
+   *         range
+   */
+  public LongStream valueStream() {
+    long[] k = keys;
+    long[] v = values;
+    LongStream table = StreamSupport.longStream(new TableSpliterator.OfLong(i -> k[i] != 0,
+        i -> v[i], 0, k.length, size, 0), false);
+    return hasZeroKey ? LongStream.concat(LongStream.of(zeroValue), table) : table;
+  }
+
+  /**
+   * @return the index of key's slot, or -(slot + 1) where slot is the empty slot that ended the
+   *         probe sequence
+   */
+  private int probe(long key) {
+    int mask = keys.length - 1;
+    int index = getIndex(key, mask);
+    while (keys[index] != 0) {
+      if (keys[index] == key) {
+        return index;
+      }
+      index = (index + 1) & mask;
+    }
+    return -index - 1;
+  }
+
+  private void insertAt(int slot, long key, long value) {
+    keys[slot] = key;
+    values[slot] = value;
+    size++;
+    if ((double) size >= keys.length * LOAD_FACTOR_THRESHOLD) {
+      resizeTable();
+    }
+  }
+
+  /**
+   * Spreads the key with a multiplicative hash so sequential ids do not fill neighbouring slots.
+   */
+  private static int getIndex(long key, int mask) {
+    long hash = key * 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ (hash >>> 32)) & mask;
+  }
+
+  /**
+   * Empties the slot at index and moves later entries of the same cluster back into the gap when
+   * their home slot is not between the gap and their current slot.
+   */
+  private void shiftBackward(int index) {
+    int mask = keys.length - 1;
+    int next = (index + 1) & mask;
+    while (keys[next] != 0) {
+      int home = getIndex(keys[next], mask);
+      if (((next - home) & mask) >= ((next - index) & mask)) {
+        keys[index] = keys[next];
+        values[index] = values[next];
+        index = next;
+      }
+      next = (next + 1) & mask;
+    }
+    keys[index] = 0;
+  }
+
+  private void resizeTable() {
+    long[] oldKeys = keys;
+    long[] oldValues = values;
+    keys = new long[oldKeys.length * 2];
+    values = new long[oldKeys.length * 2];
+
+    int mask = keys.length - 1;
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != 0) {
+        int index = getIndex(oldKeys[i], mask);
+        while (keys[index] != 0) {
+          index = (index + 1) & mask;
+        }
+        keys[index] = oldKeys[i];
+        values[index] = oldValues[i];
+      }
+    }
+  }
+}
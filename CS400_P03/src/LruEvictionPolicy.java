@@ -0,0 +1,49 @@
+/**
+ * Evicts the least recently used entry. All nodes sit in one queue ordered from least to most
+ * recently inserted or accessed.
+ */
+public class LruEvictionPolicy<KeyType, ValueType> implements EvictionPolicy<KeyType, ValueType> {
+
+  private final BoundedCacheMap.NodeQueue<KeyType, ValueType> queue =
+      new BoundedCacheMap.NodeQueue<>();
+
+  @Override
+  public void setMaximumWeight(long maximumWeight) {
+    // the order of use alone decides, so the bound does not matter here
+  }
+
+  @Override
+  public void onInsert(BoundedCacheMap.Node<KeyType, ValueType> node) {
+    queue.addLast(node);
+  }
+
+  @Override
+  public void onAccess(BoundedCacheMap.Node<KeyType, ValueType> node) {
+    queue.moveToLast(node);
+  }
+
+  @Override
+  public void onUpdate(BoundedCacheMap.Node<KeyType, ValueType> node, int oldWeight) {
+    queue.reweigh(node, oldWeight);
+    queue.moveToLast(node);
+  }
+
+  @Override
+  public void onRemove(BoundedCacheMap.Node<KeyType, ValueType> node) {
+    queue.remove(node);
+  }
+
+  @Override
+  public BoundedCacheMap.Node<KeyType, ValueType> nextVictim() {
+    BoundedCacheMap.Node<KeyType, ValueType> victim = queue.peekFirst();
+    if (victim != null) {
+      queue.remove(victim);
+    }
+    return victim;
+  }
+
+  @Override
+  public void clear() {
+    queue.clear();
+  }
+}
@@ -1,4 +1,11 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.BiFunction;
 
 /**
  * This abstract data type represents a collection that maps keys to values,
@@ -30,4 +37,125 @@ public interface MapADT<KeyType,ValueType> {
     // retrieve this collection's capacity (size of its underlying array)
     public int getCapacity();
 
+    // retrieve the value that key maps to, or defaultValue when key is null or not stored
+    public default ValueType getOrDefault(KeyType key, ValueType defaultValue) {
+        return key != null && containsKey(key) ? get(key) : defaultValue;
+    }
+
+    // add a key-value pair only when the key is not stored yet
+    // returns the value already mapped to key, or null when the new pair was added
+    // throws exception when key is null
+    public default ValueType putIfAbsent(KeyType key, ValueType value)
+        throws IllegalArgumentException {
+        if (key != null && containsKey(key)) {
+            return get(key);
+        }
+        put(key, value);
+        return null;
+    }
+
+    // replace the value mapped to a key that is already stored and return the previous value
+    // throws exception when key is not stored in this collection
+    public default ValueType replace(KeyType key, ValueType value) throws NoSuchElementException {
+        ValueType previous = remove(key);
+        put(key, value);
+        return previous;
+    }
+
+    // map key to the result of applying function to key and its current value (null when absent)
+    // a null result removes the mapping; returns the new value, or null when nothing is stored
+    // throws exception when key is null
+    public default ValueType compute(KeyType key,
+        BiFunction<? super KeyType, ? super ValueType, ? extends ValueType> function)
+        throws IllegalArgumentException {
+        if (key == null) {
+            throw new IllegalArgumentException();
+        }
+        boolean present = containsKey(key);
+        ValueType newValue = function.apply(key, present ? get(key) : null);
+        if (present) {
+            remove(key);
+        }
+        if (newValue != null) {
+            put(key, newValue);
+        }
+        return newValue;
+    }
+
+    // store value when key is absent, otherwise map key to function(current value, value)
+    // a null result removes the mapping; returns the new value, or null when nothing is stored
+    // throws exception when key is null
+    public default ValueType merge(KeyType key, ValueType value,
+        BiFunction<? super ValueType, ? super ValueType, ? extends ValueType> function)
+        throws IllegalArgumentException {
+        return compute(key, (k, current) -> current == null ? value : function.apply(current, value));
+    }
+
+    // add every keys.get(i) -> values.get(i) pair to this collection
+    // throws exception when the lists differ in length or a key is null or already stored,
+    // in which case some of the other pairs may already have been added
+    public default void putAll(List<? extends KeyType> keys, List<? extends ValueType> values)
+        throws IllegalArgumentException {
+        if (keys.size() != values.size()) {
+            throw new IllegalArgumentException();
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            put(keys.get(i), values.get(i));
+        }
+    }
+
+    // retrieve the values that the given keys map to, in the same order as the keys
+    // throws exception when any of the keys is not stored in this collection
+    public default List<ValueType> getAll(List<? extends KeyType> keys)
+        throws NoSuchElementException {
+        List<ValueType> values = new ArrayList<>(keys.size());
+        for (KeyType key : keys) {
+            values.add(get(key));
+        }
+        return values;
+    }
+
+    // remove the mappings for the given keys and return their values, in the same order as the keys
+    // throws exception when a key is not stored, in which case some of the others may be removed
+    public default List<ValueType> removeAll(List<? extends KeyType> keys)
+        throws NoSuchElementException {
+        List<ValueType> values = new ArrayList<>(keys.size());
+        for (KeyType key : keys) {
+            values.add(remove(key));
+        }
+        return values;
+    }
+
+    // traverse the key-value pairs of this collection, splitting by table range for parallel use
+    // throws exception when the implementation does not support traversal
+    public default Spliterator<Map.Entry<KeyType, ValueType>> entrySpliterator() {
+        throw new UnsupportedOperationException();
+    }
+
+    // traverse the keys of this collection
+    public default Spliterator<KeyType> keySpliterator() {
+        return MapADTViews.mapping(entrySpliterator(), Map.Entry::getKey,
+            Spliterator.DISTINCT | Spliterator.NONNULL);
+    }
+
+    // traverse the values of this collection
+    public default Spliterator<ValueType> valueSpliterator() {
+        return MapADTViews.mapping(entrySpliterator(), Map.Entry::getValue, 0);
+    }
+
+    // read-only view of the key-value pairs, whose stream and parallelStream use entrySpliterator
+    public default Set<Map.Entry<KeyType, ValueType>> entrySet() {
+        return new MapADTViews.EntrySet<>(this);
+    }
+
+    // read-only view of the keys
+    public default Set<KeyType> keySet() {
+        return new MapADTViews.KeySet<>(this);
+    }
+
+    // read-only view of the values
+    public default Collection<ValueType> values() {
+        return new MapADTViews.Values<>(this);
+    }
+
 }
\ No newline at end of file
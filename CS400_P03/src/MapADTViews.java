@@ -0,0 +1,149 @@
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * The entrySet, keySet and values views of a MapADT. They hold no elements of their own: size and
+ * contains go to the map, and iteration and streams use the map's spliterators, so a parallel
+ * stream over a view splits the map's table directly. The views are read-only, and the map must not
+ * be modified while one of them is being traversed.
+ */
+class MapADTViews {
+
+  private MapADTViews() {
+  }
+
+  static class EntrySet<KeyType, ValueType> extends AbstractSet<Map.Entry<KeyType, ValueType>> {
+    private final MapADT<KeyType, ValueType> map;
+
+    EntrySet(MapADT<KeyType, ValueType> map) {
+      this.map = map;
+    }
+
+    @Override
+    public Iterator<Map.Entry<KeyType, ValueType>> iterator() {
+      return Spliterators.iterator(spliterator());
+    }
+
+    @Override
+    public Spliterator<Map.Entry<KeyType, ValueType>> spliterator() {
+      return map.entrySpliterator();
+    }
+
+    @Override
+    public int size() {
+      return map.getSize();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean contains(Object o) {
+      if (!(o instanceof Map.Entry)) {
+        return false;
+      }
+      Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+      try {
+        KeyType key = (KeyType) entry.getKey();
+        return map.containsKey(key) && Objects.equals(map.get(key), entry.getValue());
+      } catch (ClassCastException e) {
+        return false;
+      }
+    }
+  }
+
+  static class KeySet<KeyType, ValueType> extends AbstractSet<KeyType> {
+    private final MapADT<KeyType, ValueType> map;
+
+    KeySet(MapADT<KeyType, ValueType> map) {
+      this.map = map;
+    }
+
+    @Override
+    public Iterator<KeyType> iterator() {
+      return Spliterators.iterator(spliterator());
+    }
+
+    @Override
+    public Spliterator<KeyType> spliterator() {
+      return map.keySpliterator();
+    }
+
+    @Override
+    public int size() {
+      return map.getSize();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean contains(Object o) {
+      try {
+        return map.containsKey((KeyType) o);
+      } catch (ClassCastException e) {
+        return false;
+      }
+    }
+  }
+
+  static class Values<KeyType, ValueType> extends AbstractCollection<ValueType> {
+    private final MapADT<KeyType, ValueType> map;
+
+    Values(MapADT<KeyType, ValueType> map) {
+      this.map = map;
+    }
+
+    @Override
+    public Iterator<ValueType> iterator() {
+      return Spliterators.iterator(spliterator());
+    }
+
+    @Override
+    public Spliterator<ValueType> spliterator() {
+      return map.valueSpliterator();
+    }
+
+    @Override
+    public int size() {
+      return map.getSize();
+    }
+  }
+
+  /**
+   * @return a spliterator that applies mapper to every element of source and splits along with it
+   */
+  static <A, B> Spliterator<B> mapping(Spliterator<A> source,
+      Function<? super A, ? extends B> mapper, int characteristics) {
+    return new Spliterator<B>() {
+      @Override
+      public boolean tryAdvance(Consumer<? super B> action) {
+        return source.tryAdvance(element -> action.accept(mapper.apply(element)));
+      }
+
+      @Override
+      public void forEachRemaining(Consumer<? super B> action) {
+        source.forEachRemaining(element -> action.accept(mapper.apply(element)));
+      }
+
+      @Override
+      public Spliterator<B> trySplit() {
+        Spliterator<A> prefix = source.trySplit();
+        return prefix == null ? null : mapping(prefix, mapper, characteristics);
+      }
+
+      @Override
+      public long estimateSize() {
+        return source.estimateSize();
+      }
+
+      @Override
+      public int characteristics() {
+        return characteristics;
+      }
+    };
+  }
+}
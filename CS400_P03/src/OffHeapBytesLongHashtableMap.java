@@ -0,0 +1,278 @@
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+
+/**
+ * Hashtable from fixed-width byte[] keys, such as 16-byte UUIDs or digests, to long values whose
+ * slots live outside the Java heap. Keys are compared by content and copied into the table, so the
+ * caller may reuse a key array after the call returns.
+ *
+ * Each slot holds the value, the key's hash and the key bytes. A stored hash of 0 marks an empty
+ * slot, so computed hashes are never 0; lookups compare hashes before touching the key bytes.
+ * Removals shift the following entries of the probe sequence back, so no tombstones are left.
+ * After close, every operation throws IllegalStateException.
+ */
+public class OffHeapBytesLongHashtableMap implements MapADT<byte[], Long>, AutoCloseable {
+
+  private static final int DEFAULT_CAPACITY = 1024;
+  private static final double LOAD_FACTOR_THRESHOLD = 0.7;
+  // the value comes first and slots are padded to whole longs, so every value read is aligned
+  private static final int VALUE_OFFSET = 0;
+  private static final int HASH_OFFSET = 8;
+  private static final int KEY_OFFSET = 12;
+
+  private final int keyWidth;
+  private final int slotWidth;
+  private OffHeapSlots slots;
+  private int size;
+
+  /**
+   * @param keyWidth number of bytes in every key
+   * @param capacity initial number of slots, rounded up to a power of two
+   */
+  public OffHeapBytesLongHashtableMap(int keyWidth, int capacity) {
+    if (keyWidth <= 0) {
+      throw new IllegalArgumentException();
+    }
+    this.keyWidth = keyWidth;
+    slotWidth = (KEY_OFFSET + keyWidth + 7) & ~7;
+    slots = new OffHeapSlots(Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1, slotWidth);
+    size = 0;
+  }
+
+  public OffHeapBytesLongHashtableMap(int keyWidth) {
+    this(keyWidth, DEFAULT_CAPACITY);
+  }
+
+  @Override
+  public void put(byte[] key, Long value) throws IllegalArgumentException {
+    if (value == null) {
+      throw new IllegalArgumentException();
+    }
+    int hash = hash(key);
+    int index = probe(key, hash);
+    if (index >= 0) {
+      throw new IllegalArgumentException();
+    }
+    insertAt(-index - 1, key, value, hash);
+  }
+
+  /**
+   * Adds delta to the value mapped to key, treating an absent key as mapped to 0, using a single
+   * probe of the table.
+   *
+   * @return the value mapped to key after the addition
+   * @throws IllegalArgumentException when key is null or not keyWidth bytes long
+   */
+  public long addTo(byte[] key, long delta) {
+    int hash = hash(key);
+    int index = probe(key, hash);
+    if (index >= 0) {
+      long value = slots.getLong(index, VALUE_OFFSET) + delta;
+      slots.putLong(index, VALUE_OFFSET, value);
+      return value;
+    }
+    insertAt(-index - 1, key, delta, hash);
+    return delta;
+  }
+
+  /**
+   * @return the value mapped to key, or defaultValue when key is not stored
+   */
+  public long getOrDefault(byte[] key, long defaultValue) {
+    int index = probe(key, hash(key));
+    return index < 0 ? defaultValue : slots.getLong(index, VALUE_OFFSET);
+  }
+
+  @Override
+  public boolean containsKey(byte[] key) {
+    checkOpen();
+    return key != null && key.length == keyWidth && probe(key, hash(key)) >= 0;
+  }
+
+  @Override
+  public Long get(byte[] key) throws NoSuchElementException {
+    int index = findIndex(key);
+    if (index < 0) {
+      throw new NoSuchElementException();
+    }
+    return slots.getLong(index, VALUE_OFFSET);
+  }
+
+  @Override
+  public Long remove(byte[] key) throws NoSuchElementException {
+    int index = findIndex(key);
+    if (index < 0) {
+      throw new NoSuchElementException();
+    }
+    long value = slots.getLong(index, VALUE_OFFSET);
+    shiftBackward(index);
+    size--;
+    return value;
+  }
+
+  @Override
+  public void clear() {
+    checkOpen();
+    int capacity = slots.getSlotCount();
+    slots.release();
+    slots = new OffHeapSlots(capacity, slotWidth);
+    size = 0;
+  }
+
+  @Override
+  public int getSize() {
+    checkOpen();
+    return size;
+  }
+
+  @Override
+  public int getCapacity() {
+    checkOpen();
+    return slots.getSlotCount();
+  }
+
+  /**
+   * Traverses the mappings, copying every key into a new array.
+   */
+  @Override
+  public Spliterator<Map.Entry<byte[], Long>> entrySpliterator() {
+    checkOpen();
+    OffHeapSlots s = slots;
+    return new TableSpliterator<>(i -> s.getInt(i, HASH_OFFSET) != 0, i -> {
+      byte[] key = new byte[keyWidth];
+      s.getBytes(i, KEY_OFFSET, key);
+      return new AbstractMap.SimpleImmutableEntry<>(key, s.getLong(i, VALUE_OFFSET));
+    }, 0, s.getSlotCount(), size, Spliterator.DISTINCT | Spliterator.NONNULL);
+  }
+
+  public int getKeyWidth() {
+    return keyWidth;
+  }
+
+  /**
+   * @return the number of bytes this map currently holds outside the heap
+   */
+  public long getOffHeapBytes() {
+    return slots == null ? 0L : slots.getByteSize();
+  }
+
+  /**
+   * Releases the off-heap slots. Calling close again has no effect.
+   */
+  @Override
+  public void close() {
+    if (slots != null) {
+      slots.release();
+      slots = null;
+      size = 0;
+    }
+  }
+
+  private void checkOpen() {
+    if (slots == null) {
+      throw new IllegalStateException("map is closed");
+    }
+  }
+
+  /**
+   * @return the index of key's slot, or -1 when key is null, of the wrong width or not stored
+   */
+  private int findIndex(byte[] key) {
+    checkOpen();
+    if (key == null || key.length != keyWidth) {
+      return -1;
+    }
+    int index = probe(key, hash(key));
+    return index < 0 ? -1 : index;
+  }
+
+  /**
+   * Hashes the key bytes with FNV-1a and finishes with a multiplicative mix.
+   *
+   * @return a non-zero hash of key
+   * @throws IllegalArgumentException when key is null or not keyWidth bytes long
+   */
+  private int hash(byte[] key) {
+    checkOpen();
+    if (key == null || key.length != keyWidth) {
+      throw new IllegalArgumentException();
+    }
+    int hash = 0x811C9DC5;
+    for (byte b : key) {
+      hash = (hash ^ b) * 0x01000193;
+    }
+    hash *= 0x9E3779B9;
+    hash ^= hash >>> 16;
+    return hash == 0 ? 1 : hash;
+  }
+
+  /**
+   * @return the index of key's slot, or -(slot + 1) where slot is the empty slot that ended the
+   *         probe sequence
+   */
+  private int probe(byte[] key, int hash) {
+    int mask = slots.getSlotCount() - 1;
+    int index = hash & mask;
+    int stored;
+    while ((stored = slots.getInt(index, HASH_OFFSET)) != 0) {
+      if (stored == hash && slots.equalsBytes(index, KEY_OFFSET, key)) {
+        return index;
+      }
+      index = (index + 1) & mask;
+    }
+    return -index - 1;
+  }
+
+  private void insertAt(int slot, byte[] key, long value, int hash) {
+    slots.putInt(slot, HASH_OFFSET, hash);
+    slots.putLong(slot, VALUE_OFFSET, value);
+    slots.putBytes(slot, KEY_OFFSET, key);
+    size++;
+    if ((double) size >= slots.getSlotCount() * LOAD_FACTOR_THRESHOLD) {
+      resizeTable();
+    }
+  }
+
+  /**
+   * Empties the slot at index and moves later entries of the same cluster back into the gap when
+   * their home slot is not between the gap and their current slot.
+   */
+  private void shiftBackward(int index) {
+    int mask = slots.getSlotCount() - 1;
+    int next = (index + 1) & mask;
+    int hash;
+    while ((hash = slots.getInt(next, HASH_OFFSET)) != 0) {
+      int home = hash & mask;
+      if (((next - home) & mask) >= ((next - index) & mask)) {
+        slots.copySlot(next, index);
+        index = next;
+      }
+      next = (next + 1) & mask;
+    }
+    slots.putInt(index, HASH_OFFSET, 0);
+  }
+
+  private void resizeTable() {
+    OffHeapSlots oldSlots = slots;
+    slots = new OffHeapSlots(oldSlots.getSlotCount() * 2, slotWidth);
+
+    int mask = slots.getSlotCount() - 1;
+    byte[] key = new byte[keyWidth];
+    for (int i = 0; i < oldSlots.getSlotCount(); i++) {
+      int hash = oldSlots.getInt(i, HASH_OFFSET);
+      if (hash != 0) {
+        int index = hash & mask;
+        while (slots.getInt(index, HASH_OFFSET) != 0) {
+          index = (index + 1) & mask;
+        }
+        oldSlots.getBytes(i, KEY_OFFSET, key);
+        slots.putInt(index, HASH_OFFSET, hash);
+        slots.putLong(index, VALUE_OFFSET, oldSlots.getLong(i, VALUE_OFFSET));
+        slots.putBytes(index, KEY_OFFSET, key);
+      }
+    }
+    oldSlots.release();
+  }
+}
@@ -0,0 +1,349 @@
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Hashtable from long keys to long values whose slots live outside the Java heap, so even a table
+ * of hundreds of millions of entries adds almost nothing for the garbage collector to trace or
+ * copy. It uses the same linear probing and backward-shift removal as LongLongHashtableMap, with
+ * each slot holding a key and a value in 16 bytes of direct memory.
+ *
+ * The primitive get, put, remove and addTo methods never allocate and report absent keys through
+ * the no-entry value. The MapADT methods box their arguments and throw like other MapADT
+ * implementations. After close, every operation throws IllegalStateException.
+ */
+public class OffHeapLongLongHashtableMap implements MapADT<Long, Long>, AutoCloseable {
+
+  private static final int DEFAULT_CAPACITY = 1024;
+  private static final double LOAD_FACTOR_THRESHOLD = 0.7;
+  private static final int SLOT_WIDTH = 16;
+  private static final int KEY_OFFSET = 0;
+  private static final int VALUE_OFFSET = 8;
+
+  private final long noEntryValue;
+  private OffHeapSlots slots;
+  private int size;
+  // the key 0 marks empty slots, so its mapping is kept on the heap
+  private boolean hasZeroKey;
+  private long zeroValue;
+
+  /**
+   * @param capacity     initial number of slots, rounded up to a power of two
+   * @param noEntryValue value returned by get, put and remove for keys that are not stored
+   */
+  public OffHeapLongLongHashtableMap(int capacity, long noEntryValue) {
+    this.noEntryValue = noEntryValue;
+    slots = new OffHeapSlots(Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1, SLOT_WIDTH);
+    size = 0;
+  }
+
+  public OffHeapLongLongHashtableMap() {
+    this(DEFAULT_CAPACITY, 0L);
+  }
+
+  /**
+   * Maps key to value, replacing any previous mapping for key.
+   *
+   * @return the value previously mapped to key, or the no-entry value when there was none
+   */
+  public long put(long key, long value) {
+    checkOpen();
+    if (key == 0) {
+      long previous = hasZeroKey ? zeroValue : noEntryValue;
+      zeroValue = value;
+      if (!hasZeroKey) {
+        hasZeroKey = true;
+        size++;
+      }
+      return previous;
+    }
+
+    int index = probe(key);
+    if (index >= 0) {
+      long previous = slots.getLong(index, VALUE_OFFSET);
+      slots.putLong(index, VALUE_OFFSET, value);
+      return previous;
+    }
+    insertAt(-index - 1, key, value);
+    return noEntryValue;
+  }
+
+  /**
+   * Adds delta to the value mapped to key, treating an absent key as mapped to 0, using a single
+   * probe of the table.
+   *
+   * @return the value mapped to key after the addition
+   */
+  public long addTo(long key, long delta) {
+    checkOpen();
+    if (key == 0) {
+      zeroValue = (hasZeroKey ? zeroValue : 0L) + delta;
+      if (!hasZeroKey) {
+        hasZeroKey = true;
+        size++;
+      }
+      return zeroValue;
+    }
+
+    int index = probe(key);
+    if (index >= 0) {
+      long value = slots.getLong(index, VALUE_OFFSET) + delta;
+      slots.putLong(index, VALUE_OFFSET, value);
+      return value;
+    }
+    insertAt(-index - 1, key, delta);
+    return delta;
+  }
+
+  /**
+   * @return the value mapped to key, or the no-entry value when key is not stored
+   */
+  public long get(long key) {
+    return getOrDefault(key, noEntryValue);
+  }
+
+  /**
+   * @return the value mapped to key, or defaultValue when key is not stored
+   */
+  public long getOrDefault(long key, long defaultValue) {
+    checkOpen();
+    if (key == 0) {
+      return hasZeroKey ? zeroValue : defaultValue;
+    }
+    int index = probe(key);
+    return index < 0 ? defaultValue : slots.getLong(index, VALUE_OFFSET);
+  }
+
+  public boolean containsKey(long key) {
+    checkOpen();
+    return key == 0 ? hasZeroKey : probe(key) >= 0;
+  }
+
+  /**
+   * Removes the mapping for key if there is one.
+   *
+   * @return the value that was mapped to key, or the no-entry value when key was not stored
+   */
+  public long remove(long key) {
+    checkOpen();
+    if (key == 0) {
+      long previous = hasZeroKey ? zeroValue : noEntryValue;
+      if (hasZeroKey) {
+        hasZeroKey = false;
+        size--;
+      }
+      return previous;
+    }
+
+    int index = probe(key);
+    if (index < 0) {
+      return noEntryValue;
+    }
+    long previous = slots.getLong(index, VALUE_OFFSET);
+    shiftBackward(index);
+    size--;
+    return previous;
+  }
+
+  @Override
+  public void put(Long key, Long value) throws IllegalArgumentException {
+    if (key == null || value == null || containsKey(key.longValue())) {
+      throw new IllegalArgumentException();
+    }
+    put(key.longValue(), value.longValue());
+  }
+
+  @Override
+  public boolean containsKey(Long key) {
+    return key != null && containsKey(key.longValue());
+  }
+
+  @Override
+  public Long get(Long key) throws NoSuchElementException {
+    if (!containsKey(key)) {
+      throw new NoSuchElementException();
+    }
+    return get(key.longValue());
+  }
+
+  @Override
+  public Long remove(Long key) throws NoSuchElementException {
+    if (!containsKey(key)) {
+      throw new NoSuchElementException();
+    }
+    return remove(key.longValue());
+  }
+
+  @Override
+  public void clear() {
+    checkOpen();
+    int capacity = slots.getSlotCount();
+    slots.release();
+    slots = new OffHeapSlots(capacity, SLOT_WIDTH);
+    hasZeroKey = false;
+    size = 0;
+  }
+
+  @Override
+  public int getSize() {
+    checkOpen();
+    return size;
+  }
+
+  @Override
+  public int getCapacity() {
+    checkOpen();
+    return slots.getSlotCount();
+  }
+
+  /**
+   * Traverses the mappings as boxed pairs. keyStream and valueStream avoid the boxing.
+   */
+  @Override
+  public Spliterator<Map.Entry<Long, Long>> entrySpliterator() {
+    checkOpen();
+    OffHeapSlots s = slots;
+    Spliterator<Map.Entry<Long, Long>> table = new TableSpliterator<>(
+        i -> s.getLong(i, KEY_OFFSET) != 0,
+        i -> new AbstractMap.SimpleImmutableEntry<>(s.getLong(i, KEY_OFFSET),
+            s.getLong(i, VALUE_OFFSET)),
+        0, s.getSlotCount(), size, Spliterator.DISTINCT | Spliterator.NONNULL);
+    if (!hasZeroKey) {
+      return table;
+    }
+    Map.Entry<Long, Long> zero = new AbstractMap.SimpleImmutableEntry<>(0L, zeroValue);
+    return Stream.concat(Stream.of(zero), StreamSupport.stream(table, false)).spliterator();
+  }
+
+  /**
+   * @return the keys, read straight from off-heap memory; call parallel() to split by slot range
+   */
+  public LongStream keyStream() {
+    checkOpen();
+    OffHeapSlots s = slots;
+    LongStream table = StreamSupport.longStream(new TableSpliterator.OfLong(
+        i -> s.getLong(i, KEY_OFFSET) != 0, i -> s.getLong(i, KEY_OFFSET), 0, s.getSlotCount(),
+        size, Spliterator.DISTINCT), false);
+    return hasZeroKey ? LongStream.concat(LongStream.of(0L), table) : table;
+  }
+
+  /**
+   * @return the values, read straight from off-heap memory; call parallel() to split by slot range
+   */
+  public LongStream valueStream() {
+    checkOpen();
+    OffHeapSlots s = slots;
+    LongStream table = StreamSupport.longStream(new TableSpliterator.OfLong(
+        i -> s.getLong(i, KEY_OFFSET) != 0, i -> s.getLong(i, VALUE_OFFSET), 0, s.getSlotCount(),
+        size, 0), false);
+    return hasZeroKey ? LongStream.concat(LongStream.of(zeroValue), table) : table;
+  }
+
+  /**
+   * @return the number of bytes this map currently holds outside the heap
+   */
+  public long getOffHeapBytes() {
+    return slots == null ? 0L : slots.getByteSize();
+  }
+
+  /**
+   * @return the no-entry value this map reports for absent keys
+   */
+  public long getNoEntryValue() {
+    return noEntryValue;
+  }
+
+  /**
+   * Releases the off-heap slots. Calling close again has no effect.
+   */
+  @Override
+  public void close() {
+    if (slots != null) {
+      slots.release();
+      slots = null;
+      size = 0;
+    }
+  }
+
+  private void checkOpen() {
+    if (slots == null) {
+      throw new IllegalStateException("map is closed");
+    }
+  }
+
+  /**
+   * @return the index of key's slot, or -(slot + 1) where slot is the empty slot that ended the
+   *         probe sequence
+   */
+  private int probe(long key) {
+    int mask = slots.getSlotCount() - 1;
+    int index = getIndex(key, mask);
+    long stored;
+    while ((stored = slots.getLong(index, KEY_OFFSET)) != 0) {
+      if (stored == key) {
+        return index;
+      }
+      index = (index + 1) & mask;
+    }
+    return -index - 1;
+  }
+
+  private void insertAt(int slot, long key, long value) {
+    slots.putLong(slot, KEY_OFFSET, key);
+    slots.putLong(slot, VALUE_OFFSET, value);
+    size++;
+    if ((double) size >= slots.getSlotCount() * LOAD_FACTOR_THRESHOLD) {
+      resizeTable();
+    }
+  }
+
+  /**
+   * Spreads the key with a multiplicative hash so sequential ids do not fill neighbouring slots.
+   */
+  private static int getIndex(long key, int mask) {
+    long hash = key * 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ (hash >>> 32)) & mask;
+  }
+
+  /**
+   * Empties the slot at index and moves later entries of the same cluster back into the gap when
+   * their home slot is not between the gap and their current slot.
+   */
+  private void shiftBackward(int index) {
+    int mask = slots.getSlotCount() - 1;
+    int next = (index + 1) & mask;
+    long key;
+    while ((key = slots.getLong(next, KEY_OFFSET)) != 0) {
+      int home = getIndex(key, mask);
+      if (((next - home) & mask) >= ((next - index) & mask)) {
+        slots.copySlot(next, index);
+        index = next;
+      }
+      next = (next + 1) & mask;
+    }
+    slots.putLong(index, KEY_OFFSET, 0L);
+  }
+
+  private void resizeTable() {
+    OffHeapSlots oldSlots = slots;
+    slots = new OffHeapSlots(oldSlots.getSlotCount() * 2, SLOT_WIDTH);
+
+    int mask = slots.getSlotCount() - 1;
+    for (int i = 0; i < oldSlots.getSlotCount(); i++) {
+      long key = oldSlots.getLong(i, KEY_OFFSET);
+      if (key != 0) {
+        int index = getIndex(key, mask);
+        while (slots.getLong(index, KEY_OFFSET) != 0) {
+          index = (index + 1) & mask;
+        }
+        slots.putLong(index, KEY_OFFSET, key);
+        slots.putLong(index, VALUE_OFFSET, oldSlots.getLong(i, VALUE_OFFSET));
+      }
+    }
+    oldSlots.release();
+  }
+}
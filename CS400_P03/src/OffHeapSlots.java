@@ -0,0 +1,147 @@
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Fixed-width slots stored outside the Java heap in direct ByteBuffers. A single buffer is limited
+ * to 2GB, so the slots are spread over chunks of a power-of-two number of slots each, and a slot
+ * index is split into a chunk number and a slot within that chunk. Slots start out zeroed.
+ */
+class OffHeapSlots {
+
+  // largest size of a single chunk, comfortably below the 2GB limit of a ByteBuffer
+  private static final int MAX_CHUNK_BYTES = 1 << 30;
+  // frees a direct buffer's memory right away, or null when the JDK does not offer it
+  private static final MethodHandle INVOKE_CLEANER = findCleaner();
+
+  private final int slotWidth;
+  private final int chunkShift;
+  private final int chunkMask;
+  private final int slotCount;
+  private ByteBuffer[] chunks;
+
+  /**
+   * @param slotCount number of slots, a power of two
+   * @param slotWidth size of each slot in bytes
+   */
+  OffHeapSlots(int slotCount, int slotWidth) {
+    int slotsPerChunk = Math.min(slotCount, Integer.highestOneBit(MAX_CHUNK_BYTES / slotWidth));
+    this.slotWidth = slotWidth;
+    this.slotCount = slotCount;
+    chunkShift = Integer.numberOfTrailingZeros(slotsPerChunk);
+    chunkMask = slotsPerChunk - 1;
+    chunks = new ByteBuffer[slotCount / slotsPerChunk];
+    for (int i = 0; i < chunks.length; i++) {
+      chunks[i] = ByteBuffer.allocateDirect(slotsPerChunk * slotWidth).order(ByteOrder.nativeOrder());
+    }
+  }
+
+  int getSlotCount() {
+    return slotCount;
+  }
+
+  /**
+   * @return the number of bytes held outside the heap by these slots
+   */
+  long getByteSize() {
+    return (long) slotCount * slotWidth;
+  }
+
+  long getLong(int slot, int offset) {
+    return chunks[slot >>> chunkShift].getLong((slot & chunkMask) * slotWidth + offset);
+  }
+
+  void putLong(int slot, int offset, long value) {
+    chunks[slot >>> chunkShift].putLong((slot & chunkMask) * slotWidth + offset, value);
+  }
+
+  int getInt(int slot, int offset) {
+    return chunks[slot >>> chunkShift].getInt((slot & chunkMask) * slotWidth + offset);
+  }
+
+  void putInt(int slot, int offset, int value) {
+    chunks[slot >>> chunkShift].putInt((slot & chunkMask) * slotWidth + offset, value);
+  }
+
+  void getBytes(int slot, int offset, byte[] destination) {
+    chunks[slot >>> chunkShift].get((slot & chunkMask) * slotWidth + offset, destination);
+  }
+
+  void putBytes(int slot, int offset, byte[] source) {
+    chunks[slot >>> chunkShift].put((slot & chunkMask) * slotWidth + offset, source);
+  }
+
+  /**
+   * @return true when the bytes stored at offset within slot equal bytes
+   */
+  boolean equalsBytes(int slot, int offset, byte[] bytes) {
+    ByteBuffer chunk = chunks[slot >>> chunkShift];
+    int position = (slot & chunkMask) * slotWidth + offset;
+    for (int i = 0; i < bytes.length; i++) {
+      if (chunk.get(position + i) != bytes[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Overwrites slot to with the contents of slot from.
+   */
+  void copySlot(int from, int to) {
+    ByteBuffer source = chunks[from >>> chunkShift];
+    ByteBuffer target = chunks[to >>> chunkShift];
+    target.put((to & chunkMask) * slotWidth, source, (from & chunkMask) * slotWidth, slotWidth);
+  }
+
+  /**
+   * Returns the memory of the buffers to the system at once through the JDK's
+   * sun.misc.Unsafe.invokeCleaner, instead of waiting for the garbage collector to find them
+   * unreachable, which may not happen before the next multi-GB allocation fails. On a JDK without
+   * it, the buffers are only dropped and freed by the collector. The chunk references are
+   * cleared first, so any later access through these slots fails with a NullPointerException
+   * instead of touching freed memory.
+   */
+  void release() {
+    ByteBuffer[] released = chunks;
+    chunks = null;
+    if (released == null || INVOKE_CLEANER == null) {
+      return;
+    }
+    for (ByteBuffer chunk : released) {
+      try {
+        INVOKE_CLEANER.invokeExact(chunk);
+      } catch (Throwable e) {
+        throw new IllegalStateException("could not free off-heap memory", e);
+      }
+    }
+  }
+
+  /**
+   * @return true when release frees the memory at once rather than leaving it to the collector
+   */
+  static boolean freesOnRelease() {
+    return INVOKE_CLEANER != null;
+  }
+
+  /**
+   * Looks up Unsafe.invokeCleaner, bound to the Unsafe instance, by reflection so that nothing
+   * outside the jdk.unsupported module is needed at compile time.
+   */
+  private static MethodHandle findCleaner() {
+    try {
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Field field = unsafeClass.getDeclaredField("theUnsafe");
+      field.setAccessible(true);
+      return MethodHandles.lookup()
+          .findVirtual(unsafeClass, "invokeCleaner",
+              MethodType.methodType(void.class, ByteBuffer.class))
+          .bindTo(field.get(null));
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,394 @@
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.stream.StreamSupport;
+
+/**
+ * MapADT that can hold its keys or values through weak or soft references, so the garbage
+ * collector rather than the map decides how long they stay. With weak keys a mapping goes away
+ * once nothing else uses its key; with soft values it goes away when the collector needs the
+ * memory of its value. A mapping whose key or value has been collected behaves as if it had been
+ * removed.
+ *
+ * The table is a Robin Hood hashtable like RobinHoodHashtableMap, and every reference the map
+ * creates is registered with one ReferenceQueue. Each operation first takes up to PURGE_BATCH of
+ * the collected references from the queue and reclaims their slots by backward-shift deletion,
+ * spreading the work over the operations and leaving no tombstones behind. A lookup that meets a
+ * collected mapping before its turn comes reclaims it on the spot. getSize may include collected
+ * mappings that are not reclaimed yet; cleanUp reclaims them.
+ */
+public class ReferenceHashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueType> {
+
+  /**
+   * How strongly the map holds its keys or its values.
+   */
+  public enum Strength {
+    // held like in any other map
+    STRONG,
+    // collected once no strong reference to them remains
+    WEAK,
+    // collected when the collector runs short of memory and no strong reference remains
+    SOFT
+  }
+
+  private static final int DEFAULT_CAPACITY = 8;
+  private static final double LOAD_FACTOR_THRESHOLD = 0.7;
+  // collected references reclaimed by each operation
+  private static final int PURGE_BATCH = 16;
+  // returned by valueAt for a mapping whose value has been collected
+  private static final Object COLLECTED = new Object();
+
+  private final Strength keyStrength;
+  private final Strength valueStrength;
+  private final HashStrategy<? super KeyType> strategy;
+  private final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+  // keys and values as stored: the objects themselves, or references to them
+  private Object[] keys;
+  private Object[] values;
+  private int[] hashes;
+  private int size;
+
+  /**
+   * @param keyStrength   how the keys are held
+   * @param valueStrength how the values are held
+   * @param strategy      hashes and compares the keys
+   */
+  public ReferenceHashtableMap(Strength keyStrength, Strength valueStrength,
+      HashStrategy<? super KeyType> strategy) {
+    if (keyStrength == null || valueStrength == null || strategy == null) {
+      throw new IllegalArgumentException();
+    }
+    this.keyStrength = keyStrength;
+    this.valueStrength = valueStrength;
+    this.strategy = strategy;
+    keys = new Object[DEFAULT_CAPACITY];
+    values = new Object[DEFAULT_CAPACITY];
+    hashes = new int[DEFAULT_CAPACITY];
+  }
+
+  public ReferenceHashtableMap(Strength keyStrength, Strength valueStrength) {
+    this(keyStrength, valueStrength, HashStrategy.defaultStrategy());
+  }
+
+  /**
+   * @return a map whose mappings go away with their keys, comparing the keys by equals like
+   *         java.util.WeakHashMap
+   */
+  public static <K, V> ReferenceHashtableMap<K, V> weakKeys() {
+    return new ReferenceHashtableMap<>(Strength.WEAK, Strength.STRONG);
+  }
+
+  /**
+   * @return a map whose values are dropped under memory pressure, for caches of values that can
+   *         be computed again
+   */
+  public static <K, V> ReferenceHashtableMap<K, V> softValues() {
+    return new ReferenceHashtableMap<>(Strength.STRONG, Strength.SOFT);
+  }
+
+  @Override
+  public void put(KeyType key, ValueType value) throws IllegalArgumentException {
+    if (key == null) {
+      throw new IllegalArgumentException();
+    }
+    purge(PURGE_BATCH);
+    int hash = strategy.hash(key);
+    int index = findIndex(key, hash);
+    if (index >= 0 && valueAt(index) != COLLECTED) {
+      throw new IllegalArgumentException();
+    }
+
+    RobinHoodHashtableMap.insert(keys, values, hashes, wrap(key, keyStrength, hash),
+        wrap(value, valueStrength, hash), hash);
+    size++;
+
+    if ((double) size >= keys.length * LOAD_FACTOR_THRESHOLD) {
+      resizeTable();
+    }
+  }
+
+  @Override
+  public boolean containsKey(KeyType key) {
+    if (key == null) {
+      return false;
+    }
+    purge(PURGE_BATCH);
+    int index = findIndex(key, strategy.hash(key));
+    return index >= 0 && valueAt(index) != COLLECTED;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public ValueType get(KeyType key) throws NoSuchElementException {
+    int index = locate(key);
+    Object value = index < 0 ? COLLECTED : valueAt(index);
+    if (value == COLLECTED) {
+      throw new NoSuchElementException();
+    }
+    return (ValueType) value;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public ValueType remove(KeyType key) throws NoSuchElementException {
+    int index = locate(key);
+    Object value = index < 0 ? COLLECTED : valueAt(index);
+    if (value == COLLECTED) {
+      throw new NoSuchElementException();
+    }
+    reclaim(index);
+    return (ValueType) value;
+  }
+
+  @Override
+  public void clear() {
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = null;
+      values[i] = null;
+    }
+    size = 0;
+    // references collected before now no longer match any slot
+    Reference<?> reference;
+    do {
+      reference = queue.poll();
+    } while (reference != null);
+  }
+
+  /**
+   * @return the number of mappings, including collected ones that are not reclaimed yet
+   */
+  @Override
+  public int getSize() {
+    return size;
+  }
+
+  @Override
+  public int getCapacity() {
+    return keys.length;
+  }
+
+  public Strength getKeyStrength() {
+    return keyStrength;
+  }
+
+  public Strength getValueStrength() {
+    return valueStrength;
+  }
+
+  /**
+   * Reclaims every mapping whose key or value has been collected and queued by the collector. This
+   * costs time in proportion to the number of collected mappings, not to the size of the map.
+   */
+  public void cleanUp() {
+    purge(Integer.MAX_VALUE);
+  }
+
+  /**
+   * Traverses the mappings whose key and value are both still reachable. Entries are new
+   * immutable pairs holding strong references.
+   */
+  @Override
+  public Spliterator<Map.Entry<KeyType, ValueType>> entrySpliterator() {
+    purge(PURGE_BATCH);
+    Object[] k = keys;
+    Object[] v = values;
+    return StreamSupport.stream(new TableSpliterator<>(i -> k[i] != null, i -> entryAt(k, v, i), 0,
+        k.length, size, Spliterator.DISTINCT | Spliterator.NONNULL), false)
+        .filter(Objects::nonNull).spliterator();
+  }
+
+  /**
+   * @return the mapping at slot i as a pair, or null when its key or value has been collected
+   */
+  @SuppressWarnings("unchecked")
+  private Map.Entry<KeyType, ValueType> entryAt(Object[] k, Object[] v, int i) {
+    KeyType key = (KeyType) unwrap(k[i], keyStrength);
+    ValueType value = (ValueType) unwrap(v[i], valueStrength);
+    if (key == null || (value == null && v[i] != null && valueStrength != Strength.STRONG)) {
+      return null;
+    }
+    return new AbstractMap.SimpleImmutableEntry<>(key, value);
+  }
+
+  /**
+   * Purges a batch of collected references and finds key.
+   *
+   * @return the slot of key, or -1 when key is null or not mapped
+   */
+  private int locate(KeyType key) {
+    if (key == null) {
+      return -1;
+    }
+    purge(PURGE_BATCH);
+    return findIndex(key, strategy.hash(key));
+  }
+
+  /**
+   * Finds the slot holding a mapping of key like RobinHoodHashtableMap does. Slots whose key has
+   * been collected still take part in probing, since they keep their place in the Robin Hood order
+   * until they are reclaimed. The value of the slot may have been collected; valueAt tells.
+   *
+   * @return the slot index, or -1 when key is not mapped
+   */
+  @SuppressWarnings("unchecked")
+  private int findIndex(KeyType key, int hash) {
+    int length = keys.length;
+    int index = RobinHoodHashtableMap.getIndex(hash, length);
+
+    for (int distance = 0; distance < length; distance++) {
+      if (keys[index] == null
+          || RobinHoodHashtableMap.probeDistance(hashes[index], index, length) < distance) {
+        return -1;
+      }
+      if (hashes[index] == hash) {
+        KeyType stored = (KeyType) unwrap(keys[index], keyStrength);
+        if (stored != null && strategy.equals(key, stored)) {
+          return index;
+        }
+      }
+      index = (index + 1) % length;
+    }
+    return -1;
+  }
+
+  /**
+   * Dereferences the value at index once, so the collector cannot clear it between a check and
+   * its use. A mapping whose value has been collected is reclaimed.
+   *
+   * @return the value, or COLLECTED when it has been collected
+   */
+  private Object valueAt(int index) {
+    Object stored = values[index];
+    Object value = unwrap(stored, valueStrength);
+    if (value == null && stored != null) {
+      reclaim(index);
+      return COLLECTED;
+    }
+    return value;
+  }
+
+  /**
+   * Takes up to limit references off the queue and reclaims the slots still holding them.
+   */
+  private void purge(int limit) {
+    Reference<?> reference;
+    for (int i = 0; i < limit && (reference = queue.poll()) != null; i++) {
+      int index = slotOf(reference);
+      if (index >= 0) {
+        reclaim(index);
+      }
+    }
+  }
+
+  /**
+   * @return the slot whose key or value is reference, or -1 when that slot has been reclaimed
+   *         already, e.g. because both its key and its value were collected
+   */
+  private int slotOf(Reference<?> reference) {
+    int hash = ((Hashed) reference).hash();
+    int length = keys.length;
+    int index = RobinHoodHashtableMap.getIndex(hash, length);
+
+    for (int distance = 0; distance < length; distance++) {
+      if (keys[index] == null
+          || RobinHoodHashtableMap.probeDistance(hashes[index], index, length) < distance) {
+        return -1;
+      }
+      if (keys[index] == reference || values[index] == reference) {
+        return index;
+      }
+      index = (index + 1) % length;
+    }
+    return -1;
+  }
+
+  private void reclaim(int index) {
+    RobinHoodHashtableMap.shiftBackward(keys, values, hashes, index);
+    size--;
+  }
+
+  /**
+   * Doubles the table, leaving out the mappings that have been collected meanwhile.
+   */
+  private void resizeTable() {
+    Object[] oldKeys = keys;
+    Object[] oldValues = values;
+    int[] oldHashes = hashes;
+    keys = new Object[oldKeys.length * 2];
+    values = new Object[oldKeys.length * 2];
+    hashes = new int[oldKeys.length * 2];
+
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != null) {
+        if (isCollected(oldKeys[i], keyStrength) || isCollected(oldValues[i], valueStrength)) {
+          size--;
+        } else {
+          RobinHoodHashtableMap.insert(keys, values, hashes, oldKeys[i], oldValues[i],
+              oldHashes[i]);
+        }
+      }
+    }
+  }
+
+  /**
+   * @return object as it is stored for strength: itself, or a reference to it carrying hash. Null
+   *         values are stored as null, since there is nothing to collect.
+   */
+  private Object wrap(Object object, Strength strength, int hash) {
+    if (object == null || strength == Strength.STRONG) {
+      return object;
+    }
+    return strength == Strength.WEAK ? new WeakSlot(object, hash, queue)
+        : new SoftSlot(object, hash, queue);
+  }
+
+  private static Object unwrap(Object stored, Strength strength) {
+    return stored == null || strength == Strength.STRONG ? stored : ((Reference<?>) stored).get();
+  }
+
+  private static boolean isCollected(Object stored, Strength strength) {
+    return stored != null && strength != Strength.STRONG && ((Reference<?>) stored).get() == null;
+  }
+
+  /**
+   * A reference the map created, carrying the hash of its mapping's key so the purge can find the
+   * slot that holds it without the referent.
+   */
+  private interface Hashed {
+    int hash();
+  }
+
+  private static class WeakSlot extends WeakReference<Object> implements Hashed {
+    private final int hash;
+
+    WeakSlot(Object referent, int hash, ReferenceQueue<Object> queue) {
+      super(referent, queue);
+      this.hash = hash;
+    }
+
+    @Override
+    public int hash() {
+      return hash;
+    }
+  }
+
+  private static class SoftSlot extends SoftReference<Object> implements Hashed {
+    private final int hash;
+
+    SoftSlot(Object referent, int hash, ReferenceQueue<Object> queue) {
+      super(referent, queue);
+      this.hash = hash;
+    }
+
+    @Override
+    public int hash() {
+      return hash;
+    }
+  }
+}
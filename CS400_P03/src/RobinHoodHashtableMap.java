@@ -0,0 +1,260 @@
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.IntPredicate;
+
+/**
+ * Open-addressing hashtable that uses Robin Hood linear probing: an insertion that has travelled
+ * further from its home slot than the resident of a slot takes that slot and carries the resident
+ * onward. This keeps the variance of probe lengths low and lets lookups stop as soon as they reach
+ * a slot whose resident is closer to home than the key being searched for. Removals use
+ * backward-shift deletion instead of tombstones, so the table never fills up with dead slots.
+ */
+public class RobinHoodHashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueType> {
+
+  private static final int DEFAULT_CAPACITY = 8;
+  private static final double LOAD_FACTOR_THRESHOLD = 0.7;
+
+  private Object[] keys;
+  private Object[] values;
+  private int[] hashes;
+  private int size;
+
+  public RobinHoodHashtableMap(int capacity) {
+    keys = new Object[capacity];
+    values = new Object[capacity];
+    hashes = new int[capacity];
+    size = 0;
+  }
+
+  public RobinHoodHashtableMap() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  @Override
+  public void put(KeyType key, ValueType value) throws IllegalArgumentException {
+    if (key == null || findIndex(key) >= 0) {
+      throw new IllegalArgumentException();
+    }
+
+    insert(keys, values, hashes, key, value, key.hashCode());
+    size++;
+
+    if ((double) size >= keys.length * LOAD_FACTOR_THRESHOLD) {
+      resizeTable();
+    }
+  }
+
+  @Override
+  public boolean containsKey(KeyType key) {
+    return key != null && findIndex(key) >= 0;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public ValueType get(KeyType key) throws NoSuchElementException {
+    int index = key == null ? -1 : findIndex(key);
+    if (index < 0) {
+      throw new NoSuchElementException();
+    }
+    return (ValueType) values[index];
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public ValueType remove(KeyType key) throws NoSuchElementException {
+    int index = key == null ? -1 : findIndex(key);
+    if (index < 0) {
+      throw new NoSuchElementException();
+    }
+    ValueType value = (ValueType) values[index];
+    shiftBackward(keys, values, hashes, index);
+    size--;
+    return value;
+  }
+
+  @Override
+  public void clear() {
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = null;
+      values[i] = null;
+    }
+    size = 0;
+  }
+
+  @Override
+  public int getSize() {
+    return size;
+  }
+
+  @Override
+  public int getCapacity() {
+    return keys.length;
+  }
+
+  /**
+   * Splits the table by slot range. The table keeps no entry objects, so every entry is a new
+   * immutable pair; keySpliterator and valueSpliterator read the arrays without allocating.
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public Spliterator<Map.Entry<KeyType, ValueType>> entrySpliterator() {
+    Object[] k = keys;
+    Object[] v = values;
+    return new TableSpliterator<>(occupied(k),
+        i -> new AbstractMap.SimpleImmutableEntry<>((KeyType) k[i], (ValueType) v[i]), 0, k.length,
+        size, Spliterator.DISTINCT | Spliterator.NONNULL);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public Spliterator<KeyType> keySpliterator() {
+    Object[] k = keys;
+    return new TableSpliterator<>(occupied(k), i -> (KeyType) k[i], 0, k.length, size,
+        Spliterator.DISTINCT | Spliterator.NONNULL);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public Spliterator<ValueType> valueSpliterator() {
+    Object[] k = keys;
+    Object[] v = values;
+    return new TableSpliterator<>(occupied(k), i -> (ValueType) v[i], 0, k.length, size, 0);
+  }
+
+  /**
+   * Counts the slots a lookup of key inspects before it either finds the key or proves that it is
+   * absent. Used by tests to compare probe-length distributions between tables.
+   */
+  int probeLength(Object key) {
+    int hash = key.hashCode();
+    int index = getIndex(hash, keys.length);
+
+    for (int distance = 0; distance < keys.length; distance++) {
+      if (keys[index] == null || probeDistance(hashes[index], index, keys.length) < distance
+          || (hashes[index] == hash && keys[index].equals(key))) {
+        return distance + 1;
+      }
+      index = (index + 1) % keys.length;
+    }
+    return keys.length;
+  }
+
+  /**
+   * Finds the slot holding key. The search stops at the first empty slot or at the first resident
+   * that is closer to its home slot than the key would be, since Robin Hood insertion would have
+   * placed the key there.
+   *
+   * @return the slot index, or -1 when key is not stored in this table
+   */
+  private int findIndex(Object key) {
+    int hash = key.hashCode();
+    int index = getIndex(hash, keys.length);
+
+    for (int distance = 0; distance < keys.length; distance++) {
+      if (keys[index] == null || probeDistance(hashes[index], index, keys.length) < distance) {
+        return -1;
+      }
+      if (hashes[index] == hash && keys[index].equals(key)) {
+        return index;
+      }
+      index = (index + 1) % keys.length;
+    }
+    return -1;
+  }
+
+  private void resizeTable() {
+    Object[] oldKeys = keys;
+    Object[] oldValues = values;
+    int[] oldHashes = hashes;
+    keys = new Object[oldKeys.length * 2];
+    values = new Object[oldKeys.length * 2];
+    hashes = new int[oldKeys.length * 2];
+
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != null) {
+        insert(keys, values, hashes, oldKeys[i], oldValues[i], oldHashes[i]);
+      }
+    }
+  }
+
+  private static IntPredicate occupied(Object[] k) {
+    return i -> k[i] != null;
+  }
+
+  static int getIndex(int hash, int length) {
+    return (hash & 0x7fffffff) % length;
+  }
+
+  /**
+   * @return how many slots past its home slot an entry with this hash sits when stored at index
+   */
+  static int probeDistance(int hash, int index, int length) {
+    int distance = index - getIndex(hash, length);
+    return distance < 0 ? distance + length : distance;
+  }
+
+  /**
+   * Places a key that is known to be absent using Robin Hood displacement. The arrays must have at
+   * least one empty slot.
+   */
+  static void insert(Object[] keys, Object[] values, int[] hashes, Object key, Object value,
+      int hash) {
+    int length = keys.length;
+    int index = getIndex(hash, length);
+    int distance = 0;
+
+    while (keys[index] != null) {
+      int residentDistance = probeDistance(hashes[index], index, length);
+      if (residentDistance < distance) {
+        // the resident is richer than the entry being carried, so they trade places
+        Object residentKey = keys[index];
+        Object residentValue = values == null ? null : values[index];
+        int residentHash = hashes[index];
+        keys[index] = key;
+        if (values != null) {
+          values[index] = value;
+        }
+        hashes[index] = hash;
+        key = residentKey;
+        value = residentValue;
+        hash = residentHash;
+        distance = residentDistance;
+      }
+      index = (index + 1) % length;
+      distance++;
+    }
+
+    keys[index] = key;
+    if (values != null) {
+      values[index] = value;
+    }
+    hashes[index] = hash;
+  }
+
+  /**
+   * Empties the slot at index and shifts the following displaced entries one slot back towards
+   * their home slots, so no tombstone is left behind. The values array may be null for tables that
+   * store keys only.
+   */
+  static void shiftBackward(Object[] keys, Object[] values, int[] hashes, int index) {
+    int length = keys.length;
+    int next = (index + 1) % length;
+
+    while (keys[next] != null && probeDistance(hashes[next], next, length) > 0) {
+      keys[index] = keys[next];
+      if (values != null) {
+        values[index] = values[next];
+      }
+      hashes[index] = hashes[next];
+      index = next;
+      next = (next + 1) % length;
+    }
+
+    keys[index] = null;
+    if (values != null) {
+      values[index] = null;
+    }
+  }
+}
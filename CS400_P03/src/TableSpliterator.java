@@ -0,0 +1,248 @@
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+import java.util.function.IntToLongFunction;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongConsumer;
+
+/**
+ * Spliterator over a range of slot indexes of an open-addressing table. The table supplies a test
+ * that tells whether a slot holds a live mapping and a reader for the element at such a slot, and
+ * splitting hands the first half of the remaining range to a new spliterator. Elements that the
+ * table already stores as objects are passed on as they are, so traversal allocates nothing per
+ * element.
+ *
+ * The nested OfInt and OfLong variants read primitive keys or values the same way, so primitive
+ * tables can be streamed without boxing.
+ */
+class TableSpliterator<T> implements Spliterator<T> {
+
+  // ranges smaller than this are not worth handing to another thread
+  private static final int MIN_SPLIT = 64;
+
+  private final IntPredicate occupied;
+  private final IntFunction<? extends T> reader;
+  private final int characteristics;
+  private int index;
+  private final int fence;
+  private long estimate;
+
+  /**
+   * @param occupied        tells whether a slot holds a live mapping
+   * @param reader          returns the element at an occupied slot
+   * @param origin          first slot to visit
+   * @param fence           slot after the last one to visit
+   * @param estimate        estimated number of elements within the range
+   * @param characteristics Spliterator characteristics of the elements
+   */
+  TableSpliterator(IntPredicate occupied, IntFunction<? extends T> reader, int origin, int fence,
+      long estimate, int characteristics) {
+    this.occupied = occupied;
+    this.reader = reader;
+    this.index = origin;
+    this.fence = fence;
+    this.estimate = estimate;
+    this.characteristics = characteristics;
+  }
+
+  /**
+   * For tables whose slots may change while they are traversed: reader is called once per slot
+   * and returns its element, or null when the slot holds no live mapping, so the test and the
+   * element always come from the same read. The elements must not be null.
+   *
+   * @param reader returns the element at a slot, or null when the slot is not occupied
+   */
+  TableSpliterator(IntFunction<? extends T> reader, int origin, int fence, long estimate,
+      int characteristics) {
+    this(null, reader, origin, fence, estimate, characteristics);
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super T> action) {
+    while (index < fence) {
+      int slot = index++;
+      if (occupied == null) {
+        T element = reader.apply(slot);
+        if (element != null) {
+          action.accept(element);
+          return true;
+        }
+      } else if (occupied.test(slot)) {
+        action.accept(reader.apply(slot));
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public void forEachRemaining(Consumer<? super T> action) {
+    for (; index < fence; index++) {
+      if (occupied == null) {
+        T element = reader.apply(index);
+        if (element != null) {
+          action.accept(element);
+        }
+      } else if (occupied.test(index)) {
+        action.accept(reader.apply(index));
+      }
+    }
+  }
+
+  @Override
+  public Spliterator<T> trySplit() {
+    int middle = (index + fence) >>> 1;
+    if (middle - index < MIN_SPLIT) {
+      return null;
+    }
+    estimate >>>= 1;
+    Spliterator<T> prefix =
+        new TableSpliterator<>(occupied, reader, index, middle, estimate, characteristics);
+    index = middle;
+    return prefix;
+  }
+
+  @Override
+  public long estimateSize() {
+    return estimate;
+  }
+
+  @Override
+  public int characteristics() {
+    return characteristics;
+  }
+
+  /**
+   * Spliterator over the int keys or values of the occupied slots in a range.
+   */
+  static class OfInt implements Spliterator.OfInt {
+    private final IntPredicate occupied;
+    private final IntUnaryOperator reader;
+    private final int characteristics;
+    private int index;
+    private final int fence;
+    private long estimate;
+
+    OfInt(IntPredicate occupied, IntUnaryOperator reader, int origin, int fence, long estimate,
+        int characteristics) {
+      this.occupied = occupied;
+      this.reader = reader;
+      this.index = origin;
+      this.fence = fence;
+      this.estimate = estimate;
+      this.characteristics = characteristics;
+    }
+
+    @Override
+    public boolean tryAdvance(IntConsumer action) {
+      while (index < fence) {
+        int slot = index++;
+        if (occupied.test(slot)) {
+          action.accept(reader.applyAsInt(slot));
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public void forEachRemaining(IntConsumer action) {
+      for (; index < fence; index++) {
+        if (occupied.test(index)) {
+          action.accept(reader.applyAsInt(index));
+        }
+      }
+    }
+
+    @Override
+    public Spliterator.OfInt trySplit() {
+      int middle = (index + fence) >>> 1;
+      if (middle - index < MIN_SPLIT) {
+        return null;
+      }
+      estimate >>>= 1;
+      Spliterator.OfInt prefix =
+          new TableSpliterator.OfInt(occupied, reader, index, middle, estimate, characteristics);
+      index = middle;
+      return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+      return estimate;
+    }
+
+    @Override
+    public int characteristics() {
+      return characteristics;
+    }
+  }
+
+  /**
+   * Spliterator over the long keys or values of the occupied slots in a range.
+   */
+  static class OfLong implements Spliterator.OfLong {
+    private final IntPredicate occupied;
+    private final IntToLongFunction reader;
+    private final int characteristics;
+    private int index;
+    private final int fence;
+    private long estimate;
+
+    OfLong(IntPredicate occupied, IntToLongFunction reader, int origin, int fence, long estimate,
+        int characteristics) {
+      this.occupied = occupied;
+      this.reader = reader;
+      this.index = origin;
+      this.fence = fence;
+      this.estimate = estimate;
+      this.characteristics = characteristics;
+    }
+
+    @Override
+    public boolean tryAdvance(LongConsumer action) {
+      while (index < fence) {
+        int slot = index++;
+        if (occupied.test(slot)) {
+          action.accept(reader.applyAsLong(slot));
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public void forEachRemaining(LongConsumer action) {
+      for (; index < fence; index++) {
+        if (occupied.test(index)) {
+          action.accept(reader.applyAsLong(index));
+        }
+      }
+    }
+
+    @Override
+    public Spliterator.OfLong trySplit() {
+      int middle = (index + fence) >>> 1;
+      if (middle - index < MIN_SPLIT) {
+        return null;
+      }
+      estimate >>>= 1;
+      Spliterator.OfLong prefix =
+          new TableSpliterator.OfLong(occupied, reader, index, middle, estimate, characteristics);
+      index = middle;
+      return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+      return estimate;
+    }
+
+    @Override
+    public int characteristics() {
+      return characteristics;
+    }
+  }
+}
@@ -0,0 +1,169 @@
+/**
+ * Hierarchical timing wheel that tells which timers are due without looking at the timers that
+ * are not. Time is counted in ticks. Level 0 has one bucket per tick for the next 64 ticks, and
+ * every higher level has buckets 64 times as wide, so six levels cover 2^36 ticks. A timer is
+ * filed in the level whose span fits the time left until its deadline; when time reaches a
+ * bucket of a higher level, its timers are filed again one level lower. Scheduling, cancelling
+ * and each refiling take constant time.
+ *
+ * Due timers are moved to a queue that the owner drains with pollDue at its own pace.
+ */
+class TimingWheel {
+
+  private static final int LEVELS = 6;
+  private static final int BITS = 6;
+  private static final int BUCKETS = 1 << BITS;
+
+  /**
+   * A deadline that can sit in one bucket of the wheel or in its queue of due timers.
+   */
+  static class Timer {
+    private long deadline;
+    private Timer previous;
+    private Timer next;
+
+    /**
+     * @return the tick at which this timer is due
+     */
+    long getDeadline() {
+      return deadline;
+    }
+
+    boolean isScheduled() {
+      return next != null;
+    }
+  }
+
+  // circular lists with a sentinel head, wheel[level][bucket]
+  private final Timer[][] wheel = new Timer[LEVELS][BUCKETS];
+  private final Timer due = new Timer();
+  private long currentTick;
+
+  /**
+   * @param currentTick the tick the wheel starts at
+   */
+  TimingWheel(long currentTick) {
+    this.currentTick = currentTick;
+    for (Timer[] level : wheel) {
+      for (int b = 0; b < BUCKETS; b++) {
+        level[b] = emptyList();
+      }
+    }
+    due.previous = due;
+    due.next = due;
+  }
+
+  /**
+   * Files timer to become due at deadline, first cancelling it if it was scheduled before.
+   */
+  void schedule(Timer timer, long deadline) {
+    cancel(timer);
+    timer.deadline = deadline;
+    file(timer);
+  }
+
+  /**
+   * Removes timer from the wheel or the due queue. Cancelling an unscheduled timer does nothing.
+   */
+  void cancel(Timer timer) {
+    if (timer.isScheduled()) {
+      timer.previous.next = timer.next;
+      timer.next.previous = timer.previous;
+      timer.previous = null;
+      timer.next = null;
+    }
+  }
+
+  /**
+   * Moves time forward to tick, queueing every timer whose deadline has passed. Each level looks at
+   * no more than its 64 buckets, however far time jumps.
+   */
+  void advance(long tick) {
+    if (tick <= currentTick) {
+      return;
+    }
+    long previousTick = currentTick;
+    currentTick = tick;
+
+    Timer refile = emptyList();
+    for (int level = 0; level < LEVELS; level++) {
+      int shift = BITS * level;
+      long from = previousTick >>> shift;
+      long to = tick >>> shift;
+      if (from == to) {
+        // the buckets of the higher levels are wider still, so none of them is reached either
+        break;
+      }
+      long steps = Math.min(to - from, BUCKETS);
+      for (long step = 1; step <= steps; step++) {
+        Timer head = wheel[level][(int) ((from + step) & (BUCKETS - 1))];
+        while (head.next != head) {
+          Timer timer = head.next;
+          cancel(timer);
+          append(timer.deadline <= tick ? due : refile, timer);
+        }
+      }
+    }
+    while (refile.next != refile) {
+      Timer timer = refile.next;
+      cancel(timer);
+      file(timer);
+    }
+  }
+
+  /**
+   * @return the next due timer, no longer scheduled, or null when none is due
+   */
+  Timer pollDue() {
+    if (due.next == due) {
+      return null;
+    }
+    Timer timer = due.next;
+    cancel(timer);
+    return timer;
+  }
+
+  long getCurrentTick() {
+    return currentTick;
+  }
+
+  /**
+   * Forgets every timer without touching them one by one; the owner drops its timers as well.
+   */
+  void clear() {
+    for (Timer[] level : wheel) {
+      for (int b = 0; b < BUCKETS; b++) {
+        level[b] = emptyList();
+      }
+    }
+    due.previous = due;
+    due.next = due;
+  }
+
+  private void file(Timer timer) {
+    long remaining = timer.deadline - currentTick;
+    if (remaining <= 0) {
+      append(due, timer);
+      return;
+    }
+    int level = 0;
+    while (level < LEVELS - 1 && remaining >= 1L << (BITS * (level + 1))) {
+      level++;
+    }
+    append(wheel[level][(int) ((timer.deadline >>> (BITS * level)) & (BUCKETS - 1))], timer);
+  }
+
+  private static void append(Timer head, Timer timer) {
+    timer.previous = head.previous;
+    timer.next = head;
+    head.previous.next = timer;
+    head.previous = timer;
+  }
+
+  private static Timer emptyList() {
+    Timer head = new Timer();
+    head.previous = head;
+    head.next = head;
+    return head;
+  }
+}
@@ -0,0 +1,148 @@
+/**
+ * Window TinyLFU eviction. New entries enter a small LRU window that holds about 1% of the maximum
+ * weight. The rest of the cache is a segmented LRU: entries leaving the window go to a probation
+ * queue, and a probation entry that is accessed again is promoted to a protected queue that may
+ * fill 80% of the main space.
+ *
+ * When the cache is over its bound, the oldest window entry and the oldest probation entry compete
+ * for a place in the main space, and whichever a FrequencySketch has seen less often recently is
+ * evicted. Entries that are used once and never again therefore leave through the window without
+ * pushing out established ones, while the window still lets bursts of new entries build up a
+ * frequency before they are judged.
+ */
+public class WTinyLfuEvictionPolicy<KeyType, ValueType>
+    implements EvictionPolicy<KeyType, ValueType> {
+
+  private static final int WINDOW = 0;
+  private static final int PROBATION = 1;
+  private static final int PROTECTED = 2;
+  private static final double WINDOW_SHARE = 0.01;
+  private static final double PROTECTED_SHARE = 0.8;
+
+  private final BoundedCacheMap.NodeQueue<KeyType, ValueType> window =
+      new BoundedCacheMap.NodeQueue<>();
+  private final BoundedCacheMap.NodeQueue<KeyType, ValueType> probation =
+      new BoundedCacheMap.NodeQueue<>();
+  private final BoundedCacheMap.NodeQueue<KeyType, ValueType> protectedQueue =
+      new BoundedCacheMap.NodeQueue<>();
+  private FrequencySketch sketch;
+  private long maximumWeight;
+  private long windowMaximum;
+  private long protectedMaximum;
+
+  @Override
+  public void setMaximumWeight(long maximumWeight) {
+    this.maximumWeight = maximumWeight;
+    windowMaximum = Math.max(1L, (long) (maximumWeight * WINDOW_SHARE));
+    protectedMaximum = (long) ((maximumWeight - windowMaximum) * PROTECTED_SHARE);
+    sketch = new FrequencySketch(maximumWeight);
+  }
+
+  @Override
+  public void onInsert(BoundedCacheMap.Node<KeyType, ValueType> node) {
+    sketch.increment(node.getHash());
+    node.queue = WINDOW;
+    window.addLast(node);
+    drainWindow();
+  }
+
+  @Override
+  public void onAccess(BoundedCacheMap.Node<KeyType, ValueType> node) {
+    sketch.increment(node.getHash());
+    if (node.queue == WINDOW) {
+      window.moveToLast(node);
+    } else if (node.queue == PROBATION) {
+      probation.remove(node);
+      node.queue = PROTECTED;
+      protectedQueue.addLast(node);
+      demoteProtected();
+    } else {
+      protectedQueue.moveToLast(node);
+    }
+  }
+
+  @Override
+  public void onUpdate(BoundedCacheMap.Node<KeyType, ValueType> node, int oldWeight) {
+    queueOf(node).reweigh(node, oldWeight);
+    onAccess(node);
+  }
+
+  @Override
+  public void onMiss(int hash) {
+    sketch.increment(hash);
+  }
+
+  @Override
+  public void onRemove(BoundedCacheMap.Node<KeyType, ValueType> node) {
+    queueOf(node).remove(node);
+  }
+
+  @Override
+  public BoundedCacheMap.Node<KeyType, ValueType> nextVictim() {
+    BoundedCacheMap.Node<KeyType, ValueType> candidate =
+        window.getWeight() > windowMaximum ? window.peekFirst() : null;
+    BoundedCacheMap.Node<KeyType, ValueType> victim = probation.peekFirst();
+    if (victim == null) {
+      victim = protectedQueue.peekFirst();
+    }
+
+    if (candidate == null || victim == null) {
+      BoundedCacheMap.Node<KeyType, ValueType> evicted =
+          victim != null ? victim : window.peekFirst();
+      if (evicted != null) {
+        queueOf(evicted).remove(evicted);
+      }
+      return evicted;
+    }
+
+    window.remove(candidate);
+    if (sketch.frequency(candidate.getHash()) > sketch.frequency(victim.getHash())) {
+      queueOf(victim).remove(victim);
+      candidate.queue = PROBATION;
+      probation.addLast(candidate);
+      return victim;
+    }
+    return candidate;
+  }
+
+  @Override
+  public void clear() {
+    window.clear();
+    probation.clear();
+    protectedQueue.clear();
+    sketch.clear();
+  }
+
+  private BoundedCacheMap.NodeQueue<KeyType, ValueType> queueOf(
+      BoundedCacheMap.Node<KeyType, ValueType> node) {
+    return node.queue == WINDOW ? window : node.queue == PROBATION ? probation : protectedQueue;
+  }
+
+  /**
+   * Moves the oldest window entries into probation while the whole cache is within its bound.
+   * Once it is full they stay in the window, where nextVictim weighs them against probation.
+   */
+  private void drainWindow() {
+    while (window.getWeight() > windowMaximum && window.peekFirst() != window.peekLast()
+        && window.getWeight() + probation.getWeight() + protectedQueue.getWeight()
+            <= maximumWeight) {
+      BoundedCacheMap.Node<KeyType, ValueType> node = window.peekFirst();
+      window.remove(node);
+      node.queue = PROBATION;
+      probation.addLast(node);
+    }
+  }
+
+  /**
+   * Moves the oldest protected entries back to probation while the protected queue is too heavy.
+   */
+  private void demoteProtected() {
+    while (protectedQueue.getWeight() > protectedMaximum
+        && protectedQueue.peekFirst() != protectedQueue.peekLast()) {
+      BoundedCacheMap.Node<KeyType, ValueType> node = protectedQueue.peekFirst();
+      protectedQueue.remove(node);
+      node.queue = PROBATION;
+      probation.addLast(node);
+    }
+  }
+}